@@ -0,0 +1,32 @@
+package com.transfer.application.benchmarks;
+
+import com.transfer.application.dtos.accounts.AccountInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AccountDetailsBenchmark {
+
+    @Benchmark
+    @Threads(1)
+    public AccountInfo getAccountDetails(ApplicationState state) {
+        return state.accountService.getAccountDetails(randomAccount(state.accounts));
+    }
+
+    @Benchmark
+    @Threads(16)
+    public AccountInfo getAccountDetailsConcurrent(ApplicationState state) {
+        return state.accountService.getAccountDetails(randomAccount(state.accounts));
+    }
+
+    private static Long randomAccount(int accounts) {
+        return ApplicationState.FIRST_ACCOUNT_ID + ThreadLocalRandom.current().nextInt(accounts);
+    }
+}
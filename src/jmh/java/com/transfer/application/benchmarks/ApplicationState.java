@@ -0,0 +1,115 @@
+package com.transfer.application.benchmarks;
+
+import com.transfer.application.Application;
+import com.transfer.application.dtos.accounts.CreateAccount;
+import com.transfer.application.services.accounts.AccountService;
+import com.transfer.application.services.transactions.TransactionService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Application context shared by the threads of a benchmark, backed by H2 in PostgreSQL mode or by an embedded
+ * PostgreSQL when the benchmark.database system property is postgres. Few accounts make threads contend on the
+ * same rows, many accounts keep them apart.
+ */
+@State(Scope.Benchmark)
+public class ApplicationState {
+
+    static final long FIRST_ACCOUNT_ID = 1_000_000L;
+
+    @Param({"4", "10000"})
+    public int accounts;
+
+    private EmbeddedPostgres postgres;
+    private ConfigurableApplicationContext context;
+
+    TransactionService transactionService;
+    AccountService accountService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        Map<String, Object> properties = backgroundDisabled();
+
+        if ("postgres".equals(System.getProperty("benchmark.database"))) {
+            this.postgres = EmbeddedPostgres.start();
+            properties.put("spring.datasource.url", this.postgres.getJdbcUrl("postgres", "postgres"));
+            properties.put("spring.datasource.username", "postgres");
+            properties.put("spring.datasource.password", "postgres");
+            properties.put("transfer.execution.mode", System.getProperty("benchmark.execution.mode", "STATEMENT"));
+        } else {
+            // The single statement transfer relies on data modifying CTEs which H2 does not support
+            properties.put("spring.datasource.url", "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000");
+            properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+            properties.put("spring.datasource.username", "sa");
+            properties.put("spring.datasource.password", "");
+            properties.put("spring.jpa.database", "H2");
+            properties.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+            properties.put("transfer.execution.mode", System.getProperty("benchmark.execution.mode", "JPA"));
+            // Append-only writes read balances back with UPDATE ... RETURNING, which H2 does not support either
+            properties.put("transfer.execution.append-only", "false");
+        }
+
+        this.context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run(arguments(properties));
+        this.transactionService = this.context.getBean(TransactionService.class);
+        this.accountService = this.context.getBean(AccountService.class);
+
+        // Balances large enough that no transfer of a trial runs out of funds
+        for (int i = 0; i < this.accounts; i++) {
+            CreateAccount createAccount = new CreateAccount();
+            createAccount.setAccountId(FIRST_ACCOUNT_ID + i);
+            createAccount.setName("Benchmark " + i);
+            createAccount.setInitialBalance(new BigDecimal("100000000.00"));
+            this.accountService.createAccount(createAccount);
+        }
+    }
+
+    // Background work and admission control are off, so that only transfers are measured
+    static Map<String, Object> backgroundDisabled() {
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("spring.sql.init.mode", "never");
+        properties.put("logging.level.com.transfer", "WARN");
+        properties.put("transfer.queue.enabled", "false");
+        properties.put("transfer.ledger-partitions.enabled", "false");
+        properties.put("transfer.reconciliation.enabled", "false");
+        properties.put("transfer.outbox.enabled", "false");
+        properties.put("transfer.rate-limit.enabled", "false");
+        return properties;
+    }
+
+    // Passed as command line arguments, which take precedence over application.properties and its profiles
+    static String[] arguments(Map<String, Object> properties) {
+
+        return properties.entrySet()
+                .stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+
+        this.context.close();
+        if (this.postgres != null) {
+            this.postgres.close();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.transfer.application.benchmarks;
+
+import com.transfer.application.Application;
+import com.transfer.application.dtos.accounts.CreateAccount;
+import com.transfer.application.services.accounts.AccountService;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The application serving HTTP on a random port against an embedded PostgreSQL, started with the default connection
+ * settings or with a profile such as high-throughput. The driver settings of the profiles are PostgreSQL specific,
+ * so this state does not run against H2. Connection pool wait times are printed when the trial ends.
+ */
+@State(Scope.Benchmark)
+public class HttpApplicationState {
+
+    @Param({"default", "high-throughput"})
+    public String profile;
+
+    @Param({"4", "10000"})
+    public int accounts;
+
+    private EmbeddedPostgres postgres;
+    private ConfigurableApplicationContext context;
+
+    HttpClient httpClient;
+    URI transactionsUri;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        this.postgres = EmbeddedPostgres.start();
+
+        Map<String, Object> properties = ApplicationState.backgroundDisabled();
+        properties.put("spring.datasource.url", this.postgres.getJdbcUrl("postgres", "postgres"));
+        properties.put("spring.datasource.username", "postgres");
+        properties.put("spring.datasource.password", "postgres");
+        properties.put("transfer.execution.mode", System.getProperty("benchmark.execution.mode", "STATEMENT"));
+        properties.put("server.port", "0");
+
+        this.context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.SERVLET)
+                .profiles("default".equals(this.profile) ? new String[0] : this.profile.split(","))
+                .run(ApplicationState.arguments(properties));
+
+        // Balances large enough that no transfer of a trial runs out of funds
+        AccountService accountService = this.context.getBean(AccountService.class);
+        for (int i = 0; i < this.accounts; i++) {
+            CreateAccount createAccount = new CreateAccount();
+            createAccount.setAccountId(ApplicationState.FIRST_ACCOUNT_ID + i);
+            createAccount.setName("Benchmark " + i);
+            createAccount.setInitialBalance(new BigDecimal("100000000.00"));
+            accountService.createAccount(createAccount);
+        }
+
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        this.transactionsUri = URI.create("http://localhost:" + this.context.getEnvironment().getProperty("local.server.port") + "/transactions");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+
+        // Time spent waiting for a connection is what the connection settings are meant to reduce
+        MeterRegistry meterRegistry = this.context.getBean(MeterRegistry.class);
+        for (Timer timer : meterRegistry.find("hikaricp.connections.acquire").timers()) {
+            System.out.printf("%nprofile = %s, pool = %s, acquisitions = %d, mean acquire us = %.1f, max acquire us = %.1f%n",
+                    this.profile, timer.getId().getTag("pool"), timer.count(), timer.mean(TimeUnit.MICROSECONDS), timer.max(TimeUnit.MICROSECONDS));
+        }
+        FunctionTimer gateWait = meterRegistry.find("transfer.jdbc.gate.wait").functionTimer();
+        if (gateWait != null) {
+            System.out.printf("profile = %s, gate waits = %.0f, mean gate wait us = %.1f%n",
+                    this.profile, gateWait.count(), gateWait.mean(TimeUnit.MICROSECONDS));
+        }
+
+        this.context.close();
+        this.postgres.close();
+    }
+}
@@ -0,0 +1,44 @@
+package com.transfer.application.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load on POST /transactions through the web server, with more concurrent clients than connections in the default
+ * pool, to compare the connection settings of the profiles end to end.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HttpTransferBenchmark {
+
+    @Benchmark
+    @Threads(64)
+    public int submitTransaction(HttpApplicationState state) throws IOException, InterruptedException {
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int source = random.nextInt(state.accounts);
+        int destination = (source + 1 + random.nextInt(state.accounts - 1)) % state.accounts;
+        String body = "{\"source_account_id\": " + (ApplicationState.FIRST_ACCOUNT_ID + source)
+                + ", \"destination_account_id\": " + (ApplicationState.FIRST_ACCOUNT_ID + destination)
+                + ", \"amount\": 0.01}";
+
+        HttpRequest request = HttpRequest.newBuilder(state.transactionsUri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<Void> response = state.httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Transfer failed, status = " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+}
@@ -0,0 +1,28 @@
+package com.transfer.application.benchmarks;
+
+import com.transfer.application.repositories.ledgers.Ledger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LedgerBenchmark {
+
+    @Benchmark
+    public Ledger buildLedger() {
+
+        return Ledger.builder()
+                .transactionId(UUID.randomUUID())
+                .accountId(1001L)
+                .debit(12112L)
+                .startBalance(100000L)
+                .endBalance(87888L)
+                .status(Ledger.Status.COMPLETED)
+                .build();
+    }
+}
@@ -0,0 +1,55 @@
+package com.transfer.application.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.transfer.application.dtos.transactions.SubmitTransaction;
+import com.transfer.application.dtos.transactions.TransactionSuccess;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+
+    private ObjectReader submitTransactionReader;
+    private ObjectWriter transactionSuccessWriter;
+
+    private byte[] submitTransactionJson;
+    private TransactionSuccess transactionSuccess;
+
+    @Setup
+    public void setUp() {
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        this.submitTransactionReader = objectMapper.readerFor(SubmitTransaction.class);
+        this.transactionSuccessWriter = objectMapper.writerFor(TransactionSuccess.class);
+
+        this.submitTransactionJson = "{\"source_account_id\": 6, \"destination_account_id\": 3, \"amount\": 121.12}".getBytes(StandardCharsets.UTF_8);
+        this.transactionSuccess = TransactionSuccess.builder()
+                .sourceAccountId(6L)
+                .updatedBalance(new BigDecimal("878.88"))
+                .build();
+    }
+
+    @Benchmark
+    public SubmitTransaction readSubmitTransaction() throws IOException {
+        return this.submitTransactionReader.readValue(this.submitTransactionJson);
+    }
+
+    @Benchmark
+    public byte[] writeTransactionSuccess() throws IOException {
+        return this.transactionSuccessWriter.writeValueAsBytes(this.transactionSuccess);
+    }
+}
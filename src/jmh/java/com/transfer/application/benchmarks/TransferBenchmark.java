@@ -0,0 +1,45 @@
+package com.transfer.application.benchmarks;
+
+import com.transfer.application.dtos.transactions.SubmitTransaction;
+import com.transfer.application.dtos.transactions.TransactionSuccess;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TransferBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @Benchmark
+    @Threads(1)
+    public TransactionSuccess submitTransaction(ApplicationState state) {
+        return state.transactionService.submitTransaction(randomTransfer(state.accounts));
+    }
+
+    @Benchmark
+    @Threads(16)
+    public TransactionSuccess submitTransactionConcurrent(ApplicationState state) {
+        return state.transactionService.submitTransaction(randomTransfer(state.accounts));
+    }
+
+    private static SubmitTransaction randomTransfer(int accounts) {
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int source = random.nextInt(accounts);
+        int destination = (source + 1 + random.nextInt(accounts - 1)) % accounts;
+
+        SubmitTransaction submitTransaction = new SubmitTransaction();
+        submitTransaction.setSourceAccountId(ApplicationState.FIRST_ACCOUNT_ID + source);
+        submitTransaction.setDestinationAccountId(ApplicationState.FIRST_ACCOUNT_ID + destination);
+        submitTransaction.setAmount(AMOUNT);
+        return submitTransaction;
+    }
+}
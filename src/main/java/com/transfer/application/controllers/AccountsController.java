@@ -1,19 +1,25 @@
 package com.transfer.application.controllers;
 
 import com.transfer.application.dtos.accounts.AccountInfo;
+import com.transfer.application.dtos.accounts.AccountStatement;
+import com.transfer.application.dtos.accounts.ConfigureBuckets;
 import com.transfer.application.dtos.accounts.CreateAccount;
 import com.transfer.application.services.accounts.AccountService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import java.net.URI;
+import java.time.LocalDateTime;
 
 @Controller
 @RequestMapping("/accounts")
@@ -37,4 +43,24 @@ public class AccountsController {
         return ResponseEntity.ok()
                 .body(accountInfo);
     }
+
+    @GetMapping("/{accountId}/ledger")
+    public ResponseEntity<AccountStatement> getStatement(@PathVariable("accountId") Long accountId,
+                                                         @RequestParam(value = "before", required = false) Long before,
+                                                         @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                         @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                                         @RequestParam(value = "limit", defaultValue = "100") int limit) {
+
+        AccountStatement accountStatement = this.accountService.getStatement(accountId, before, from, to, limit);
+        return ResponseEntity.ok()
+                .body(accountStatement);
+    }
+
+    @PutMapping("/{accountId}/buckets")
+    public ResponseEntity<Void> configureBuckets(@PathVariable("accountId") Long accountId, @Validated @RequestBody ConfigureBuckets configureBuckets) {
+
+        this.accountService.configureBuckets(accountId, configureBuckets);
+        return ResponseEntity.noContent()
+                .build();
+    }
 }
@@ -0,0 +1,38 @@
+package com.transfer.application.controllers;
+
+import com.transfer.application.services.exports.ExportFormat;
+import com.transfer.application.services.exports.LedgerExporter;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Controller
+@RequestMapping("/ledgers")
+public class LedgersController {
+
+    @Autowired
+    private LedgerExporter ledgerExporter;
+
+    // Rows are written straight to the response on the request thread, an asynchronous response would be cut off
+    // by the async request timeout on large exports
+    @GetMapping("/export")
+    public void exportLedgers(@RequestParam(value = "format", defaultValue = "CSV") ExportFormat format,
+                              @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                              @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                              @RequestParam(value = "account_ids", required = false) List<Long> accountIds,
+                              HttpServletResponse response) throws IOException {
+
+        response.setContentType(format.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"ledgers." + (format == ExportFormat.CSV ? "csv" : "bin") + "\"");
+        this.ledgerExporter.export(format, from, to, accountIds, response.getOutputStream());
+    }
+}
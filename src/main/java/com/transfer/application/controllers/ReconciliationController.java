@@ -0,0 +1,31 @@
+package com.transfer.application.controllers;
+
+import com.transfer.application.dtos.reconciliation.ReconciliationReport;
+import com.transfer.application.services.reconciliation.BalanceReconciler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ResponseStatusException;
+
+@Controller
+@RequestMapping("/reconciliation")
+public class ReconciliationController {
+
+    @Autowired(required = false)
+    private BalanceReconciler balanceReconciler;
+
+    @GetMapping()
+    public ResponseEntity<ReconciliationReport> getReport(@RequestParam(value = "limit", defaultValue = "100") int limit) {
+
+        if (this.balanceReconciler == null) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Reconciliation is not enabled");
+        }
+        ReconciliationReport report = this.balanceReconciler.getReport(limit);
+        return ResponseEntity.ok()
+                .body(report);
+    }
+}
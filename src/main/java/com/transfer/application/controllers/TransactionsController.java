@@ -1,16 +1,26 @@
 package com.transfer.application.controllers;
 
 import com.transfer.application.dtos.transactions.SubmitTransaction;
+import com.transfer.application.dtos.transactions.SubmitTransactionBatch;
+import com.transfer.application.dtos.transactions.TransactionBatchResult;
+import com.transfer.application.dtos.transactions.TransactionInfo;
 import com.transfer.application.dtos.transactions.TransactionSuccess;
 import com.transfer.application.services.transactions.TransactionService;
+import com.transfer.application.services.transactions.TransferQueue;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 
+import java.net.URI;
+import java.util.UUID;
+
 @Controller
 @RequestMapping("/transactions")
 public class TransactionsController {
@@ -18,11 +28,41 @@ public class TransactionsController {
     @Autowired
     private TransactionService transactionService;
 
+    @Autowired(required = false)
+    private TransferQueue transferQueue;
+
     @PostMapping()
-    public ResponseEntity<TransactionSuccess> submitTransaction(@Validated @RequestBody SubmitTransaction submitTransaction) {
+    public ResponseEntity<?> submitTransaction(@Validated @RequestBody SubmitTransaction submitTransaction,
+                                               @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                               @RequestHeader(value = "Prefer", required = false) String prefer) {
+
+        // Transfers are queued and settled later when the client prefers an asynchronous response and the queue is enabled
+        if (this.transferQueue != null && prefer != null && prefer.contains("respond-async")) {
+            TransactionInfo transactionInfo = this.transferQueue.enqueue(submitTransaction, idempotencyKey);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/transactions/" + transactionInfo.getTransactionId()))
+                    .header("Preference-Applied", "respond-async")
+                    .body(transactionInfo);
+        }
 
-        TransactionSuccess transactionSuccess = this.transactionService.submitTransaction(submitTransaction);
+        TransactionSuccess transactionSuccess = this.transactionService.submitTransaction(submitTransaction, idempotencyKey);
         return ResponseEntity.ok()
                 .body(transactionSuccess);
     }
+
+    @PostMapping("/batch")
+    public ResponseEntity<TransactionBatchResult> submitTransactions(@Validated @RequestBody SubmitTransactionBatch submitTransactionBatch) {
+
+        TransactionBatchResult transactionBatchResult = this.transactionService.submitTransactions(submitTransactionBatch.getTransactions());
+        return ResponseEntity.ok()
+                .body(transactionBatchResult);
+    }
+
+    @GetMapping("/{transactionId}")
+    public ResponseEntity<TransactionInfo> getTransaction(@PathVariable("transactionId") UUID transactionId) {
+
+        TransactionInfo transactionInfo = this.transactionService.getTransaction(transactionId);
+        return ResponseEntity.ok()
+                .body(transactionInfo);
+    }
 }
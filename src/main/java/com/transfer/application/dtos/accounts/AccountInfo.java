@@ -5,6 +5,8 @@ import com.fasterxml.jackson.databind.annotation.JsonNaming;
 import lombok.Builder;
 import lombok.Data;
 
+import java.math.BigDecimal;
+
 @Data
 @Builder
 @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
@@ -12,5 +14,5 @@ public class AccountInfo {
 
     private Long accountId;
     private String name;
-    private Double balance;
+    private BigDecimal balance;
 }
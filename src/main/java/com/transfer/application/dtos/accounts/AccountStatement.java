@@ -0,0 +1,42 @@
+package com.transfer.application.dtos.accounts;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import com.transfer.application.repositories.ledgers.Ledger;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class AccountStatement {
+
+    private Long accountId;
+    private List<Entry> entries;
+
+    // Passed as the before parameter to fetch the next page, null on the last page
+    private Long nextCursor;
+
+    @Data
+    @Builder
+    @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Entry {
+
+        private Long id;
+        private UUID transactionId;
+        private Integer bucket;
+        private BigDecimal credit;
+        private BigDecimal debit;
+        private BigDecimal startBalance;
+        private BigDecimal endBalance;
+        private Ledger.Status status;
+        private LocalDateTime createdAt;
+    }
+}
@@ -0,0 +1,18 @@
+package com.transfer.application.dtos.accounts;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class ConfigureBuckets {
+
+    @NotNull
+    @Min(2)
+    @Max(64)
+    private Integer bucketCount;
+}
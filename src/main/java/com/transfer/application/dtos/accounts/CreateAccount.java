@@ -2,11 +2,14 @@ package com.transfer.application.dtos.accounts;
 
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.Size;
 import lombok.Data;
 
+import java.math.BigDecimal;
+
 @Data
 @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
 public class CreateAccount {
@@ -19,5 +22,6 @@ public class CreateAccount {
     private String name;
 
     @Positive
-    private Double initialBalance;
+    @Digits(integer = 16, fraction = 2)
+    private BigDecimal initialBalance;
 }
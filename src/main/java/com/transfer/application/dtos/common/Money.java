@@ -0,0 +1,28 @@
+package com.transfer.application.dtos.common;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversion between the decimal amounts of the API and the minor units (cents) balances are stored and computed in.
+ */
+public final class Money {
+
+    public static final int SCALE = 2;
+
+    private Money() {
+    }
+
+    // Amounts with more than two decimal places are rejected by validation, so no rounding is expected here
+    public static long toMinorUnits(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal fromMinorUnits(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    public static BigDecimal fromMinorUnits(Long minorUnits) {
+        return minorUnits == null ? null : fromMinorUnits(minorUnits.longValue());
+    }
+}
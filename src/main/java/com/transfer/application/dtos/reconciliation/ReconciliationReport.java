@@ -0,0 +1,35 @@
+package com.transfer.application.dtos.reconciliation;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class ReconciliationReport {
+
+    // Ledger entries created before the checkpoint are reconciled, null before the first run
+    private LocalDateTime checkpoint;
+    private LocalDateTime lastRunAt;
+    private Long accountsChecked;
+    private Long driftedAccounts;
+    private List<Drift> drifts;
+
+    @Data
+    @Builder
+    @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+    public static class Drift {
+
+        private Long accountId;
+        private BigDecimal balance;
+        private BigDecimal expectedBalance;
+        private BigDecimal drift;
+        private LocalDateTime updatedAt;
+    }
+}
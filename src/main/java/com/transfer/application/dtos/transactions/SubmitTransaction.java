@@ -2,9 +2,12 @@ package com.transfer.application.dtos.transactions;
 
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.Positive;
 import lombok.Data;
 
+import java.math.BigDecimal;
+
 @Data
 @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
 public class SubmitTransaction {
@@ -16,5 +19,6 @@ public class SubmitTransaction {
     private Long destinationAccountId;
 
     @Positive
-    private Double amount;
+    @Digits(integer = 16, fraction = 2)
+    private BigDecimal amount;
 }
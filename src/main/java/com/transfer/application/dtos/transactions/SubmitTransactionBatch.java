@@ -0,0 +1,20 @@
+package com.transfer.application.dtos.transactions;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class SubmitTransactionBatch {
+
+    @NotEmpty
+    @Size(max = 10000)
+    @Valid
+    private List<SubmitTransaction> transactions;
+}
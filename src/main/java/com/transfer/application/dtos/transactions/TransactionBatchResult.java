@@ -0,0 +1,37 @@
+package com.transfer.application.dtos.transactions;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import com.transfer.application.repositories.ledgers.Ledger;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class TransactionBatchResult {
+
+    private int completed;
+    private int failed;
+    private List<Item> results;
+
+    @Data
+    @Builder
+    @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Item {
+
+        private int index;
+        private UUID transactionId;
+        private Long sourceAccountId;
+        private Long destinationAccountId;
+        private Ledger.Status status;
+        private BigDecimal updatedBalance;
+        private String error;
+    }
+}
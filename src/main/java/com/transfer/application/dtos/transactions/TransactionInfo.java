@@ -0,0 +1,26 @@
+package com.transfer.application.dtos.transactions;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import com.transfer.application.repositories.ledgers.Ledger;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+@Data
+@Builder
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransactionInfo {
+
+    private UUID transactionId;
+    private Long sourceAccountId;
+    private Long destinationAccountId;
+    private BigDecimal amount;
+    private Ledger.Status status;
+    private BigDecimal updatedBalance;
+    private String error;
+}
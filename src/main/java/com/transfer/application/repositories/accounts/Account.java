@@ -5,6 +5,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -23,8 +24,10 @@ import java.time.LocalDateTime;
 @Table(name = "accounts")
 public class Account {
 
+    // Ids are allocated from the sequence in blocks, so that inserts can be batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "accounts_seq")
+    @SequenceGenerator(name = "accounts_seq", sequenceName = "accounts_seq", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
@@ -34,8 +37,13 @@ public class Account {
     @Column(name = "name", length = 128, nullable = false)
     private String name;
 
-    @Column(name = "balance", precision = 4, nullable = false)
-    private Double balance;
+    // Balance in minor units (cents)
+    @Column(name = "balance", nullable = false)
+    private long balance;
+
+    // Number of sub-balance buckets the account is split into, null when the account is not bucketed
+    @Column(name = "bucket_count")
+    private Integer bucketCount;
 
     @CreationTimestamp
     @Column(name = "created_at")
@@ -0,0 +1,10 @@
+package com.transfer.application.repositories.accounts;
+
+public interface AccountBalance {
+
+    Long getId();
+
+    Long getAccountId();
+
+    Long getBalance();
+}
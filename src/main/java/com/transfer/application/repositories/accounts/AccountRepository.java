@@ -1,23 +1,80 @@
 package com.transfer.application.repositories.accounts;
 
+import jakarta.persistence.LockModeType;
 import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
 @Repository
-public interface AccountRepository extends JpaRepository<Account, Long> {
+public interface AccountRepository extends JpaRepository<Account, Long>, AccountRepositoryCustom {
+
+    // Debits the source, credits the destination (only if the debit succeeded) and inserts both completed
+    // ledger entries in one round trip. No row is returned if either update did not happen, in which case
+    // the caller has to roll back the transaction.
+    String TRANSFER_SQL = """
+            WITH debit AS (
+                UPDATE accounts SET balance = balance - ?3, updated_at = CURRENT_TIMESTAMP
+                WHERE id = ?1 AND balance >= ?3
+                RETURNING account_id, balance
+            ), credit AS (
+                UPDATE accounts SET balance = balance + ?3, updated_at = CURRENT_TIMESTAMP
+                WHERE id = ?2 AND EXISTS (SELECT 1 FROM debit)
+                RETURNING account_id, balance
+            ), entries AS (
+                INSERT INTO ledgers (id, transaction_id, account_id, debit, credit, start_balance, end_balance, status, created_at, updated_at)
+                SELECT nextval('ledgers_seq'), ?4, account_id, ?3, NULL, balance + ?3, balance, ?5, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP FROM debit
+                UNION ALL
+                SELECT nextval('ledgers_seq'), ?4, account_id, NULL, ?3, balance - ?3, balance, ?5, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP FROM credit
+            )
+            SELECT debit.balance AS "sourceBalance", credit.balance AS "destinationBalance" FROM debit, credit
+            """;
 
     Account findAccountByAccountId(Long accountId);
 
+    List<Account> findAccountsByAccountIdIn(Collection<Long> accountIds);
+
+    // Rows are locked in id order, so concurrent callers locking overlapping accounts cannot deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(value = "SELECT a FROM Account a WHERE a.id IN ?1 ORDER BY a.id")
+    List<Account> lockAccounts(Collection<Long> ids);
+
     @Modifying(clearAutomatically = true, flushAutomatically = true)
     @Transactional
-    @Query(value = "UPDATE Account SET balance = balance - ?2 WHERE id = ?1 AND balance > ?2")
-    int debitBalance(Long id, Double balance);
+    @Query(value = "UPDATE Account SET balance = balance - ?2 WHERE id = ?1 AND balance >= ?2")
+    int debitBalance(Long id, long balance);
 
     @Modifying(clearAutomatically = true, flushAutomatically = true)
     @Transactional
     @Query(value = "UPDATE Account SET balance = balance + ?2 WHERE id = ?1")
-    int creditBalance(Long id, Double balance);
+    int creditBalance(Long id, long balance);
+
+    // Only the bucket count is written, a full row update would also write back a balance read before it
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query(value = "UPDATE Account SET bucketCount = ?2 WHERE id = ?1 AND bucketCount IS NULL")
+    int configureBucketCount(Long id, int bucketCount);
+
+    @Query(value = "UPDATE accounts SET balance = balance - ?2, updated_at = CURRENT_TIMESTAMP WHERE id = ?1 AND balance >= ?2 RETURNING balance", nativeQuery = true)
+    Optional<Long> debitBalanceReturning(Long id, long balance);
+
+    @Query(value = "UPDATE accounts SET balance = balance + ?2, updated_at = CURRENT_TIMESTAMP WHERE id = ?1 RETURNING balance", nativeQuery = true)
+    Optional<Long> creditBalanceReturning(Long id, long balance);
+
+    // Balance of every account, including the balance held in the buckets of bucketed accounts
+    @Query(value = """
+            SELECT a.id AS "id", a.account_id AS "accountId", CAST(a.balance + COALESCE(SUM(b.balance), 0) AS BIGINT) AS "balance"
+            FROM accounts a LEFT JOIN account_buckets b ON b.account_id = a.account_id
+            GROUP BY a.id, a.account_id, a.balance
+            """, nativeQuery = true)
+    List<AccountBalance> findAllBalances();
+
+    @Query(value = TRANSFER_SQL, nativeQuery = true)
+    Optional<TransferBalances> transfer(Long sourceId, Long destinationId, long amount, UUID transactionId, int status);
 }
@@ -0,0 +1,13 @@
+package com.transfer.application.repositories.accounts;
+
+import java.util.Map;
+
+public interface AccountRepositoryCustom {
+
+    /**
+     * Applies a net balance change to each account in a single JDBC batch.
+     *
+     * @param deltas amount to add to the balance, keyed by the surrogate account id
+     */
+    void applyBalanceDeltas(Map<Long, Long> deltas);
+}
@@ -0,0 +1,29 @@
+package com.transfer.application.repositories.accounts;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+public class AccountRepositoryCustomImpl implements AccountRepositoryCustom {
+
+    private static final String APPLY_DELTA_SQL = "UPDATE accounts SET balance = balance + ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void applyBalanceDeltas(Map<Long, Long> deltas) {
+
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> args = deltas.entrySet()
+                .stream()
+                .map(delta -> new Object[]{delta.getValue(), delta.getKey()})
+                .toList();
+        this.jdbcTemplate.batchUpdate(APPLY_DELTA_SQL, args);
+    }
+}
@@ -0,0 +1,8 @@
+package com.transfer.application.repositories.accounts;
+
+public interface TransferBalances {
+
+    Long getSourceBalance();
+
+    Long getDestinationBalance();
+}
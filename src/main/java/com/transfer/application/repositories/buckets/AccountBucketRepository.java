@@ -0,0 +1,64 @@
+package com.transfer.application.repositories.buckets;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface AccountBucketRepository extends JpaRepository<AccountBucket, Long> {
+
+    @Query(value = "SELECT COALESCE(SUM(b.balance), 0) FROM AccountBucket b WHERE b.accountId = ?1")
+    Long sumBalanceByAccountId(Long accountId);
+
+    // Balance of the account row plus every bucket, i.e. the balance of a bucketed account
+    @Query(value = """
+            SELECT CAST(a.balance + COALESCE(SUM(b.balance), 0) AS BIGINT)
+            FROM accounts a LEFT JOIN account_buckets b ON b.account_id = a.account_id
+            WHERE a.account_id = ?1
+            GROUP BY a.balance
+            """, nativeQuery = true)
+    Long totalBalance(Long accountId);
+
+    @Query(value = """
+            UPDATE account_buckets SET balance = balance + ?3, updated_at = CURRENT_TIMESTAMP
+            WHERE account_id = ?1 AND bucket = ?2
+            RETURNING bucket, balance
+            """, nativeQuery = true)
+    Optional<BucketBalance> creditBucket(Long accountId, int bucket, long amount);
+
+    // Picks a random bucket which can cover the amount, buckets locked by concurrent transfers are skipped
+    @Query(value = """
+            UPDATE account_buckets SET balance = balance - ?2, updated_at = CURRENT_TIMESTAMP
+            WHERE id = (
+                SELECT id FROM account_buckets
+                WHERE account_id = ?1 AND balance >= ?2
+                ORDER BY random()
+                LIMIT 1
+                FOR UPDATE SKIP LOCKED
+            )
+            RETURNING bucket, balance
+            """, nativeQuery = true)
+    Optional<BucketBalance> debitAnyBucket(Long accountId, long amount);
+
+    // Moves the balance of every bucket into the account row, buckets are locked in id order
+    @Modifying
+    @Query(value = """
+            WITH swept AS (
+                UPDATE account_buckets b SET balance = 0, updated_at = CURRENT_TIMESTAMP
+                FROM (
+                    SELECT id, balance FROM account_buckets
+                    WHERE account_id = ?1
+                    ORDER BY id
+                    FOR UPDATE
+                ) previous
+                WHERE b.id = previous.id AND previous.balance <> 0
+                RETURNING previous.balance
+            )
+            UPDATE accounts SET balance = balance + (SELECT COALESCE(SUM(balance), 0) FROM swept), updated_at = CURRENT_TIMESTAMP
+            WHERE account_id = ?1
+            """, nativeQuery = true)
+    int consolidate(Long accountId);
+}
@@ -0,0 +1,8 @@
+package com.transfer.application.repositories.buckets;
+
+public interface BucketBalance {
+
+    Integer getBucket();
+
+    Long getBalance();
+}
@@ -0,0 +1,8 @@
+package com.transfer.application.repositories.checkpoints;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CheckpointRepository extends JpaRepository<Checkpoint, String> {
+}
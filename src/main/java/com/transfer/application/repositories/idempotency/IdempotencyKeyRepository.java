@@ -0,0 +1,32 @@
+package com.transfer.application.repositories.idempotency;
+
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+    // Returns 0 when the key is already stored, a concurrent insert of the same key waits for the other
+    // transaction to finish first
+    @Modifying
+    @Query(value = """
+            INSERT INTO idempotency_keys (idempotency_key, source_account_id, destination_account_id, amount, updated_balance, created_at)
+            VALUES (?1, ?2, ?3, ?4, ?5, CURRENT_TIMESTAMP)
+            ON CONFLICT (idempotency_key) DO NOTHING
+            """, nativeQuery = true)
+    int insertIfAbsent(String idempotencyKey, Long sourceAccountId, Long destinationAccountId, long amount, Long updatedBalance);
+
+    // Deletes up to the limit of keys stored before the cutoff
+    @Modifying
+    @Transactional
+    @Query(value = """
+            DELETE FROM idempotency_keys WHERE idempotency_key IN (
+                SELECT idempotency_key FROM idempotency_keys WHERE created_at < ?1 LIMIT ?2)
+            """, nativeQuery = true)
+    int deleteCreatedBefore(LocalDateTime cutoff, int limit);
+}
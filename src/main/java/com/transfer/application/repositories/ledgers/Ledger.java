@@ -5,13 +5,17 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
@@ -21,11 +25,16 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "ledgers")
+@Table(name = "ledgers", indexes = {
+        @Index(name = "ledgers_transaction_id_idx", columnList = "transaction_id"),
+        @Index(name = "ledgers_account_id_id_idx", columnList = "account_id, id")
+})
 public class Ledger {
 
+    // Ids are allocated from the sequence in blocks, so that inserts can be batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ledgers_seq")
+    @SequenceGenerator(name = "ledgers_seq", sequenceName = "ledgers_seq", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
@@ -35,29 +44,39 @@ public class Ledger {
     @Column(name = "account_id", nullable = false)
     private Long accountId;
 
-    @Column(name = "credit", precision = 4)
-    private Double credit;
+    // Bucket the entry was applied to for bucketed accounts, balances are then the ones of the bucket
+    @Column(name = "bucket")
+    private Integer bucket;
 
-    @Column(name = "debit", precision = 4)
-    private Double debit;
+    // Amounts and balances are in minor units (cents)
+    @Column(name = "credit")
+    private Long credit;
 
-    @Column(name = "start_balance", precision = 4, nullable = false)
-    private Double startBalance;
+    @Column(name = "debit")
+    private Long debit;
 
-    @Column(name = "end_balance", precision = 4)
-    private Double endBalance;
+    @Column(name = "start_balance", nullable = false)
+    private Long startBalance;
 
+    @Column(name = "end_balance")
+    private Long endBalance;
+
+    // Stored as a smallint, as on PostgreSQL, since H2 in PostgreSQL mode has no tinyint
+    @JdbcTypeCode(SqlTypes.SMALLINT)
     @Column(name = "status", nullable = false)
     private Status status = Status.IN_PROGRESS;
 
+    // Partition key of the table, an entry never moves to another partition
     @CreationTimestamp
-    @Column(name = "created_at")
+    @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
     @UpdateTimestamp
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // Entries are written completed, IN_PROGRESS describes queued transfers which are not settled yet and entries of
+    // the JPA mode with append-only writes turned off
     public enum Status {
         IN_PROGRESS,
         COMPLETED,
@@ -0,0 +1,25 @@
+package com.transfer.application.repositories.ledgers;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public interface LedgerLine {
+
+    Long getId();
+
+    UUID getTransactionId();
+
+    Integer getBucket();
+
+    Long getCredit();
+
+    Long getDebit();
+
+    Long getStartBalance();
+
+    Long getEndBalance();
+
+    Ledger.Status getStatus();
+
+    LocalDateTime getCreatedAt();
+}
@@ -1,8 +1,27 @@
 package com.transfer.application.repositories.ledgers;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
 @Repository
-public interface LedgerRepository extends JpaRepository<Ledger, Long> {
+public interface LedgerRepository extends JpaRepository<Ledger, Long>, LedgerRepositoryCustom {
+
+    List<Ledger> findLedgersByTransactionId(UUID transactionId);
+
+    // Entries of the account below the cursor id, newest first. The (account_id, id) index serves both the seek
+    // and the order, the time range only filters the entries read from it
+    @Query(value = """
+            SELECT l.id AS id, l.transactionId AS transactionId, l.bucket AS bucket, l.credit AS credit, l.debit AS debit,
+                   l.startBalance AS startBalance, l.endBalance AS endBalance, l.status AS status, l.createdAt AS createdAt
+            FROM Ledger l
+            WHERE l.accountId = ?1 AND l.id < ?2 AND l.createdAt >= ?3 AND l.createdAt < ?4
+            ORDER BY l.id DESC
+            """)
+    List<LedgerLine> findStatement(Long accountId, Long beforeId, LocalDateTime from, LocalDateTime to, Limit limit);
 }
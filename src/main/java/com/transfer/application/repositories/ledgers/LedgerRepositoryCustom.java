@@ -0,0 +1,14 @@
+package com.transfer.application.repositories.ledgers;
+
+import java.util.List;
+
+public interface LedgerRepositoryCustom {
+
+    /**
+     * Inserts the ledger entries using multi-row INSERT statements, bypassing the persistence context.
+     * Generated ids are not populated back into the entries.
+     *
+     * @param ledgers entries to insert
+     */
+    void insertAll(List<Ledger> ledgers);
+}
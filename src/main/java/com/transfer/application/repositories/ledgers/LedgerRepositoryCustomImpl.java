@@ -0,0 +1,54 @@
+package com.transfer.application.repositories.ledgers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+public class LedgerRepositoryCustomImpl implements LedgerRepositoryCustom {
+
+    private static final String INSERT_SQL = "INSERT INTO ledgers (id, transaction_id, account_id, bucket, credit, debit, start_balance, end_balance, status, created_at, updated_at) VALUES ";
+    // Every nextval reserves a whole block of the pooled sequence, so these ids never collide with the ones
+    // Hibernate hands out from its own blocks
+    private static final String ROW_PLACEHOLDERS = "(nextval('ledgers_seq'), ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Keeps each statement well below the PostgreSQL limit of 32767 bind parameters
+    private static final int ROWS_PER_STATEMENT = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertAll(List<Ledger> ledgers) {
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (int from = 0; from < ledgers.size(); from += ROWS_PER_STATEMENT) {
+            List<Ledger> rows = ledgers.subList(from, Math.min(from + ROWS_PER_STATEMENT, ledgers.size()));
+            String sql = INSERT_SQL + String.join(", ", Collections.nCopies(rows.size(), ROW_PLACEHOLDERS));
+            this.jdbcTemplate.update(sql, ps -> bindRows(ps, rows, now));
+        }
+    }
+
+    private void bindRows(PreparedStatement ps, List<Ledger> rows, Timestamp now) throws SQLException {
+
+        int index = 1;
+        for (Ledger ledger : rows) {
+            ps.setObject(index++, ledger.getTransactionId());
+            ps.setLong(index++, ledger.getAccountId());
+            ps.setObject(index++, ledger.getBucket(), Types.INTEGER);
+            ps.setObject(index++, ledger.getCredit(), Types.BIGINT);
+            ps.setObject(index++, ledger.getDebit(), Types.BIGINT);
+            ps.setLong(index++, ledger.getStartBalance());
+            ps.setObject(index++, ledger.getEndBalance(), Types.BIGINT);
+            ps.setInt(index++, ledger.getStatus().ordinal());
+            ps.setTimestamp(index++, now);
+            ps.setTimestamp(index++, now);
+        }
+    }
+}
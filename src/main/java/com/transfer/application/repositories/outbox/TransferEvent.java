@@ -0,0 +1,55 @@
+package com.transfer.application.repositories.outbox;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "transfer_events")
+public class TransferEvent {
+
+    // Ids are taken from the sequence when the row is inserted, after the accounts of the transfer are locked, so the
+    // events of an account are numbered in the order their transfers commit
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transfer_events_seq")
+    @SequenceGenerator(name = "transfer_events_seq", sequenceName = "transfer_events_seq", allocationSize = 1)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "transaction_id", nullable = false)
+    private UUID transactionId;
+
+    @Column(name = "source_account_id", nullable = false)
+    private Long sourceAccountId;
+
+    @Column(name = "destination_account_id", nullable = false)
+    private Long destinationAccountId;
+
+    // Amount and balances in minor units (cents), the balance of a bucketed account is not known to the transfer
+    @Column(name = "amount", nullable = false)
+    private Long amount;
+
+    @Column(name = "source_balance")
+    private Long sourceBalance;
+
+    @Column(name = "destination_balance")
+    private Long destinationBalance;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,18 @@
+package com.transfer.application.repositories.outbox;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface TransferEventRepository extends JpaRepository<TransferEvent, Long>, TransferEventRepositoryCustom {
+
+    List<TransferEvent> findAllByOrderByIdAsc(Limit limit);
+
+    // Only one relay drains the outbox at a time, the lock is held until the draining transaction ends
+    @Query(value = "SELECT pg_try_advisory_xact_lock(?1)", nativeQuery = true)
+    boolean tryLock(long key);
+}
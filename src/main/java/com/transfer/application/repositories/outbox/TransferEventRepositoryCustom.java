@@ -0,0 +1,14 @@
+package com.transfer.application.repositories.outbox;
+
+import java.util.List;
+
+public interface TransferEventRepositoryCustom {
+
+    /**
+     * Inserts the events using a multi-row INSERT statement, bypassing the persistence context. Ids are taken from
+     * the sequence by the statement and are not populated back into the events.
+     *
+     * @param events events to insert
+     */
+    void insertAll(List<TransferEvent> events);
+}
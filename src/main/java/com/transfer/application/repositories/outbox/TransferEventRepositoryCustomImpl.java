@@ -0,0 +1,47 @@
+package com.transfer.application.repositories.outbox;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Collections;
+import java.util.List;
+
+public class TransferEventRepositoryCustomImpl implements TransferEventRepositoryCustom {
+
+    private static final String INSERT_SQL = "INSERT INTO transfer_events (id, transaction_id, source_account_id, destination_account_id, amount, source_balance, destination_balance, created_at) VALUES ";
+    private static final String ROW_PLACEHOLDERS = "(nextval('transfer_events_seq'), ?, ?, ?, ?, ?, ?, ?)";
+
+    // Keeps each statement well below the PostgreSQL limit of 32767 bind parameters
+    private static final int ROWS_PER_STATEMENT = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertAll(List<TransferEvent> events) {
+
+        for (int from = 0; from < events.size(); from += ROWS_PER_STATEMENT) {
+            List<TransferEvent> rows = events.subList(from, Math.min(from + ROWS_PER_STATEMENT, events.size()));
+            String sql = INSERT_SQL + String.join(", ", Collections.nCopies(rows.size(), ROW_PLACEHOLDERS));
+            this.jdbcTemplate.update(sql, ps -> bindRows(ps, rows));
+        }
+    }
+
+    private void bindRows(PreparedStatement ps, List<TransferEvent> rows) throws SQLException {
+
+        int index = 1;
+        for (TransferEvent event : rows) {
+            ps.setObject(index++, event.getTransactionId());
+            ps.setLong(index++, event.getSourceAccountId());
+            ps.setLong(index++, event.getDestinationAccountId());
+            ps.setLong(index++, event.getAmount());
+            ps.setObject(index++, event.getSourceBalance(), Types.BIGINT);
+            ps.setObject(index++, event.getDestinationBalance(), Types.BIGINT);
+            ps.setTimestamp(index++, Timestamp.valueOf(event.getCreatedAt()));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.transfer.application.repositories.queue;
+
+import com.transfer.application.repositories.ledgers.Ledger;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "transfer_queue", indexes = @Index(name = "transfer_queue_status_idx", columnList = "status, created_at"))
+public class QueuedTransfer {
+
+    // Becomes the transaction id of the ledger entries once the transfer is settled
+    @Id
+    @Column(name = "transaction_id")
+    private UUID transactionId;
+
+    // Stored in idempotency_keys by the transaction settling the transfer, the same store as for synchronous requests
+    @Column(name = "idempotency_key", length = 255)
+    private String idempotencyKey;
+
+    @Column(name = "source_account_id", nullable = false)
+    private Long sourceAccountId;
+
+    @Column(name = "destination_account_id", nullable = false)
+    private Long destinationAccountId;
+
+    // Amount and balance in minor units (cents)
+    @Column(name = "amount", nullable = false)
+    private Long amount;
+
+    @Column(name = "updated_balance")
+    private Long updatedBalance;
+
+    @JdbcTypeCode(SqlTypes.SMALLINT)
+    @Column(name = "status", nullable = false)
+    private Ledger.Status status = Ledger.Status.IN_PROGRESS;
+
+    @Column(name = "error")
+    private String error;
+
+    // A worker settles the transfer until then, afterwards another worker may claim it again
+    @Column(name = "claimed_until")
+    private LocalDateTime claimedUntil;
+
+    @CreationTimestamp
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
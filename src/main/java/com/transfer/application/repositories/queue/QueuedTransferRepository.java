@@ -0,0 +1,57 @@
+package com.transfer.application.repositories.queue;
+
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface QueuedTransferRepository extends JpaRepository<QueuedTransfer, UUID>, QueuedTransferRepositoryCustom {
+
+    // Returns 0 when a transfer with the transaction id is already queued
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO transfer_queue (transaction_id, idempotency_key, source_account_id, destination_account_id, amount, status, created_at, updated_at)
+            VALUES (?1, ?2, ?3, ?4, ?5, ?6, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)
+            ON CONFLICT (transaction_id) DO NOTHING
+            """, nativeQuery = true)
+    int insertIfAbsent(UUID transactionId, String idempotencyKey, Long sourceAccountId, Long destinationAccountId, long amount, int status);
+
+    // Claims the oldest unsettled transfers whose source account belongs to the partition and which no other worker
+    // holds, for the given number of seconds. Rows locked by a concurrent claim are skipped instead of waited for
+    @Transactional
+    @Query(value = """
+            UPDATE transfer_queue SET claimed_until = CURRENT_TIMESTAMP + ?5 * INTERVAL '1 second'
+            WHERE transaction_id IN (
+                SELECT transaction_id FROM transfer_queue
+                WHERE status = ?1 AND MOD(source_account_id, ?2) = ?3
+                AND (claimed_until IS NULL OR claimed_until < CURRENT_TIMESTAMP)
+                ORDER BY created_at, transaction_id
+                LIMIT ?4
+                FOR UPDATE SKIP LOCKED)
+            RETURNING *
+            """, nativeQuery = true)
+    List<QueuedTransfer> claimPending(int status, int partitions, int partition, int limit, long claimSeconds);
+
+    // Lets another pass claim the transfers again right away, once they are still unsettled
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE transfer_queue SET claimed_until = NULL WHERE transaction_id IN ?1 AND status = ?2", nativeQuery = true)
+    int release(Collection<UUID> transactionIds, int status);
+
+    // Deletes up to the limit of transfers settled before the cutoff, transfers in progress are kept
+    @Modifying
+    @Transactional
+    @Query(value = """
+            DELETE FROM transfer_queue WHERE transaction_id IN (
+                SELECT transaction_id FROM transfer_queue WHERE status <> ?2 AND updated_at < ?1 LIMIT ?3)
+            """, nativeQuery = true)
+    int deleteSettledBefore(LocalDateTime cutoff, int status, int limit);
+}
@@ -0,0 +1,15 @@
+package com.transfer.application.repositories.queue;
+
+import java.util.List;
+
+public interface QueuedTransferRepositoryCustom {
+
+    /**
+     * Writes the status, balance and error of the settled transfers with one batched statement. Transfers which
+     * are no longer in progress are left untouched, so settling a transfer twice does not overwrite its result.
+     *
+     * @param transfers settled transfers
+     * @return the number of rows updated per transfer, 0 for a transfer which was already settled
+     */
+    int[] settleAll(List<QueuedTransfer> transfers);
+}
@@ -0,0 +1,32 @@
+package com.transfer.application.repositories.queue;
+
+import com.transfer.application.repositories.ledgers.Ledger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Types;
+import java.util.List;
+
+public class QueuedTransferRepositoryCustomImpl implements QueuedTransferRepositoryCustom {
+
+    private static final String SETTLE_SQL = "UPDATE transfer_queue SET status = ?, updated_balance = ?, error = ?, updated_at = CURRENT_TIMESTAMP WHERE transaction_id = ? AND status = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int[] settleAll(List<QueuedTransfer> transfers) {
+
+        if (transfers.isEmpty()) {
+            return new int[0];
+        }
+        int[][] counts = this.jdbcTemplate.batchUpdate(SETTLE_SQL, transfers, transfers.size(), (ps, transfer) -> {
+            ps.setInt(1, transfer.getStatus().ordinal());
+            ps.setObject(2, transfer.getUpdatedBalance(), Types.BIGINT);
+            ps.setString(3, transfer.getError());
+            ps.setObject(4, transfer.getTransactionId());
+            ps.setInt(5, Ledger.Status.IN_PROGRESS.ordinal());
+        });
+        return counts[0];
+    }
+}
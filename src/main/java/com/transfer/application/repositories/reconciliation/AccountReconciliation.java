@@ -0,0 +1,47 @@
+package com.transfer.application.repositories.reconciliation;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "account_reconciliations", indexes = @Index(name = "account_reconciliations_drift_idx", columnList = "drift"))
+public class AccountReconciliation {
+
+    @Id
+    @Column(name = "account_id")
+    private Long accountId;
+
+    // Balance not explained by ledger entries, the initial balance of the account, in minor units (cents)
+    @Column(name = "opening_balance", nullable = false)
+    private long openingBalance;
+
+    // Sum of credits minus debits of the entries created before reconciled through
+    @Column(name = "ledger_total", nullable = false)
+    private long ledgerTotal;
+
+    @Column(name = "reconciled_through", nullable = false)
+    private LocalDateTime reconciledThrough;
+
+    // Balance of the account and its buckets when last updated, and its difference to the expected balance
+    @Column(name = "balance", nullable = false)
+    private long balance;
+
+    @Column(name = "drift", nullable = false)
+    private long drift;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,18 @@
+package com.transfer.application.repositories.reconciliation;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface AccountReconciliationRepository extends JpaRepository<AccountReconciliation, Long> {
+
+    @Query("SELECT r FROM AccountReconciliation r WHERE r.drift <> 0 ORDER BY ABS(r.drift) DESC, r.accountId")
+    List<AccountReconciliation> findDrifted(Limit limit);
+
+    @Query("SELECT COUNT(r) FROM AccountReconciliation r WHERE r.drift <> 0")
+    long countDrifted();
+}
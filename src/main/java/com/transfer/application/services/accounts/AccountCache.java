@@ -0,0 +1,89 @@
+package com.transfer.application.services.accounts;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.transfer.application.repositories.accounts.Account;
+import com.transfer.application.repositories.accounts.AccountRepository;
+import com.transfer.application.system.datasource.ReplicaRouting;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Bounded read-through cache of accounts keyed by the business account id, which also holds the mapping to the
+ * surrogate id. Accounts are evicted once a transfer touching them commits instead of having their balance written
+ * into the cache, as the commits of concurrent transfers do not reach the cache in the order they were made. An
+ * eviction waits for a load of the same account in flight, so a balance read before the commit is not kept either.
+ * A cached balance may still be behind the database, callers only use it to reject a transfer after reloading it.
+ * <p>
+ * Balance reads which tolerate the replica lag use {@link #findOnReplica}, whose misses are read from the replica.
+ * Accounts read from the replica are not cached, transfers only ever act on accounts loaded from the primary.
+ */
+@Component
+@ConditionalOnProperty(name = "transfer.account-cache.enabled", havingValue = "true")
+public class AccountCache {
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Value("${transfer.account-cache.maximum-size:100000}")
+    private long maximumSize;
+
+    @Value("${transfer.account-cache.expire-after-write:30s}")
+    private Duration expireAfterWrite;
+
+    private Cache<Long, CachedAccount> cache;
+
+    @PostConstruct
+    public void init() {
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(this.maximumSize)
+                .expireAfterWrite(this.expireAfterWrite)
+                .build();
+    }
+
+    public Account find(Long accountId) {
+
+        // Missing accounts are not cached, the loader returning null leaves no entry behind
+        CachedAccount cached = this.cache.get(accountId, key -> {
+            Account account = this.accountRepository.findAccountByAccountId(key);
+            return account == null ? null : CachedAccount.of(account);
+        });
+        return cached == null ? null : cached.toAccount();
+    }
+
+    public Account findOnReplica(Long accountId) {
+
+        CachedAccount cached = this.cache.getIfPresent(accountId);
+        return cached != null
+                ? cached.toAccount()
+                : ReplicaRouting.onReplica(() -> this.accountRepository.findAccountByAccountId(accountId));
+    }
+
+    public void evict(Long accountId) {
+        this.cache.invalidate(accountId);
+    }
+
+    record CachedAccount(Long id, Long accountId, String name, long balance, Integer bucketCount) {
+
+        static CachedAccount of(Account account) {
+            return new CachedAccount(account.getId(), account.getAccountId(), account.getName(), account.getBalance(), account.getBucketCount());
+        }
+
+        // Callers get their own copy, so the cached entry cannot be modified through it
+        Account toAccount() {
+            return Account.builder()
+                    .id(this.id)
+                    .accountId(this.accountId)
+                    .name(this.name)
+                    .balance(this.balance)
+                    .bucketCount(this.bucketCount)
+                    .build();
+        }
+    }
+}
@@ -1,24 +1,57 @@
 package com.transfer.application.services.accounts;
 
 import com.transfer.application.dtos.accounts.AccountInfo;
+import com.transfer.application.dtos.accounts.AccountStatement;
+import com.transfer.application.dtos.accounts.ConfigureBuckets;
 import com.transfer.application.dtos.accounts.CreateAccount;
+import com.transfer.application.dtos.common.Money;
 import com.transfer.application.repositories.accounts.Account;
 import com.transfer.application.repositories.accounts.AccountRepository;
+import com.transfer.application.repositories.buckets.AccountBucket;
+import com.transfer.application.repositories.buckets.AccountBucketRepository;
+import com.transfer.application.repositories.ledgers.LedgerLine;
+import com.transfer.application.repositories.ledgers.LedgerRepository;
+import com.transfer.application.services.engine.InMemoryBalanceEngine;
+import com.transfer.application.system.datasource.ReplicaRouting;
+import jakarta.transaction.Transactional;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.IntStream;
+
 @Service
 public class AccountService {
 
     private static final Logger logger = LogManager.getLogger();
 
+    public static final int MAX_STATEMENT_LIMIT = 1000;
+
+    // Bounds of the time range when the caller does not restrict it, within the range of a PostgreSQL timestamp
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 0, 0);
+
     @Autowired
     private AccountRepository accountRepository;
 
+    @Autowired
+    private AccountBucketRepository accountBucketRepository;
+
+    @Autowired
+    private LedgerRepository ledgerRepository;
+
+    @Autowired(required = false)
+    private InMemoryBalanceEngine balanceEngine;
+
+    @Autowired(required = false)
+    private AccountCache accountCache;
+
     public Long createAccount(CreateAccount createAccount) {
 
         // Check if account exists with same account id, raise error otherwise
@@ -32,31 +65,138 @@ public class AccountService {
         Account account = Account.builder()
                 .accountId(createAccount.getAccountId())
                 .name(createAccount.getName())
-                .balance(createAccount.getInitialBalance())
+                .balance(Money.toMinorUnits(createAccount.getInitialBalance()))
                 .build();
         account = this.accountRepository.save(account);
         logger.info("Account created, account id = {}", account.getAccountId());
 
+        // The balance engine has to know about the account before it can take part in transfers
+        if (this.balanceEngine != null) {
+            this.balanceEngine.register(account);
+        }
+
         return account.getId();
     }
 
     public AccountInfo getAccountDetails(Long accountId) {
 
         // Check if account exists against the account id, raise error if not found
-        Account account = this.accountRepository.findAccountByAccountId(accountId);
+        // Balance reads tolerate the replica lag, accounts missing from the cache are read from the replica
+        Account account = this.accountCache != null
+                ? this.accountCache.findOnReplica(accountId)
+                : ReplicaRouting.onReplica(() -> this.accountRepository.findAccountByAccountId(accountId));
         if (account == null) {
             logger.error("Account not found, account id = {}", accountId);
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Account not found");
         }
 
+        // Balance of a bucketed account is spread across the account row and its buckets, the balance engine
+        // is ahead of the database when enabled
+        Long balance = this.balanceEngine != null ? this.balanceEngine.balanceOf(accountId) : null;
+        if (balance == null) {
+            balance = account.getBalance();
+            if (account.getBucketCount() != null) {
+                balance += ReplicaRouting.onReplica(() -> this.accountBucketRepository.sumBalanceByAccountId(accountId));
+            }
+        }
+
         // Prepare and return the fetched account information
         AccountInfo accountInfo = AccountInfo.builder()
                 .accountId(account.getAccountId())
                 .name(account.getName())
-                .balance(account.getBalance())
+                .balance(Money.fromMinorUnits(balance))
                 .build();
         logger.info("Account details retrieved, account id = {}", accountId);
 
         return accountInfo;
     }
+
+    public AccountStatement getStatement(Long accountId, Long before, LocalDateTime from, LocalDateTime to, int limit) {
+
+        if (limit < 1 || limit > MAX_STATEMENT_LIMIT) {
+            logger.error("Invalid statement limit, account id = {}, limit = {}", accountId, limit);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + MAX_STATEMENT_LIMIT);
+        }
+        if (from != null && to != null && !from.isBefore(to)) {
+            logger.error("Invalid statement range, account id = {}, from = {}, to = {}", accountId, from, to);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "From must be before to");
+        }
+
+        // Check if account exists against the account id, raise error if not found
+        Account account = this.accountCache != null
+                ? this.accountCache.findOnReplica(accountId)
+                : ReplicaRouting.onReplica(() -> this.accountRepository.findAccountByAccountId(accountId));
+        if (account == null) {
+            logger.error("Account not found, account id = {}", accountId);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Account not found");
+        }
+
+        // One entry more than the page is read to know whether another page follows
+        List<LedgerLine> lines = ReplicaRouting.onReplica(() -> this.ledgerRepository.findStatement(accountId,
+                before != null ? before : Long.MAX_VALUE,
+                from != null ? from : EARLIEST,
+                to != null ? to : LATEST,
+                Limit.of(limit + 1)));
+        boolean hasMore = lines.size() > limit;
+        List<AccountStatement.Entry> entries = lines.stream()
+                .limit(limit)
+                .map(line -> AccountStatement.Entry.builder()
+                        .id(line.getId())
+                        .transactionId(line.getTransactionId())
+                        .bucket(line.getBucket())
+                        .credit(Money.fromMinorUnits(line.getCredit()))
+                        .debit(Money.fromMinorUnits(line.getDebit()))
+                        .startBalance(Money.fromMinorUnits(line.getStartBalance()))
+                        .endBalance(Money.fromMinorUnits(line.getEndBalance()))
+                        .status(line.getStatus())
+                        .createdAt(line.getCreatedAt())
+                        .build())
+                .toList();
+        logger.info("Account statement retrieved, account id = {}, entries = {}", accountId, entries.size());
+
+        return AccountStatement.builder()
+                .accountId(accountId)
+                .entries(entries)
+                .nextCursor(hasMore ? entries.get(entries.size() - 1).getId() : null)
+                .build();
+    }
+
+    @Transactional
+    public void configureBuckets(Long accountId, ConfigureBuckets configureBuckets) {
+
+        // Check if account exists against the account id, raise error if not found
+        Account account = this.accountRepository.findAccountByAccountId(accountId);
+        if (account == null) {
+            logger.error("Account not found, account id = {}", accountId);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Account not found");
+        }
+
+        // Buckets can only be configured once, their balances are folded back into the account on debits
+        if (account.getBucketCount() != null) {
+            logger.error("Account buckets already configured, account id = {}", accountId);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Account buckets already configured");
+        }
+
+        // The bucket count is set by a targeted update, which also rejects a concurrent configuration of the same
+        // account. Transfers committing meanwhile only change the balance, which is not written here
+        if (this.accountRepository.configureBucketCount(account.getId(), configureBuckets.getBucketCount()) == 0) {
+            logger.error("Account buckets already configured, account id = {}", accountId);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Account buckets already configured");
+        }
+
+        // Create empty buckets, the existing balance stays on the account row
+        List<AccountBucket> buckets = IntStream.range(0, configureBuckets.getBucketCount())
+                .mapToObj(bucket -> AccountBucket.builder()
+                        .accountId(accountId)
+                        .bucket(bucket)
+                        .balance(0L)
+                        .build())
+                .toList();
+        this.accountBucketRepository.saveAll(buckets);
+
+        if (this.accountCache != null) {
+            this.accountCache.evict(accountId);
+        }
+        logger.info("Account buckets configured, account id = {}, buckets = {}", accountId, configureBuckets.getBucketCount());
+    }
 }
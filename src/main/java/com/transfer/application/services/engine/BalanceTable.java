@@ -0,0 +1,118 @@
+package com.transfer.application.services.engine;
+
+import java.util.Arrays;
+
+/**
+ * Array backed map of account id to balance, keyed by primitive longs so that no boxing happens on lookups.
+ * Accounts are stored densely by index and located through an open addressing table. The table is not
+ * thread safe, the engine coordinates access to it.
+ */
+class BalanceTable {
+
+    private long[] accountIds;
+    private long[] ids;
+    private long[] balances;
+    private int size;
+
+    // Dense index + 1 of the account stored in the slot, 0 marks an empty slot
+    private int[] slots;
+    private int mask;
+
+    BalanceTable(int expectedSize) {
+
+        int capacity = Math.max(16, expectedSize);
+        this.accountIds = new long[capacity];
+        this.ids = new long[capacity];
+        this.balances = new long[capacity];
+        resize(slotCount(capacity));
+    }
+
+    int indexOf(long accountId) {
+
+        int slot = hash(accountId) & this.mask;
+        while (true) {
+            int entry = this.slots[slot];
+            if (entry == 0) {
+                return -1;
+            } else if (this.accountIds[entry - 1] == accountId) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+    }
+
+    int put(long accountId, long id, long balance) {
+
+        int index = indexOf(accountId);
+        if (index >= 0) {
+            this.ids[index] = id;
+            this.balances[index] = balance;
+            return index;
+        }
+
+        if (this.size == this.accountIds.length) {
+            int capacity = this.accountIds.length * 2;
+            this.accountIds = Arrays.copyOf(this.accountIds, capacity);
+            this.ids = Arrays.copyOf(this.ids, capacity);
+            this.balances = Arrays.copyOf(this.balances, capacity);
+        }
+        if (this.size * 2 >= this.slots.length) {
+            resize(this.slots.length * 2);
+        }
+
+        index = this.size++;
+        this.accountIds[index] = accountId;
+        this.ids[index] = id;
+        this.balances[index] = balance;
+        insertSlot(accountId, index);
+        return index;
+    }
+
+    long accountId(int index) {
+        return this.accountIds[index];
+    }
+
+    long id(int index) {
+        return this.ids[index];
+    }
+
+    long balance(int index) {
+        return this.balances[index];
+    }
+
+    void balance(int index, long balance) {
+        this.balances[index] = balance;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    private void resize(int slotCount) {
+
+        this.slots = new int[slotCount];
+        this.mask = slotCount - 1;
+        for (int index = 0; index < this.size; index++) {
+            insertSlot(this.accountIds[index], index);
+        }
+    }
+
+    private void insertSlot(long accountId, int index) {
+
+        int slot = hash(accountId) & this.mask;
+        while (this.slots[slot] != 0) {
+            slot = (slot + 1) & this.mask;
+        }
+        this.slots[slot] = index + 1;
+    }
+
+    // Smallest power of two keeping the load factor of the slots at or below one half
+    private static int slotCount(int capacity) {
+        return Integer.highestOneBit(capacity * 2 - 1) << 1;
+    }
+
+    private static int hash(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
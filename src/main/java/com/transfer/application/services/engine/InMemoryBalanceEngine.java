@@ -0,0 +1,450 @@
+package com.transfer.application.services.engine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.transfer.application.dtos.common.Money;
+import com.transfer.application.dtos.transactions.SubmitTransaction;
+import com.transfer.application.dtos.transactions.TransactionSuccess;
+import com.transfer.application.repositories.accounts.Account;
+import com.transfer.application.repositories.accounts.AccountBalance;
+import com.transfer.application.repositories.accounts.AccountRepository;
+import com.transfer.application.repositories.checkpoints.Checkpoint;
+import com.transfer.application.repositories.checkpoints.CheckpointRepository;
+import com.transfer.application.repositories.ledgers.Ledger;
+import com.transfer.application.repositories.ledgers.LedgerRepository;
+import com.transfer.application.repositories.outbox.TransferEvent;
+import com.transfer.application.repositories.outbox.TransferEventRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps every account balance in memory and applies transfers under per-account striped locks. Each transfer is
+ * appended to a journal which is fsynced before the caller gets a response, ledger entries and balance updates
+ * are written to the database in batches by a background flusher. On startup, journal entries which did not make
+ * it to the database are flushed before the balances are loaded.
+ * <p>
+ * Only entries which are durable in the journal are flushed. If the journal cannot be written or synced, the engine
+ * halts: it rejects every further transfer, as the balances in memory may include transfers which are not durable,
+ * and the application has to be restarted, which replays whatever reached the journal.
+ * <p>
+ * A transfer submitted with a transaction id is applied at most once. The ids journaled recently are kept in
+ * memory and older ones are found through their ledger entries, a transfer submitted again gets the balance left
+ * by its first application.
+ */
+@Service
+@ConditionalOnProperty(name = "transfer.execution.mode", havingValue = "MEMORY")
+public class InMemoryBalanceEngine {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private static final String CHECKPOINT = "balance-engine";
+    private static final int STRIPES = 1024;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private LedgerRepository ledgerRepository;
+
+    @Autowired
+    private CheckpointRepository checkpointRepository;
+
+    @Autowired
+    private TransferEventRepository transferEventRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${transfer.engine.journal-path:data/transfer-journal.bin}")
+    private String journalPath;
+
+    @Value("${transfer.engine.flush-interval-ms:50}")
+    private long flushIntervalMs;
+
+    @Value("${transfer.engine.flush-batch-size:5000}")
+    private int flushBatchSize;
+
+    @Value("${transfer.engine.max-pending:1000000}")
+    private int maxPending;
+
+    @Value("${transfer.engine.applied-ids-size:100000}")
+    private long appliedIdsSize;
+
+    @Value("${transfer.outbox.enabled:false}")
+    private boolean outboxEnabled;
+
+    private final ReentrantReadWriteLock tableLock = new ReentrantReadWriteLock();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    // Entries appended to the journal but not yet flushed, counted separately as the queue size is not constant time
+    private final Queue<JournalEntry> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    // Entries drained from the queue whose flush failed, only accessed by the flusher thread
+    private final List<JournalEntry> unflushed = new ArrayList<>();
+
+    // Transaction ids given by callers and journaled by this engine, kept well past their flush so that a retry
+    // checking the ledgers just before the flush committed still finds them here
+    private Cache<UUID, Applied> applied;
+
+    private BalanceTable table;
+    private TransferJournal journal;
+    private long sequence;
+    // Sequence of the last entry before the current journal, the entries of the journal are numbered on from it
+    private long journalBase;
+    private ScheduledExecutorService flusher;
+
+    private volatile boolean halted;
+
+    public InMemoryBalanceEngine() {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            this.stripes[stripe] = new ReentrantLock();
+        }
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+
+        this.applied = Caffeine.newBuilder()
+                .maximumSize(this.appliedIdsSize)
+                .build();
+
+        // Flush the journal entries which are not yet reflected in the database
+        this.journal = new TransferJournal(Path.of(this.journalPath));
+        long checkpoint = this.checkpointRepository.findById(CHECKPOINT)
+                .map(Checkpoint::getPosition)
+                .orElse(0L);
+        List<JournalEntry> entries = this.journal.read();
+        List<JournalEntry> replay = entries.stream()
+                .filter(entry -> entry.sequence() > checkpoint)
+                .toList();
+        if (!replay.isEmpty()) {
+            flush(replay);
+            logger.info("Balance engine journal replayed, entries = {}", replay.size());
+        }
+        this.sequence = entries.isEmpty() ? checkpoint : Math.max(checkpoint, entries.get(entries.size() - 1).sequence());
+        this.journal.truncate();
+        this.journalBase = this.sequence;
+
+        // Load every balance, the database is now up to date
+        List<AccountBalance> balances = this.accountRepository.findAllBalances();
+        this.table = new BalanceTable(balances.size() * 2);
+        balances.forEach(balance -> this.table.put(balance.getAccountId(), balance.getId(), balance.getBalance()));
+        logger.info("Balance engine started, accounts = {}, sequence = {}", this.table.size(), this.sequence);
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "balance-engine-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flushPending, this.flushIntervalMs, this.flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+
+        this.flusher.shutdown();
+        this.flusher.awaitTermination(30, TimeUnit.SECONDS);
+        flushPending();
+        this.journal.close();
+        logger.info("Balance engine stopped, pending = {}", this.pendingCount.get());
+    }
+
+    public TransactionSuccess transfer(SubmitTransaction submitTransaction) {
+        return transfer(submitTransaction, null);
+    }
+
+    /**
+     * Applies the transfer under the transaction id, or under a random one if null. Returns the balance left by the
+     * first application if a transfer was already applied under the same id.
+     */
+    public TransactionSuccess transfer(SubmitTransaction submitTransaction, UUID transactionId) {
+
+        // Transfers flushed before the ids were last kept in memory, e.g. before a restart, are in the ledgers
+        if (transactionId != null && this.applied.getIfPresent(transactionId) == null) {
+            Ledger debitEntry = this.ledgerRepository.findLedgersByTransactionId(transactionId)
+                    .stream()
+                    .filter(ledger -> ledger.getDebit() != null)
+                    .findFirst()
+                    .orElse(null);
+            if (debitEntry != null) {
+                logger.info("Transfer already applied, transaction id = {}", transactionId);
+                return TransactionSuccess.builder()
+                        .sourceAccountId(submitTransaction.getSourceAccountId())
+                        .updatedBalance(Money.fromMinorUnits(debitEntry.getEndBalance()))
+                        .build();
+            }
+        }
+
+        if (this.halted) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Transfer engine is halted");
+        }
+
+        // Reject new transfers while the database is too far behind
+        if (this.pendingCount.get() >= this.maxPending) {
+            logger.error("Balance engine saturated, pending = {}", this.pendingCount.get());
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Transfer engine is saturated");
+        }
+
+        long amount = Money.toMinorUnits(submitTransaction.getAmount());
+        long updatedBalance;
+        long position;
+        boolean repeated;
+
+        this.tableLock.readLock().lock();
+        try {
+            int source = this.table.indexOf(submitTransaction.getSourceAccountId());
+            if (source < 0) {
+                logger.error("Source account not found, account id = {}", submitTransaction.getSourceAccountId());
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Source account not found");
+            }
+            int destination = this.table.indexOf(submitTransaction.getDestinationAccountId());
+            if (destination < 0) {
+                logger.error("Destination account not found, account id = {}", submitTransaction.getDestinationAccountId());
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Destination account not found");
+            }
+
+            // Stripes are always locked in the same order so that opposite transfers cannot deadlock
+            ReentrantLock first = this.stripes[Math.min(stripe(source), stripe(destination))];
+            ReentrantLock second = this.stripes[Math.max(stripe(source), stripe(destination))];
+            first.lock();
+            second.lock();
+            try {
+                long sourceBalance = this.table.balance(source);
+                long destinationBalance = this.table.balance(destination);
+
+                // Journal the transfer before applying it, appends are serialized so that sequence follows journal order
+                // and a transaction id is checked and journaled atomically
+                this.appendLock.lock();
+                try {
+                    Applied previous = transactionId != null ? this.applied.getIfPresent(transactionId) : null;
+                    repeated = previous != null;
+                    if (repeated) {
+                        updatedBalance = previous.updatedBalance();
+                        position = previous.position();
+                    } else {
+                        if (sourceBalance < amount) {
+                            logger.error("Insufficient funds, account id = {}, balance = {}", submitTransaction.getSourceAccountId(), sourceBalance);
+                            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Insufficient funds");
+                        }
+                        JournalEntry entry = new JournalEntry(++this.sequence, transactionId != null ? transactionId : UUID.randomUUID(),
+                                this.table.id(source), this.table.accountId(source),
+                                this.table.id(destination), this.table.accountId(destination),
+                                amount, sourceBalance, destinationBalance);
+                        position = this.journal.append(entry);
+                        this.pending.add(entry);
+                        this.pendingCount.incrementAndGet();
+                        updatedBalance = sourceBalance - amount;
+                        if (transactionId != null) {
+                            this.applied.put(transactionId, new Applied(position, updatedBalance));
+                        }
+                    }
+                } catch (IOException e) {
+                    // A partially written entry would misalign every entry appended after it
+                    this.sequence--;
+                    halt("append", e);
+                    throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Transaction failed");
+                } finally {
+                    this.appendLock.unlock();
+                }
+
+                if (!repeated) {
+                    this.table.balance(source, sourceBalance - amount);
+                    this.table.balance(destination, destinationBalance + amount);
+                }
+            } finally {
+                second.unlock();
+                first.unlock();
+            }
+        } finally {
+            this.tableLock.readLock().unlock();
+        }
+
+        // Respond only once the journal entry is durable, concurrent callers share the same fsync. A repeated
+        // transfer waits as well, its entry may still be synced by the caller which appended it. Whether a transfer
+        // whose sync failed is applied is only known once the journal is replayed, its transaction id tells a retry
+        try {
+            this.journal.sync(position);
+        } catch (IOException e) {
+            halt("sync", e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Transaction failed");
+        }
+
+        if (repeated) {
+            logger.info("Transfer already applied, transaction id = {}", transactionId);
+        }
+        return TransactionSuccess.builder()
+                .sourceAccountId(submitTransaction.getSourceAccountId())
+                .updatedBalance(Money.fromMinorUnits(updatedBalance))
+                .build();
+    }
+
+    public Long balanceOf(Long accountId) {
+
+        this.tableLock.readLock().lock();
+        try {
+            int index = this.table.indexOf(accountId);
+            if (index < 0) {
+                return null;
+            }
+            ReentrantLock lock = this.stripes[stripe(index)];
+            lock.lock();
+            try {
+                return this.table.balance(index);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            this.tableLock.readLock().unlock();
+        }
+    }
+
+    public void register(Account account) {
+
+        this.tableLock.writeLock().lock();
+        try {
+            if (this.table.indexOf(account.getAccountId()) < 0) {
+                this.table.put(account.getAccountId(), account.getId(), account.getBalance());
+            }
+        } finally {
+            this.tableLock.writeLock().unlock();
+        }
+    }
+
+    private void flushPending() {
+
+        try {
+            do {
+                // Entries are appended in sequence order, those up to the synced position of the journal are durable
+                long durableSequence = this.journalBase + this.journal.syncedPosition() / TransferJournal.ENTRY_SIZE;
+                while (this.unflushed.size() < this.flushBatchSize) {
+                    JournalEntry entry = this.pending.peek();
+                    if (entry == null || entry.sequence() > durableSequence) {
+                        break;
+                    }
+                    this.unflushed.add(this.pending.poll());
+                }
+                if (this.unflushed.isEmpty()) {
+                    break;
+                }
+
+                flush(this.unflushed);
+                this.pendingCount.addAndGet(-this.unflushed.size());
+                this.unflushed.clear();
+            } while (this.pendingCount.get() >= this.flushBatchSize);
+
+            // Once everything is in the database the journal can start over
+            this.appendLock.lock();
+            try {
+                if (this.pendingCount.get() == 0 && this.journal.size() > 0) {
+                    this.journal.truncate();
+                    this.journalBase = this.sequence;
+                }
+            } finally {
+                this.appendLock.unlock();
+            }
+        } catch (Exception e) {
+            // Entries stay in the unflushed list and are retried on the next run
+            logger.error("Balance engine flush failed, pending = {}, error = {}", this.pendingCount.get(), e.getMessage(), e);
+        }
+    }
+
+    private void flush(List<JournalEntry> entries) {
+
+        List<Ledger> ledgers = new ArrayList<>(entries.size() * 2);
+        List<TransferEvent> events = new ArrayList<>(this.outboxEnabled ? entries.size() : 0);
+        Map<Long, Long> deltas = new HashMap<>();
+        long lastSequence = 0;
+        for (JournalEntry entry : entries) {
+            ledgers.add(Ledger.builder()
+                    .transactionId(entry.transactionId())
+                    .accountId(entry.sourceAccountId())
+                    .debit(entry.amount())
+                    .startBalance(entry.sourceBalance())
+                    .endBalance(entry.sourceBalance() - entry.amount())
+                    .status(Ledger.Status.COMPLETED)
+                    .build());
+            ledgers.add(Ledger.builder()
+                    .transactionId(entry.transactionId())
+                    .accountId(entry.destinationAccountId())
+                    .credit(entry.amount())
+                    .startBalance(entry.destinationBalance())
+                    .endBalance(entry.destinationBalance() + entry.amount())
+                    .status(Ledger.Status.COMPLETED)
+                    .build());
+            if (this.outboxEnabled) {
+                events.add(TransferEvent.builder()
+                        .transactionId(entry.transactionId())
+                        .sourceAccountId(entry.sourceAccountId())
+                        .destinationAccountId(entry.destinationAccountId())
+                        .amount(entry.amount())
+                        .sourceBalance(entry.sourceBalance() - entry.amount())
+                        .destinationBalance(entry.destinationBalance() + entry.amount())
+                        .createdAt(LocalDateTime.now())
+                        .build());
+            }
+            deltas.merge(entry.sourceId(), -entry.amount(), Long::sum);
+            deltas.merge(entry.destinationId(), entry.amount(), Long::sum);
+            lastSequence = Math.max(lastSequence, entry.sequence());
+        }
+
+        // Ledger entries, balances, transfer events and the checkpoint are written together so that a replay never
+        // applies an entry twice
+        long checkpoint = lastSequence;
+        this.transactionTemplate.executeWithoutResult(status -> {
+            this.ledgerRepository.insertAll(ledgers);
+            this.accountRepository.applyBalanceDeltas(deltas);
+            if (!events.isEmpty()) {
+                this.transferEventRepository.insertAll(events);
+            }
+            this.checkpointRepository.save(Checkpoint.builder()
+                    .name(CHECKPOINT)
+                    .position(checkpoint)
+                    .build());
+        });
+        logger.info("Balance engine flushed, entries = {}, checkpoint = {}", entries.size(), checkpoint);
+    }
+
+    private void halt(String operation, IOException e) {
+
+        if (!this.halted) {
+            this.halted = true;
+            logger.error("Balance engine halted, journal {} failed, restart to replay the journal, error = {}", operation, e.getMessage(), e);
+        }
+    }
+
+    private static int stripe(int index) {
+        return index & (STRIPES - 1);
+    }
+
+    // Journal position of a transfer applied under a given transaction id, and the source balance it left
+    private record Applied(long position, long updatedBalance) {
+    }
+}
@@ -0,0 +1,18 @@
+package com.transfer.application.services.engine;
+
+import java.util.UUID;
+
+/**
+ * Transfer applied by the engine, balances are the ones of both accounts before the transfer.
+ */
+record JournalEntry(
+        long sequence,
+        UUID transactionId,
+        long sourceId,
+        long sourceAccountId,
+        long destinationId,
+        long destinationAccountId,
+        long amount,
+        long sourceBalance,
+        long destinationBalance) {
+}
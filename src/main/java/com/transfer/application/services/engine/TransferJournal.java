@@ -0,0 +1,140 @@
+package com.transfer.application.services.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only file of fixed size journal entries. Appends are not thread safe and have to be serialized by the
+ * caller, syncs can be requested concurrently and are grouped so that one fsync covers every entry written
+ * before it started.
+ */
+class TransferJournal implements Closeable {
+
+    static final int ENTRY_SIZE = 10 * Long.BYTES;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(ENTRY_SIZE);
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    private volatile long writtenPosition;
+    private volatile long syncedPosition;
+
+    TransferJournal(Path path) throws IOException {
+
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        // Drop a partially written entry left behind by a crash
+        long size = this.channel.size() - this.channel.size() % ENTRY_SIZE;
+        this.channel.truncate(size);
+        this.channel.position(size);
+        this.writtenPosition = size;
+        this.syncedPosition = size;
+    }
+
+    List<JournalEntry> read() throws IOException {
+
+        List<JournalEntry> entries = new ArrayList<>();
+        ByteBuffer readBuffer = ByteBuffer.allocate(ENTRY_SIZE);
+        for (long position = 0; position < this.writtenPosition; position += ENTRY_SIZE) {
+            readBuffer.clear();
+            while (readBuffer.hasRemaining()) {
+                this.channel.read(readBuffer, position + readBuffer.position());
+            }
+            readBuffer.flip();
+            entries.add(new JournalEntry(
+                    readBuffer.getLong(),
+                    new UUID(readBuffer.getLong(), readBuffer.getLong()),
+                    readBuffer.getLong(),
+                    readBuffer.getLong(),
+                    readBuffer.getLong(),
+                    readBuffer.getLong(),
+                    readBuffer.getLong(),
+                    readBuffer.getLong(),
+                    readBuffer.getLong()));
+        }
+        return entries;
+    }
+
+    long append(JournalEntry entry) throws IOException {
+
+        this.buffer.clear();
+        this.buffer.putLong(entry.sequence())
+                .putLong(entry.transactionId().getMostSignificantBits())
+                .putLong(entry.transactionId().getLeastSignificantBits())
+                .putLong(entry.sourceId())
+                .putLong(entry.sourceAccountId())
+                .putLong(entry.destinationId())
+                .putLong(entry.destinationAccountId())
+                .putLong(entry.amount())
+                .putLong(entry.sourceBalance())
+                .putLong(entry.destinationBalance());
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+
+        this.writtenPosition = this.channel.position();
+        return this.writtenPosition;
+    }
+
+    void sync(long position) throws IOException {
+
+        if (this.syncedPosition >= position) {
+            return;
+        }
+
+        this.syncLock.lock();
+        try {
+            // Another caller may have synced past the position while this one was waiting
+            if (this.syncedPosition >= position) {
+                return;
+            }
+            long target = this.writtenPosition;
+            this.channel.force(false);
+            this.syncedPosition = target;
+        } finally {
+            this.syncLock.unlock();
+        }
+    }
+
+    /**
+     * Discards every entry, only valid once all of them have been flushed. Has to be serialized with appends.
+     */
+    void truncate() throws IOException {
+
+        this.syncLock.lock();
+        try {
+            this.channel.truncate(0);
+            this.channel.position(0);
+            this.writtenPosition = 0;
+            this.syncedPosition = 0;
+        } finally {
+            this.syncLock.unlock();
+        }
+    }
+
+    long size() {
+        return this.writtenPosition;
+    }
+
+    long syncedPosition() {
+        return this.syncedPosition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
@@ -0,0 +1,150 @@
+package com.transfer.application.services.exports;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+/**
+ * Compact binary export of ledger rows. The stream starts with the magic bytes {@code LDG1} and is followed by
+ * blocks of up to {@link #BLOCK_SIZE} rows, each holding its row count and then every column in turn:
+ *
+ * <ol>
+ *     <li>id, as the difference to the previous id</li>
+ *     <li>transaction id, as two fixed eight byte halves</li>
+ *     <li>account id</li>
+ *     <li>bucket, credit, debit and end balance, 0 when null and the value + 1 otherwise</li>
+ *     <li>start balance</li>
+ *     <li>status ordinal, one byte</li>
+ *     <li>created at in microseconds since the epoch (UTC), as the difference to the previous row</li>
+ * </ol>
+ *
+ * Numbers other than the transaction id and status are zigzag encoded variable length integers. A block with
+ * a row count of 0 ends the stream.
+ */
+class ColumnarLedgerWriter implements LedgerWriter {
+
+    static final byte[] MAGIC = {'L', 'D', 'G', '1'};
+    static final int BLOCK_SIZE = 4096;
+
+    // Marks a null value in the nullable columns
+    private static final long NULL = Long.MIN_VALUE;
+
+    private final DataOutputStream output;
+
+    private final long[] ids = new long[BLOCK_SIZE];
+    private final long[] transactionIdsHigh = new long[BLOCK_SIZE];
+    private final long[] transactionIdsLow = new long[BLOCK_SIZE];
+    private final long[] accountIds = new long[BLOCK_SIZE];
+    private final long[] buckets = new long[BLOCK_SIZE];
+    private final long[] credits = new long[BLOCK_SIZE];
+    private final long[] debits = new long[BLOCK_SIZE];
+    private final long[] startBalances = new long[BLOCK_SIZE];
+    private final long[] endBalances = new long[BLOCK_SIZE];
+    private final byte[] statuses = new byte[BLOCK_SIZE];
+    private final long[] createdAts = new long[BLOCK_SIZE];
+    private int size;
+
+    ColumnarLedgerWriter(OutputStream outputStream) throws IOException {
+
+        this.output = new DataOutputStream(new BufferedOutputStream(outputStream, 64 * 1024));
+        this.output.write(MAGIC);
+    }
+
+    @Override
+    public void write(ResultSet row) throws SQLException, IOException {
+
+        UUID transactionId = row.getObject("transaction_id", UUID.class);
+        Timestamp createdAt = row.getTimestamp("created_at");
+        this.ids[this.size] = row.getLong("id");
+        this.transactionIdsHigh[this.size] = transactionId.getMostSignificantBits();
+        this.transactionIdsLow[this.size] = transactionId.getLeastSignificantBits();
+        this.accountIds[this.size] = row.getLong("account_id");
+        this.buckets[this.size] = nullable(row.getObject("bucket", Integer.class));
+        this.credits[this.size] = nullable(row.getObject("credit", Long.class));
+        this.debits[this.size] = nullable(row.getObject("debit", Long.class));
+        this.startBalances[this.size] = row.getLong("start_balance");
+        this.endBalances[this.size] = nullable(row.getObject("end_balance", Long.class));
+        this.statuses[this.size] = (byte) row.getInt("status");
+        this.createdAts[this.size] = createdAt != null ? micros(createdAt) : 0;
+        if (++this.size == BLOCK_SIZE) {
+            writeBlock();
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+
+        if (this.size > 0) {
+            writeBlock();
+        }
+        writeVarLong(0);
+        this.output.flush();
+    }
+
+    private void writeBlock() throws IOException {
+
+        writeVarLong(this.size);
+        long previous = 0;
+        for (int index = 0; index < this.size; index++) {
+            writeVarLong(this.ids[index] - previous);
+            previous = this.ids[index];
+        }
+        for (int index = 0; index < this.size; index++) {
+            this.output.writeLong(this.transactionIdsHigh[index]);
+            this.output.writeLong(this.transactionIdsLow[index]);
+        }
+        writeColumn(this.accountIds);
+        writeNullableColumn(this.buckets);
+        writeNullableColumn(this.credits);
+        writeNullableColumn(this.debits);
+        writeNullableColumn(this.endBalances);
+        writeColumn(this.startBalances);
+        this.output.write(this.statuses, 0, this.size);
+        previous = 0;
+        for (int index = 0; index < this.size; index++) {
+            writeVarLong(this.createdAts[index] - previous);
+            previous = this.createdAts[index];
+        }
+        this.size = 0;
+    }
+
+    private void writeColumn(long[] values) throws IOException {
+
+        for (int index = 0; index < this.size; index++) {
+            writeVarLong(values[index]);
+        }
+    }
+
+    private void writeNullableColumn(long[] values) throws IOException {
+
+        for (int index = 0; index < this.size; index++) {
+            writeVarLong(values[index] == NULL ? 0 : values[index] + 1);
+        }
+    }
+
+    private void writeVarLong(long value) throws IOException {
+
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            this.output.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        this.output.writeByte((int) zigzag);
+    }
+
+    private static long nullable(Number value) {
+        return value != null ? value.longValue() : NULL;
+    }
+
+    private static long micros(Timestamp timestamp) {
+
+        long seconds = timestamp.toLocalDateTime().toEpochSecond(ZoneOffset.UTC);
+        return seconds * 1_000_000 + timestamp.getNanos() / 1_000;
+    }
+}
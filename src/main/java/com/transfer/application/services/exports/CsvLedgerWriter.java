@@ -0,0 +1,76 @@
+package com.transfer.application.services.exports;
+
+import com.transfer.application.dtos.common.Money;
+import com.transfer.application.repositories.ledgers.Ledger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+class CsvLedgerWriter implements LedgerWriter {
+
+    static final String HEADER = "id,transaction_id,account_id,bucket,credit,debit,start_balance,end_balance,status,created_at";
+
+    private static final Ledger.Status[] STATUSES = Ledger.Status.values();
+
+    private final Writer writer;
+
+    CsvLedgerWriter(OutputStream outputStream) throws IOException {
+
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 64 * 1024);
+        this.writer.write(HEADER);
+        this.writer.write('\n');
+    }
+
+    @Override
+    public void write(ResultSet row) throws SQLException, IOException {
+
+        // None of the values can contain a separator, so nothing is quoted
+        this.writer.write(Long.toString(row.getLong("id")));
+        this.writer.write(',');
+        this.writer.write(row.getObject("transaction_id").toString());
+        this.writer.write(',');
+        this.writer.write(Long.toString(row.getLong("account_id")));
+        this.writer.write(',');
+        writeNullable(row.getObject("bucket", Integer.class));
+        this.writer.write(',');
+        writeAmount(row.getObject("credit", Long.class));
+        this.writer.write(',');
+        writeAmount(row.getObject("debit", Long.class));
+        this.writer.write(',');
+        writeAmount(row.getObject("start_balance", Long.class));
+        this.writer.write(',');
+        writeAmount(row.getObject("end_balance", Long.class));
+        this.writer.write(',');
+        this.writer.write(STATUSES[row.getInt("status")].name());
+        this.writer.write(',');
+        Timestamp createdAt = row.getTimestamp("created_at");
+        writeNullable(createdAt != null ? createdAt.toLocalDateTime() : null);
+        this.writer.write('\n');
+    }
+
+    @Override
+    public void finish() throws IOException {
+        this.writer.flush();
+    }
+
+    private void writeAmount(Long minorUnits) throws IOException {
+
+        if (minorUnits != null) {
+            this.writer.write(Money.fromMinorUnits(minorUnits.longValue()).toPlainString());
+        }
+    }
+
+    private void writeNullable(Object value) throws IOException {
+
+        if (value != null) {
+            this.writer.write(value.toString());
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.transfer.application.services.exports;
+
+public enum ExportFormat {
+
+    /**
+     * One line per ledger entry with a header line, amounts and balances in major units.
+     */
+    CSV("text/csv"),
+
+    /**
+     * Binary blocks of up to 4096 entries stored column by column, see {@link ColumnarLedgerWriter}.
+     */
+    COLUMNAR("application/octet-stream");
+
+    private final String contentType;
+
+    ExportFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return this.contentType;
+    }
+}
@@ -0,0 +1,62 @@
+package com.transfer.application.services.exports;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Exports the ledger to a file and exits, when started with {@code --transfer.export.path}. Meant to be run as a
+ * one-off job next to the application, see the README for the options.
+ */
+@Component
+@ConditionalOnProperty(name = "transfer.export.path")
+public class LedgerExportRunner implements ApplicationRunner {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    @Autowired
+    private LedgerExporter ledgerExporter;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Value("${transfer.export.path}")
+    private String path;
+
+    @Value("${transfer.export.format:CSV}")
+    private ExportFormat format;
+
+    // ISO local date times, for example 2025-01-01T00:00:00
+    @Value("${transfer.export.from}")
+    private String from;
+
+    @Value("${transfer.export.to}")
+    private String to;
+
+    @Value("${transfer.export.account-ids:}")
+    private List<Long> accountIds;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+
+        long rows;
+        try (OutputStream outputStream = Files.newOutputStream(Path.of(this.path))) {
+            rows = this.ledgerExporter.export(this.format, LocalDateTime.parse(this.from), LocalDateTime.parse(this.to), this.accountIds, outputStream);
+        }
+        logger.info("Ledger exported, path = {}, rows = {}", this.path, rows);
+        System.exit(SpringApplication.exit(this.applicationContext));
+    }
+}
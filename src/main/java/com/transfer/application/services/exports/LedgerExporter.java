@@ -0,0 +1,110 @@
+package com.transfer.application.services.exports;
+
+import com.transfer.application.system.datasource.ReplicaRouting;
+import jakarta.annotation.PostConstruct;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Streams ledger entries of a time range, optionally restricted to a set of accounts. Rows are read through a
+ * forward-only cursor fetching a bounded number of rows per round trip and written out as they arrive, so memory
+ * use does not grow with the size of the export. Rows are written in the order the database returns them.
+ */
+@Service
+public class LedgerExporter {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private static final String EXPORT_SQL = "SELECT id, transaction_id, account_id, bucket, credit, debit, start_balance, end_balance, status, created_at FROM ledgers WHERE created_at >= ? AND created_at < ?";
+    private static final String ACCOUNTS_FILTER = " AND account_id = ANY (?)";
+
+    public static final int MAX_ACCOUNTS = 10000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${transfer.export.fetch-size:5000}")
+    private int fetchSize;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    @PostConstruct
+    public void init() {
+
+        // PostgreSQL only fetches rows in batches when auto-commit is off, so the cursor is read within a transaction
+        this.readOnlyTransaction = new TransactionTemplate(this.transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Writes the ledger entries created in [from, to) to the stream and returns the number of rows written.
+     */
+    public long export(ExportFormat format, LocalDateTime from, LocalDateTime to, List<Long> accountIds, OutputStream outputStream) {
+
+        if (!from.isBefore(to)) {
+            logger.error("Invalid export range, from = {}, to = {}", from, to);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "From must be before to");
+        }
+        if (accountIds != null && accountIds.size() > MAX_ACCOUNTS) {
+            logger.error("Too many accounts to export, accounts = {}", accountIds.size());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_ACCOUNTS + " accounts can be exported at once");
+        }
+
+        boolean filterAccounts = accountIds != null && !accountIds.isEmpty();
+        String sql = filterAccounts ? EXPORT_SQL + ACCOUNTS_FILTER : EXPORT_SQL;
+        long[] rows = new long[1];
+        long start = System.nanoTime();
+        // Exports are served by the replica when one is configured and not lagging. An export may take longer than
+        // the statement timeout of the connections, which is lifted for its transaction
+        ReplicaRouting.onReplica(() -> this.readOnlyTransaction.execute(status -> {
+            this.jdbcTemplate.execute("SET LOCAL statement_timeout = 0");
+            return this.jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(this.fetchSize);
+                ps.setTimestamp(1, Timestamp.valueOf(from));
+                ps.setTimestamp(2, Timestamp.valueOf(to));
+                if (filterAccounts) {
+                    ps.setArray(3, connection.createArrayOf("bigint", accountIds.toArray()));
+                }
+                return ps;
+            }, resultSet -> {
+                try {
+                    LedgerWriter writer = format == ExportFormat.CSV
+                            ? new CsvLedgerWriter(outputStream)
+                            : new ColumnarLedgerWriter(outputStream);
+                    while (resultSet.next()) {
+                        writer.write(resultSet);
+                        rows[0]++;
+                    }
+                    writer.finish();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            });
+        }));
+
+        logger.info("Ledger export completed, format = {}, rows = {}, duration ms = {}", format, rows[0], (System.nanoTime() - start) / 1_000_000);
+        return rows[0];
+    }
+}
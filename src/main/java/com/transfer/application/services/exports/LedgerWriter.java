@@ -0,0 +1,22 @@
+package com.transfer.application.services.exports;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Writes ledger rows of an export as they are read from the cursor, without keeping more than a bounded number
+ * of rows in memory.
+ */
+interface LedgerWriter {
+
+    /**
+     * Writes the current row of the result set.
+     */
+    void write(ResultSet row) throws SQLException, IOException;
+
+    /**
+     * Writes whatever is still buffered and the end of the export, the stream itself is left open.
+     */
+    void finish() throws IOException;
+}
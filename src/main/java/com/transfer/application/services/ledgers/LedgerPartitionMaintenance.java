@@ -0,0 +1,136 @@
+package com.transfer.application.services.ledgers;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the monthly partitions of the ledgers table ahead of time and moves partitions older than the retention
+ * under the ledgers_archive table. Moving a partition only changes the catalog, no entry is copied. The table is
+ * partitioned by schema-postgresql.sql, nothing is done while it is not.
+ */
+@Service
+@ConditionalOnProperty(name = "transfer.ledger-partitions.enabled", havingValue = "true")
+public class LedgerPartitionMaintenance {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private static final String PARTITIONED_SQL = "SELECT COUNT(*) FROM pg_partitioned_table WHERE partrelid = to_regclass('ledgers')";
+    private static final String PARTITIONS_SQL = """
+            SELECT c.relname AS name, pg_get_expr(c.relpartbound, c.oid) AS bound
+            FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = to_regclass('ledgers')
+            """;
+
+    // Upper bound of a range partition, for example FOR VALUES FROM ('2025-01-01 00:00:00') TO ('2025-02-01 00:00:00')
+    private static final Pattern UPPER_BOUND = Pattern.compile("TO \\('([^']+)'\\)");
+    private static final DateTimeFormatter BOUND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${transfer.ledger-partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${transfer.ledger-partitions.retention-months:12}")
+    private int retentionMonths;
+
+    @Value("${transfer.ledger-partitions.check-interval-minutes:360}")
+    private long checkIntervalMinutes;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ledger-partition-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::maintain, 0, this.checkIntervalMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        this.scheduler.shutdownNow();
+    }
+
+    void maintain() {
+
+        // An exception must not escape, the executor would not schedule the maintenance again
+        try {
+            Integer partitioned = this.jdbcTemplate.queryForObject(PARTITIONED_SQL, Integer.class);
+            if (partitioned == null || partitioned == 0) {
+                logger.warn("Ledgers table is not partitioned, partition maintenance skipped");
+                return;
+            }
+            createPartitions(YearMonth.now());
+            archivePartitions(YearMonth.now().minusMonths(this.retentionMonths).atDay(1).atStartOfDay());
+        } catch (Exception e) {
+            logger.error("Ledger partition maintenance failed, error = {}", e.getMessage(), e);
+        }
+    }
+
+    void createPartitions(YearMonth currentMonth) {
+
+        for (int offset = 0; offset <= this.monthsAhead; offset++) {
+            YearMonth month = currentMonth.plusMonths(offset);
+            String name = "ledgers_p" + month.format(NAME_FORMAT);
+            String sql = String.format("CREATE TABLE IF NOT EXISTS %s PARTITION OF ledgers FOR VALUES FROM ('%s') TO ('%s')", name,
+                    month.atDay(1).atStartOfDay().format(BOUND_FORMAT), month.plusMonths(1).atDay(1).atStartOfDay().format(BOUND_FORMAT));
+            try {
+                this.jdbcTemplate.execute(sql);
+            } catch (DataAccessException e) {
+                // The month overlaps the legacy partition, or entries of the month already are in the default partition
+                logger.warn("Ledger partition not created, partition = {}, error = {}", name, e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+
+    void archivePartitions(LocalDateTime cutoff) {
+
+        List<String[]> partitions = this.jdbcTemplate.query(PARTITIONS_SQL, (rs, rowNum) -> new String[]{rs.getString("name"), rs.getString("bound")});
+        for (String[] partition : partitions) {
+            Matcher matcher = UPPER_BOUND.matcher(partition[1]);
+            if (!matcher.find() || LocalDateTime.parse(matcher.group(1), BOUND_FORMAT).isAfter(cutoff)) {
+                continue;
+            }
+
+            // Detaching needs an exclusive lock on the ledgers table, rather than waiting behind running transfers and
+            // blocking the ones queued after it, the partition is left for the next run
+            try {
+                this.transactionTemplate.executeWithoutResult(status -> {
+                    this.jdbcTemplate.execute("SET LOCAL lock_timeout = '2s'");
+                    this.jdbcTemplate.execute("ALTER TABLE ledgers DETACH PARTITION " + partition[0]);
+                    this.jdbcTemplate.execute("ALTER TABLE ledgers_archive ATTACH PARTITION " + partition[0] + " " + partition[1]);
+                });
+                logger.info("Ledger partition archived, partition = {}", partition[0]);
+            } catch (DataAccessException e) {
+                logger.warn("Ledger partition not archived, partition = {}, error = {}", partition[0], e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.transfer.application.services.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.transfer.application.repositories.outbox.TransferEvent;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends the events to a file as JSON lines. A batch is written with a single channel write and forced to disk
+ * before the relay removes it from the outbox.
+ */
+@Component
+@ConditionalOnProperty(name = "transfer.outbox.sink", havingValue = "FILE", matchIfMissing = true)
+public class FileTransferEventSink implements TransferEventSink {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${transfer.outbox.file.path:data/transfer-events.jsonl}")
+    private String path;
+
+    private FileChannel channel;
+
+    // Opened by the first publish, the sink is created even while the outbox is disabled
+    private void open() throws IOException {
+
+        Path file = Path.of(this.path);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        logger.info("Transfer event file opened, path = {}", file.toAbsolutePath());
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+
+        if (this.channel != null) {
+            this.channel.close();
+        }
+    }
+
+    @Override
+    public void publish(List<TransferEvent> events) throws IOException {
+
+        if (this.channel == null) {
+            open();
+        }
+
+        ByteArrayOutputStream lines = new ByteArrayOutputStream(events.size() * 256);
+        for (TransferEvent event : events) {
+            lines.write(this.objectMapper.writeValueAsBytes(event));
+            lines.write('\n');
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer);
+        }
+        this.channel.force(false);
+    }
+}
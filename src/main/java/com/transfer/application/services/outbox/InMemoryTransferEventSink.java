@@ -0,0 +1,47 @@
+package com.transfer.application.services.outbox;
+
+import com.transfer.application.repositories.outbox.TransferEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process publish and subscribe, every subscriber receives every event in its own bounded queue. A batch is
+ * only handed over when every subscriber has room for all of it, otherwise it is rejected as a whole and stays in
+ * the outbox until the subscribers caught up. The capacity of a subscriber should exceed the relay batch size.
+ */
+@Component
+@ConditionalOnProperty(name = "transfer.outbox.sink", havingValue = "MEMORY")
+public class InMemoryTransferEventSink implements TransferEventSink {
+
+    private final List<BlockingQueue<TransferEvent>> subscribers = new CopyOnWriteArrayList<>();
+
+    public BlockingQueue<TransferEvent> subscribe(int capacity) {
+
+        BlockingQueue<TransferEvent> subscriber = new ArrayBlockingQueue<>(capacity);
+        this.subscribers.add(subscriber);
+        return subscriber;
+    }
+
+    public void unsubscribe(BlockingQueue<TransferEvent> subscriber) {
+        this.subscribers.remove(subscriber);
+    }
+
+    @Override
+    public void publish(List<TransferEvent> events) {
+
+        // The relay is the only producer, so the room checked here cannot be taken before the events are added
+        for (BlockingQueue<TransferEvent> subscriber : this.subscribers) {
+            if (subscriber.remainingCapacity() < events.size()) {
+                throw new IllegalStateException("Transfer event subscriber is full");
+            }
+        }
+        for (BlockingQueue<TransferEvent> subscriber : this.subscribers) {
+            subscriber.addAll(events);
+        }
+    }
+}
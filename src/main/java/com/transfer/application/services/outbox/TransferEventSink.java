@@ -0,0 +1,20 @@
+package com.transfer.application.services.outbox;
+
+import com.transfer.application.repositories.outbox.TransferEvent;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination of the transfer events drained from the outbox. Events are passed in the order they were recorded
+ * and are removed from the outbox only once the call returned, so a sink sees an event again after a failure and
+ * consumers have to tolerate duplicates.
+ */
+public interface TransferEventSink {
+
+    /**
+     * Delivers the events, durably once the call returns. Throwing leaves the events in the outbox, the relay backs
+     * off and hands them over again, which is how a slow consumer holds the relay back.
+     */
+    void publish(List<TransferEvent> events) throws IOException;
+}
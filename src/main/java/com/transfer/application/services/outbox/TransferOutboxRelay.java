@@ -0,0 +1,149 @@
+package com.transfer.application.services.outbox;
+
+import com.transfer.application.repositories.outbox.TransferEvent;
+import com.transfer.application.repositories.outbox.TransferEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains the transfer events recorded by settled transfers to the configured sink, oldest first and one batch at
+ * a time. A batch is removed from the outbox by the transaction which read it once the sink accepted it, so every
+ * event is delivered at least once. Only one relay across all instances drains at a time, which keeps the events
+ * of an account in order. While the sink rejects batches the relay backs off and the events wait in the outbox.
+ */
+@Service
+@ConditionalOnProperty(name = "transfer.outbox.enabled", havingValue = "true")
+public class TransferOutboxRelay {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    // Key of the advisory lock held by the relay draining the outbox
+    private static final long RELAY_LOCK = 0x7472616E73666572L;
+
+    @Autowired
+    private TransferEventRepository transferEventRepository;
+
+    @Autowired
+    private TransferEventSink transferEventSink;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${transfer.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${transfer.outbox.poll-interval-ms:50}")
+    private long pollIntervalMs;
+
+    @Value("${transfer.outbox.max-backoff-ms:5000}")
+    private long maxBackoffMs;
+
+    private Counter published;
+    private Counter failures;
+    private volatile double lagSeconds;
+
+    private long backoffMs;
+    private long nextAttemptNanos;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+
+        this.published = Counter.builder("transfer.outbox.published")
+                .description("Transfer events handed over to the sink")
+                .register(this.meterRegistry);
+        this.failures = Counter.builder("transfer.outbox.failures")
+                .description("Batches of transfer events the sink rejected")
+                .register(this.meterRegistry);
+        Gauge.builder("transfer.outbox.lag", this, relay -> relay.lagSeconds)
+                .description("Age of the oldest transfer event of the last batch")
+                .baseUnit("seconds")
+                .register(this.meterRegistry);
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "transfer-outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::relay, this.pollIntervalMs, this.pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+
+        this.scheduler.shutdown();
+        this.scheduler.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    void relay() {
+
+        if (System.nanoTime() < this.nextAttemptNanos) {
+            return;
+        }
+
+        // An exception must not escape, the executor would not schedule the relay again
+        try {
+            int drained;
+            do {
+                drained = drain();
+            } while (drained == this.batchSize);
+            this.backoffMs = 0;
+        } catch (Exception e) {
+            this.failures.increment();
+            this.backoffMs = this.backoffMs == 0 ? this.pollIntervalMs : Math.min(this.backoffMs * 2, this.maxBackoffMs);
+            this.nextAttemptNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.backoffMs);
+            logger.error("Transfer event relay failed, retrying in ms = {}, error = {}", this.backoffMs, e.getMessage());
+        }
+    }
+
+    int drain() {
+
+        Integer drained = this.transactionTemplate.execute(status -> {
+            if (!this.transferEventRepository.tryLock(RELAY_LOCK)) {
+                return 0;
+            }
+            List<TransferEvent> events = this.transferEventRepository.findAllByOrderByIdAsc(Limit.of(this.batchSize));
+            if (events.isEmpty()) {
+                this.lagSeconds = 0;
+                return 0;
+            }
+            this.lagSeconds = Duration.between(events.get(0).getCreatedAt(), LocalDateTime.now()).toMillis() / 1000.0;
+
+            try {
+                this.transferEventSink.publish(events);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.transferEventRepository.deleteAllByIdInBatch(events.stream().map(TransferEvent::getId).toList());
+            return events.size();
+        });
+        if (drained != null && drained > 0) {
+            this.published.increment(drained);
+            logger.debug("Transfer events relayed, events = {}", drained);
+        }
+        return drained != null ? drained : 0;
+    }
+}
@@ -0,0 +1,92 @@
+package com.transfer.application.services.partitions;
+
+import com.transfer.application.dtos.transactions.SubmitTransaction;
+import com.transfer.application.dtos.transactions.TransactionBatchResult;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Group commit for synchronous transfers. Concurrent transfers are collected by lanes routed by destination
+ * account, so that a burst into a popular account meets on one lane, and each lane settles what it collected as one
+ * batch: one lock and one aggregated balance update per account and one multi-row ledger insert, while every caller
+ * waits for the result of its own transfer. Once transfers arrive together, a lane waits up to the window for more
+ * before settling.
+ * <p>
+ * Each lane holds one connection while it settles a batch, so there are as many lanes as connections in the pool
+ * unless transfer.coalescing.lanes is set. Fewer lanes give larger batches at the cost of settling them one after
+ * the other.
+ */
+@Service
+@ConditionalOnProperty(name = "transfer.execution.mode", havingValue = "COALESCED")
+public class CoalescingTransferExecutor {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${transfer.coalescing.lanes:${spring.datasource.hikari.maximum-pool-size:10}}")
+    private int laneCount;
+
+    @Value("${transfer.coalescing.ring-size:4096}")
+    private int ringSize;
+
+    @Value("${transfer.coalescing.max-batch:256}")
+    private int maxBatch;
+
+    @Value("${transfer.coalescing.window-us:1000}")
+    private long windowMicros;
+
+    @Value("${transfer.coalescing.idle-park-us:100}")
+    private long idleParkMicros;
+
+    private TransferLanes lanes;
+
+    /**
+     * Starts the lanes, the settler is called by a lane thread with the transfers of one batch and their idempotency
+     * keys, and returns a result per transfer, in the same order.
+     */
+    public void start(BiFunction<List<SubmitTransaction>, List<String>, List<TransactionBatchResult.Item>> settler) {
+
+        DistributionSummary batchSizes = DistributionSummary.builder("transfer.coalescing.batch.size")
+                .description("Transfers settled together by a coalescing lane")
+                .register(this.meterRegistry);
+        this.lanes = new TransferLanes("coalescing lane", this.laneCount, this.ringSize, this.maxBatch, this.windowMicros, this.idleParkMicros,
+                SubmitTransaction::getDestinationAccountId, batchSizes);
+        this.lanes.start(settler);
+        logger.info("Coalescing transfer executor started, lanes = {}, window us = {}, max batch = {}", this.laneCount, this.windowMicros, this.maxBatch);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+
+        if (this.lanes == null) {
+            return;
+        }
+        this.lanes.stop();
+        logger.info("Coalescing transfer executor stopped");
+    }
+
+    /**
+     * Publishes the transfer to the lane of its destination account and waits until the lane settled it.
+     */
+    public TransactionBatchResult.Item submit(SubmitTransaction submitTransaction, String idempotencyKey) {
+
+        if (this.lanes == null) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Transfer executor is not running");
+        }
+        return this.lanes.submit(submitTransaction, idempotencyKey);
+    }
+}
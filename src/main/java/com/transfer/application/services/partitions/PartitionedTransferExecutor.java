@@ -0,0 +1,84 @@
+package com.transfer.application.services.partitions;
+
+import com.transfer.application.dtos.transactions.SubmitTransaction;
+import com.transfer.application.dtos.transactions.TransactionBatchResult;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Settles transfers on a fixed set of single threaded partitions. A transfer is routed by the hash of its source
+ * account, so every debit of an account is applied by the same thread in the order it was submitted and concurrent
+ * transfers never race for the balance of their source account. Each partition settles everything published since
+ * its previous pass as one batch, without waiting for more.
+ */
+@Service
+@ConditionalOnProperty(name = "transfer.execution.mode", havingValue = "PARTITIONED")
+public class PartitionedTransferExecutor {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${transfer.partitions.count:8}")
+    private int partitionCount;
+
+    @Value("${transfer.partitions.ring-size:4096}")
+    private int ringSize;
+
+    @Value("${transfer.partitions.max-batch:500}")
+    private int maxBatch;
+
+    @Value("${transfer.partitions.idle-park-us:100}")
+    private long idleParkMicros;
+
+    private TransferLanes partitions;
+
+    /**
+     * Starts the partitions, the settler is called by a partition thread with the transfers of one batch and their
+     * idempotency keys, and returns a result per transfer, in the same order.
+     */
+    public void start(BiFunction<List<SubmitTransaction>, List<String>, List<TransactionBatchResult.Item>> settler) {
+
+        DistributionSummary batchSizes = DistributionSummary.builder("transfer.partitions.batch.size")
+                .description("Transfers settled together by a partition")
+                .register(this.meterRegistry);
+        this.partitions = new TransferLanes("partition", this.partitionCount, this.ringSize, this.maxBatch, 0, this.idleParkMicros,
+                SubmitTransaction::getSourceAccountId, batchSizes);
+        this.partitions.start(settler);
+        logger.info("Partitioned transfer executor started, partitions = {}, ring size = {}", this.partitionCount, this.ringSize);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+
+        if (this.partitions == null) {
+            return;
+        }
+        this.partitions.stop();
+        logger.info("Partitioned transfer executor stopped");
+    }
+
+    /**
+     * Publishes the transfer to the partition of its source account and waits until the partition settled it.
+     */
+    public TransactionBatchResult.Item submit(SubmitTransaction submitTransaction, String idempotencyKey) {
+
+        if (this.partitions == null) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Transfer executor is not running");
+        }
+        return this.partitions.submit(submitTransaction, idempotencyKey);
+    }
+}
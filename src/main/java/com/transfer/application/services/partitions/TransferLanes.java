@@ -0,0 +1,182 @@
+package com.transfer.application.services.partitions;
+
+import com.transfer.application.dtos.transactions.SubmitTransaction;
+import com.transfer.application.dtos.transactions.TransactionBatchResult;
+import io.micrometer.core.instrument.DistributionSummary;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Single threaded lanes settling transfers in batches, shared by the partitioned and the coalescing executors. A
+ * transfer is routed by the hash of one of its accounts, so every transfer of that account is settled by the same
+ * thread in the order it was submitted. Each lane takes the transfers from a lock-free ring buffer and settles
+ * everything published since its previous pass as one batch, while every caller waits for the result of its own
+ * transfer.
+ * <p>
+ * With a window, a lane whose previous batch held more than one transfer waits up to the window for more before
+ * settling, unless the batch is full earlier. A lane whose previous batch held a single transfer settles the next
+ * one right away, so an idle system adds no latency.
+ */
+class TransferLanes {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private final String name;
+    private final int ringSize;
+    private final int maxBatch;
+    private final long windowNanos;
+    private final long idleParkNanos;
+    private final ToLongFunction<SubmitTransaction> routing;
+    private final DistributionSummary batchSizes;
+    private final Lane[] lanes;
+
+    private volatile boolean running;
+
+    /**
+     * @param name           name of a lane in threads and errors, e.g. "partition"
+     * @param laneCount      number of lanes
+     * @param ringSize       capacity of the ring buffer of each lane, a power of two
+     * @param maxBatch       largest number of transfers settled as one batch
+     * @param windowMicros   longest wait for more transfers once they arrive together, 0 to settle right away
+     * @param idleParkMicros longest park of an idle lane, bounds a missed wake up
+     * @param routing        account whose hash chooses the lane of a transfer
+     * @param batchSizes     records the size of every settled batch
+     */
+    TransferLanes(String name, int laneCount, int ringSize, int maxBatch, long windowMicros, long idleParkMicros,
+                  ToLongFunction<SubmitTransaction> routing, DistributionSummary batchSizes) {
+
+        this.name = name;
+        this.ringSize = ringSize;
+        this.maxBatch = maxBatch;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.idleParkNanos = TimeUnit.MICROSECONDS.toNanos(idleParkMicros);
+        this.routing = routing;
+        this.batchSizes = batchSizes;
+        this.lanes = new Lane[laneCount];
+    }
+
+    /**
+     * Starts the lanes, the settler is called by a lane thread with the transfers of one batch and their idempotency
+     * keys (null for a transfer without one) and returns a result per transfer, in the same order.
+     */
+    void start(BiFunction<List<SubmitTransaction>, List<String>, List<TransactionBatchResult.Item>> settler) {
+
+        this.running = true;
+        for (int index = 0; index < this.lanes.length; index++) {
+            this.lanes[index] = new Lane(settler);
+            this.lanes[index].thread = new Thread(this.lanes[index], "transfer-" + this.name.replace(' ', '-') + "-" + index);
+            this.lanes[index].thread.setDaemon(true);
+            this.lanes[index].thread.start();
+        }
+    }
+
+    void stop() throws InterruptedException {
+
+        // Lanes settle the transfers already published before their thread exits
+        this.running = false;
+        for (Lane lane : this.lanes) {
+            if (lane != null) {
+                LockSupport.unpark(lane.thread);
+            }
+        }
+        for (Lane lane : this.lanes) {
+            if (lane != null) {
+                lane.thread.join(TimeUnit.SECONDS.toMillis(30));
+            }
+        }
+    }
+
+    /**
+     * Publishes the transfer to the lane of its routing account and waits until the lane settled it.
+     */
+    TransactionBatchResult.Item submit(SubmitTransaction submitTransaction, String idempotencyKey) {
+
+        if (!this.running) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Transfer executor is not running");
+        }
+
+        long accountId = this.routing.applyAsLong(submitTransaction);
+        Lane lane = this.lanes[laneOf(accountId)];
+        LaneTransfer transfer = new LaneTransfer(submitTransaction, idempotencyKey, new CompletableFuture<>());
+        if (!lane.ring.offer(transfer)) {
+            logger.error("Transfer {} is full, account id = {}", this.name, accountId);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Transfer " + this.name + " is full");
+        }
+        LockSupport.unpark(lane.thread);
+        return transfer.result().join();
+    }
+
+    int laneOf(long accountId) {
+
+        long hash = accountId * 0x9E3779B97F4A7C15L;
+        return Math.floorMod((int) (hash ^ (hash >>> 32)), this.lanes.length);
+    }
+
+    private record LaneTransfer(SubmitTransaction submitTransaction, String idempotencyKey, CompletableFuture<TransactionBatchResult.Item> result) {
+    }
+
+    private class Lane implements Runnable {
+
+        private final TransferRingBuffer<LaneTransfer> ring = new TransferRingBuffer<>(ringSize);
+        private final BiFunction<List<SubmitTransaction>, List<String>, List<TransactionBatchResult.Item>> settler;
+        private Thread thread;
+
+        private Lane(BiFunction<List<SubmitTransaction>, List<String>, List<TransactionBatchResult.Item>> settler) {
+            this.settler = settler;
+        }
+
+        @Override
+        public void run() {
+
+            List<LaneTransfer> batch = new ArrayList<>(maxBatch);
+            int previousSize = 0;
+            while (running || !this.ring.isEmpty()) {
+                batch.clear();
+                if (this.ring.drainTo(batch, maxBatch) == 0) {
+                    // Producers unpark the thread after publishing, the timeout only bounds a missed wake up
+                    LockSupport.parkNanos(idleParkNanos);
+                    continue;
+                }
+
+                // Transfers arrived together last time, so more are likely to follow within the window
+                if (windowNanos > 0 && previousSize > 1 && batch.size() < maxBatch) {
+                    long deadline = System.nanoTime() + windowNanos;
+                    long remaining;
+                    while (running && batch.size() < maxBatch && (remaining = deadline - System.nanoTime()) > 0) {
+                        if (this.ring.drainTo(batch, maxBatch - batch.size()) == 0) {
+                            LockSupport.parkNanos(remaining);
+                        }
+                    }
+                }
+                previousSize = batch.size();
+                settle(batch);
+            }
+        }
+
+        private void settle(List<LaneTransfer> batch) {
+
+            batchSizes.record(batch.size());
+            try {
+                List<TransactionBatchResult.Item> results = this.settler.apply(
+                        batch.stream().map(LaneTransfer::submitTransaction).toList(),
+                        batch.stream().map(LaneTransfer::idempotencyKey).toList());
+                for (int index = 0; index < batch.size(); index++) {
+                    batch.get(index).result().complete(results.get(index));
+                }
+            } catch (Exception e) {
+                logger.error("Transfer {} batch failed, size = {}, error = {}", name, batch.size(), e.getMessage(), e);
+                batch.forEach(transfer -> transfer.result().completeExceptionally(e));
+            }
+        }
+    }
+}
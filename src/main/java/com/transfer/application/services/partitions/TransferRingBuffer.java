@@ -0,0 +1,89 @@
+package com.transfer.application.services.partitions;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free ring buffer for many producers and a single consumer. Every slot carries a sequence number
+ * telling whether it is free for the producer claiming the position or published for the consumer, so producers
+ * only contend on the claim of a position and the consumer never blocks them.
+ */
+class TransferRingBuffer<E> {
+
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    // Next position claimed by a producer
+    private final AtomicLong tail = new AtomicLong();
+
+    // Next position read by the consumer, only accessed by the consumer thread
+    private long head;
+
+    TransferRingBuffer(int capacity) {
+
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring buffer capacity must be a power of two, capacity = " + capacity);
+        }
+        this.elements = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int slot = 0; slot < capacity; slot++) {
+            this.sequences.set(slot, slot);
+        }
+    }
+
+    /**
+     * Publishes the element, returns false if the buffer is full.
+     */
+    boolean offer(E element) {
+
+        long position;
+        int slot;
+        while (true) {
+            position = this.tail.get();
+            slot = (int) position & this.mask;
+            long difference = this.sequences.get(slot) - position;
+            if (difference == 0) {
+                if (this.tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (difference < 0) {
+                // The consumer has not freed the slot of the previous round yet
+                return false;
+            }
+        }
+
+        // The volatile write of the sequence publishes the element to the consumer
+        this.elements[slot] = element;
+        this.sequences.set(slot, position + 1);
+        return true;
+    }
+
+    /**
+     * Moves up to limit published elements to the list, in the order they were claimed. Must only be called by
+     * the consumer thread.
+     */
+    @SuppressWarnings("unchecked")
+    int drainTo(List<E> target, int limit) {
+
+        int drained = 0;
+        while (drained < limit) {
+            int slot = (int) this.head & this.mask;
+            if (this.sequences.get(slot) != this.head + 1) {
+                break;
+            }
+            target.add((E) this.elements[slot]);
+            this.elements[slot] = null;
+            this.sequences.set(slot, this.head + this.elements.length);
+            this.head++;
+            drained++;
+        }
+        return drained;
+    }
+
+    boolean isEmpty() {
+        return this.sequences.get((int) this.head & this.mask) != this.head + 1;
+    }
+}
@@ -0,0 +1,360 @@
+package com.transfer.application.services.reconciliation;
+
+import com.transfer.application.dtos.common.Money;
+import com.transfer.application.dtos.reconciliation.ReconciliationReport;
+import com.transfer.application.repositories.checkpoints.Checkpoint;
+import com.transfer.application.repositories.checkpoints.CheckpointRepository;
+import com.transfer.application.repositories.ledgers.Ledger;
+import com.transfer.application.repositories.reconciliation.AccountReconciliationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks that the balance of every account, including its buckets, equals its opening balance plus the credits
+ * minus the debits of its ledger entries. Runs are incremental: entries created before the checkpoint are already
+ * summed up per account in account_reconciliations, so a run only reads the entries created since. Entries are
+ * settled up to a watermark lagging behind the clock by more than any transfer takes to commit, so that no entry
+ * below the watermark can still appear. Entries above it are added to the expected balance of the run only.
+ *
+ * <p>Account id ranges are reconciled in parallel on a fork-join pool, each range in a single repeatable read
+ * transaction so that balances and ledger entries are read from the same snapshot. The opening balance of an
+ * account is taken from the first run which sees it, which is its initial balance for accounts created since.
+ */
+@Service
+@ConditionalOnProperty(name = "transfer.reconciliation.enabled", havingValue = "true")
+public class BalanceReconciler {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private static final String CHECKPOINT = "reconciliation";
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final String ACCOUNT_IDS_SQL = "SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM accounts";
+    private static final String ACCOUNTS_SQL = """
+            SELECT a.account_id,
+                   a.balance + COALESCE((SELECT SUM(b.balance) FROM account_buckets b WHERE b.account_id = a.account_id), 0) AS balance,
+                   r.opening_balance, r.ledger_total, r.balance AS reconciled_balance, r.drift
+            FROM accounts a LEFT JOIN account_reconciliations r ON r.account_id = a.account_id
+            WHERE a.id BETWEEN ? AND ?
+            """;
+    // Entries of an account already settled by an earlier, partially failed, run are skipped by its own watermark
+    private static final String LEDGERS_SQL = """
+            SELECT l.account_id,
+                   SUM(CASE WHEN l.created_at < ? THEN COALESCE(l.credit, 0) - COALESCE(l.debit, 0) ELSE 0 END) AS settled,
+                   SUM(CASE WHEN l.created_at >= ? THEN COALESCE(l.credit, 0) - COALESCE(l.debit, 0) ELSE 0 END) AS pending
+            FROM ledgers l
+            JOIN accounts a ON a.account_id = l.account_id
+            LEFT JOIN account_reconciliations r ON r.account_id = l.account_id
+            WHERE a.id BETWEEN ? AND ? AND l.status = ? AND l.created_at >= ? AND l.created_at >= COALESCE(r.reconciled_through, ?)
+            GROUP BY l.account_id
+            """;
+    private static final String HISTORY_SQL = """
+            SELECT account_id, SUM(COALESCE(credit, 0) - COALESCE(debit, 0)) AS total
+            FROM ledgers WHERE account_id = ANY (?) AND status = ? AND created_at < ?
+            GROUP BY account_id
+            """;
+    private static final String UPSERT_SQL = """
+            INSERT INTO account_reconciliations (account_id, opening_balance, ledger_total, reconciled_through, balance, drift, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (account_id) DO UPDATE SET ledger_total = EXCLUDED.ledger_total, reconciled_through = EXCLUDED.reconciled_through,
+                balance = EXCLUDED.balance, drift = EXCLUDED.drift, updated_at = EXCLUDED.updated_at
+            """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CheckpointRepository checkpointRepository;
+
+    @Autowired
+    private AccountReconciliationRepository accountReconciliationRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${transfer.reconciliation.interval-seconds:60}")
+    private long intervalSeconds;
+
+    @Value("${transfer.reconciliation.settle-lag-seconds:300}")
+    private long settleLagSeconds;
+
+    @Value("${transfer.reconciliation.partition-size:10000}")
+    private long partitionSize;
+
+    @Value("${transfer.reconciliation.parallelism:4}")
+    private int parallelism;
+
+    private final AtomicLong accountsChecked = new AtomicLong();
+    private final AtomicLong driftedAccounts = new AtomicLong();
+    private final AtomicLong driftAmount = new AtomicLong();
+    private volatile LocalDateTime checkpoint;
+    private volatile LocalDateTime lastRunAt;
+
+    private TransactionTemplate snapshotTransaction;
+    private Timer runTimer;
+    private Counter runFailures;
+    private ForkJoinPool pool;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+
+        this.snapshotTransaction = new TransactionTemplate(this.transactionManager);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+
+        this.checkpoint = this.checkpointRepository.findById(CHECKPOINT)
+                .map(found -> LocalDateTime.ofInstant(Instant.ofEpochMilli(found.getPosition()), ZoneOffset.UTC))
+                .orElse(null);
+
+        Gauge.builder("transfer.reconciliation.drifted.accounts", this.driftedAccounts, AtomicLong::get)
+                .description("Accounts whose balance differs from their ledger entries")
+                .register(this.meterRegistry);
+        Gauge.builder("transfer.reconciliation.drift", this.driftAmount, drift -> Money.fromMinorUnits(drift.get()).doubleValue())
+                .description("Sum of the absolute differences between balances and ledger entries")
+                .register(this.meterRegistry);
+        Gauge.builder("transfer.reconciliation.lag", this, reconciler -> reconciler.checkpoint != null
+                        ? Duration.between(reconciler.checkpoint, LocalDateTime.now()).toSeconds()
+                        : Double.NaN)
+                .description("Seconds between now and the checkpoint of the reconciliation")
+                .baseUnit("seconds")
+                .register(this.meterRegistry);
+        this.runTimer = Timer.builder("transfer.reconciliation.run")
+                .description("Time taken by a reconciliation run")
+                .register(this.meterRegistry);
+        this.runFailures = Counter.builder("transfer.reconciliation.failures")
+                .description("Reconciliation runs which failed")
+                .register(this.meterRegistry);
+
+        this.pool = new ForkJoinPool(this.parallelism);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "balance-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::reconcile, this.intervalSeconds, this.intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+
+        this.scheduler.shutdownNow();
+        this.pool.shutdownNow();
+    }
+
+    public ReconciliationReport getReport(int limit) {
+
+        if (limit < 1 || limit > 1000) {
+            logger.error("Invalid reconciliation report limit, limit = {}", limit);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and 1000");
+        }
+
+        List<ReconciliationReport.Drift> drifts = this.accountReconciliationRepository.findDrifted(Limit.of(limit)).stream()
+                .map(reconciliation -> ReconciliationReport.Drift.builder()
+                        .accountId(reconciliation.getAccountId())
+                        .balance(Money.fromMinorUnits(reconciliation.getBalance()))
+                        .expectedBalance(Money.fromMinorUnits(reconciliation.getBalance() - reconciliation.getDrift()))
+                        .drift(Money.fromMinorUnits(reconciliation.getDrift()))
+                        .updatedAt(reconciliation.getUpdatedAt())
+                        .build())
+                .toList();
+
+        return ReconciliationReport.builder()
+                .checkpoint(this.checkpoint)
+                .lastRunAt(this.lastRunAt)
+                .accountsChecked(this.accountsChecked.get())
+                .driftedAccounts(this.accountReconciliationRepository.countDrifted())
+                .drifts(drifts)
+                .build();
+    }
+
+    void reconcile() {
+
+        // An exception must not escape, the executor would not schedule the reconciliation again
+        long start = System.nanoTime();
+        try {
+            LocalDateTime watermark = LocalDateTime.now().minusSeconds(this.settleLagSeconds);
+            if (this.checkpoint != null && !watermark.isAfter(this.checkpoint)) {
+                return;
+            }
+            LocalDateTime since = this.checkpoint != null ? this.checkpoint : EPOCH;
+
+            RangeResult result = RangeResult.EMPTY;
+            Map<String, Object> bounds = this.jdbcTemplate.queryForMap(ACCOUNT_IDS_SQL);
+            Number minId = (Number) bounds.get("min_id");
+            Number maxId = (Number) bounds.get("max_id");
+            if (minId != null) {
+                result = this.pool.invoke(new ReconcileRange(minId.longValue(), maxId.longValue(), since, watermark));
+            }
+
+            // The checkpoint only advances once every range is reconciled up to the watermark
+            long position = watermark.toInstant(ZoneOffset.UTC).toEpochMilli();
+            this.checkpointRepository.save(Checkpoint.builder().name(CHECKPOINT).position(position).build());
+            this.checkpoint = watermark;
+            this.lastRunAt = LocalDateTime.now();
+            this.accountsChecked.set(result.accounts());
+            this.driftedAccounts.set(result.drifted());
+            this.driftAmount.set(result.driftAmount());
+
+            if (result.drifted() > 0) {
+                logger.error("Balance drift detected, accounts = {}, drift = {}", result.drifted(), Money.fromMinorUnits(result.driftAmount()));
+            }
+            logger.info("Reconciliation completed, accounts = {}, watermark = {}, duration ms = {}", result.accounts(), watermark, (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            this.runFailures.increment();
+            logger.error("Reconciliation failed, error = {}", e.getMessage(), e);
+        } finally {
+            this.runTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    RangeResult reconcileRange(long fromId, long toId, LocalDateTime since, LocalDateTime watermark) {
+
+        return this.snapshotTransaction.execute(status -> {
+
+            // A range is read in one snapshot which may take longer than the statement timeout of the connections
+            this.jdbcTemplate.execute("SET LOCAL statement_timeout = 0");
+
+            Map<Long, long[]> entries = new HashMap<>();
+            this.jdbcTemplate.query(LEDGERS_SQL, rs -> {
+                entries.put(rs.getLong("account_id"), new long[]{rs.getLong("settled"), rs.getLong("pending")});
+            }, Timestamp.valueOf(watermark), Timestamp.valueOf(watermark), fromId, toId, Ledger.Status.COMPLETED.ordinal(), Timestamp.valueOf(since), Timestamp.valueOf(since));
+
+            List<AccountState> accounts = this.jdbcTemplate.query(ACCOUNTS_SQL, (rs, rowNum) -> new AccountState(
+                    rs.getLong("account_id"),
+                    rs.getLong("balance"),
+                    rs.getObject("opening_balance", Long.class),
+                    rs.getObject("ledger_total", Long.class),
+                    rs.getObject("reconciled_balance", Long.class),
+                    rs.getObject("drift", Long.class)), fromId, toId);
+
+            // Accounts seen for the first time need the entries created before the checkpoint as well
+            Map<Long, Long> history = new HashMap<>();
+            Long[] newAccountIds = accounts.stream()
+                    .filter(account -> account.openingBalance() == null)
+                    .map(AccountState::accountId)
+                    .toArray(Long[]::new);
+            if (newAccountIds.length > 0 && since.isAfter(EPOCH)) {
+                this.jdbcTemplate.query(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(HISTORY_SQL);
+                    ps.setArray(1, connection.createArrayOf("bigint", newAccountIds));
+                    ps.setInt(2, Ledger.Status.COMPLETED.ordinal());
+                    ps.setTimestamp(3, Timestamp.valueOf(since));
+                    return ps;
+                }, rs -> {
+                    history.put(rs.getLong("account_id"), rs.getLong("total"));
+                });
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            List<Object[]> updates = new ArrayList<>();
+            long drifted = 0;
+            long driftAmount = 0;
+            for (AccountState account : accounts) {
+                long[] sums = entries.getOrDefault(account.accountId(), new long[2]);
+                long openingBalance;
+                long ledgerTotal;
+                long drift;
+                if (account.openingBalance() == null) {
+                    ledgerTotal = history.getOrDefault(account.accountId(), 0L) + sums[0];
+                    openingBalance = account.balance() - ledgerTotal - sums[1];
+                    drift = 0;
+                } else {
+                    ledgerTotal = account.ledgerTotal() + sums[0];
+                    openingBalance = account.openingBalance();
+                    drift = account.balance() - (openingBalance + ledgerTotal + sums[1]);
+                }
+                if (drift != 0) {
+                    drifted++;
+                    driftAmount += Math.abs(drift);
+                }
+
+                // Rows of accounts without new entries and an unchanged result are left as they are
+                if (account.openingBalance() == null || sums[0] != 0 || account.balance() != account.reconciledBalance() || drift != account.drift()) {
+                    updates.add(new Object[]{account.accountId(), openingBalance, ledgerTotal, Timestamp.valueOf(watermark), account.balance(), drift, Timestamp.valueOf(now)});
+                }
+            }
+            if (!updates.isEmpty()) {
+                this.jdbcTemplate.batchUpdate(UPSERT_SQL, updates);
+            }
+
+            return new RangeResult(accounts.size(), drifted, driftAmount);
+        });
+    }
+
+    record RangeResult(long accounts, long drifted, long driftAmount) {
+
+        private static final RangeResult EMPTY = new RangeResult(0, 0, 0);
+
+        private RangeResult plus(RangeResult other) {
+            return new RangeResult(this.accounts + other.accounts, this.drifted + other.drifted, this.driftAmount + other.driftAmount);
+        }
+    }
+
+    private record AccountState(long accountId, long balance, Long openingBalance, Long ledgerTotal, Long reconciledBalance, Long drift) {
+    }
+
+    private class ReconcileRange extends RecursiveTask<RangeResult> {
+
+        private final long fromId;
+        private final long toId;
+        private final LocalDateTime since;
+        private final LocalDateTime watermark;
+
+        private ReconcileRange(long fromId, long toId, LocalDateTime since, LocalDateTime watermark) {
+            this.fromId = fromId;
+            this.toId = toId;
+            this.since = since;
+            this.watermark = watermark;
+        }
+
+        @Override
+        protected RangeResult compute() {
+
+            if (this.toId - this.fromId < partitionSize) {
+                return reconcileRange(this.fromId, this.toId, this.since, this.watermark);
+            }
+            long middle = this.fromId + (this.toId - this.fromId) / 2;
+            ReconcileRange lower = new ReconcileRange(this.fromId, middle, this.since, this.watermark);
+            lower.fork();
+            RangeResult upper = new ReconcileRange(middle + 1, this.toId, this.since, this.watermark).compute();
+            return lower.join().plus(upper);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.transfer.application.services.transactions;
+
+public enum ExecutionMode {
+
+    /**
+     * Entity based path, ledger entries are saved as IN_PROGRESS, balances are updated and reloaded and the
+     * entries are then marked as COMPLETED. Kept for comparison with the statement based path.
+     */
+    JPA,
+
+    /**
+     * Debit, credit and both ledger entries are written by a single SQL statement.
+     */
+    STATEMENT,
+
+    /**
+     * Balances are kept and updated in memory by the balance engine, which journals every transfer and writes
+     * ledger entries and balances to the database in the background.
+     */
+    MEMORY,
+
+    /**
+     * Transfers are routed by source account to single threaded partitions, each of which settles the transfers
+     * published to it in batches.
+     */
+    PARTITIONED,
+
+    /**
+     * Concurrent transfers are collected within a short window and settled together as one batch, with one
+     * aggregated balance update per account, while each caller still waits for its own result.
+     */
+    COALESCED
+}
@@ -0,0 +1,120 @@
+package com.transfer.application.services.transactions;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.transfer.application.dtos.common.Money;
+import com.transfer.application.dtos.transactions.SubmitTransaction;
+import com.transfer.application.dtos.transactions.TransactionSuccess;
+import com.transfer.application.repositories.idempotency.IdempotencyKey;
+import com.transfer.application.repositories.idempotency.IdempotencyKeyRepository;
+import jakarta.annotation.PostConstruct;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Responses of transfers submitted with an idempotency key. Keys are stored in the idempotency_keys table by the
+ * transaction settling the transfer, and the most recent keys are indexed in memory so that a retried request is
+ * answered without a database round trip. In memory mode the key is stored once the transfer is journaled, the
+ * engine applies the transaction id derived from the key at most once.
+ */
+@Component
+public class IdempotencyIndex {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Value("${transfer.idempotency.maximum-size:100000}")
+    private long maximumSize;
+
+    private Cache<String, IdempotencyKey> index;
+
+    @PostConstruct
+    public void init() {
+        this.index = Caffeine.newBuilder()
+                .maximumSize(this.maximumSize)
+                .build();
+    }
+
+    /**
+     * Returns the stored response of the key, or null if no transfer was settled with it yet. Raises an error if
+     * the key was used for a different transfer.
+     */
+    public TransactionSuccess find(String idempotencyKey, SubmitTransaction submitTransaction) {
+
+        validate(idempotencyKey);
+
+        IdempotencyKey stored = this.index.getIfPresent(idempotencyKey);
+        if (stored == null) {
+            stored = this.idempotencyKeyRepository.findById(idempotencyKey).orElse(null);
+            if (stored == null) {
+                return null;
+            }
+            this.index.put(idempotencyKey, stored);
+        }
+
+        if (!Objects.equals(stored.getSourceAccountId(), submitTransaction.getSourceAccountId())
+                || !Objects.equals(stored.getDestinationAccountId(), submitTransaction.getDestinationAccountId())
+                || stored.getAmount() != Money.toMinorUnits(submitTransaction.getAmount())) {
+            logger.error("Idempotency key reused for a different transfer, key = {}", idempotencyKey);
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "Idempotency key already used for a different transaction");
+        }
+
+        logger.info("Returning stored response, idempotency key = {}", idempotencyKey);
+        return TransactionSuccess.builder()
+                .sourceAccountId(stored.getSourceAccountId())
+                .updatedBalance(Money.fromMinorUnits(stored.getUpdatedBalance()))
+                .build();
+    }
+
+    /**
+     * Transaction id of the transfer submitted with the key, the same for every retry.
+     */
+    static UUID transactionId(String idempotencyKey) {
+        return UUID.nameUUIDFromBytes(idempotencyKey.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static void validate(String idempotencyKey) {
+
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            logger.error("Invalid idempotency key, length = {}", idempotencyKey.length());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Idempotency key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+    }
+
+    /**
+     * Stores the key in the current transaction, returns false if a concurrent request with the same key has
+     * already been settled, in which case the current transaction must be rolled back.
+     */
+    public boolean store(String idempotencyKey, SubmitTransaction submitTransaction, Long updatedBalance) {
+
+        return this.idempotencyKeyRepository.insertIfAbsent(idempotencyKey, submitTransaction.getSourceAccountId(),
+                submitTransaction.getDestinationAccountId(), Money.toMinorUnits(submitTransaction.getAmount()), updatedBalance) == 1;
+    }
+
+    /**
+     * Indexes the key once the transaction storing it committed.
+     */
+    public void index(String idempotencyKey, SubmitTransaction submitTransaction, Long updatedBalance) {
+
+        this.index.put(idempotencyKey, IdempotencyKey.builder()
+                .idempotencyKey(idempotencyKey)
+                .sourceAccountId(submitTransaction.getSourceAccountId())
+                .destinationAccountId(submitTransaction.getDestinationAccountId())
+                .amount(Money.toMinorUnits(submitTransaction.getAmount()))
+                .updatedBalance(updatedBalance)
+                .build());
+    }
+}
@@ -0,0 +1,91 @@
+package com.transfer.application.services.transactions;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Retries database transactions which PostgreSQL aborted because of a deadlock (40P01) or a serialization
+ * failure (40001), waiting a random time of up to an exponentially growing backoff between attempts.
+ */
+@Component
+public class TransactionRetrier {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    static final String DEADLOCK_DETECTED = "40P01";
+    static final String SERIALIZATION_FAILURE = "40001";
+
+    @Value("${transfer.retry.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${transfer.retry.base-backoff-ms:5}")
+    private long baseBackoffMs;
+
+    @Value("${transfer.retry.max-backoff-ms:200}")
+    private long maxBackoffMs;
+
+    private final AtomicLong deadlocks = new AtomicLong();
+    private final AtomicLong serializationFailures = new AtomicLong();
+
+    public <T> T execute(Supplier<T> action) {
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (RuntimeException e) {
+                String sqlState = sqlState(e);
+                if (DEADLOCK_DETECTED.equals(sqlState)) {
+                    this.deadlocks.incrementAndGet();
+                } else if (SERIALIZATION_FAILURE.equals(sqlState)) {
+                    this.serializationFailures.incrementAndGet();
+                } else {
+                    throw e;
+                }
+
+                if (attempt >= this.maxAttempts) {
+                    logger.error("Transaction retries exhausted, attempts = {}, sql state = {}", attempt, sqlState);
+                    throw e;
+                }
+                logger.warn("Transaction aborted, retrying, attempt = {}, sql state = {}", attempt, sqlState);
+                backoff(attempt);
+            }
+        }
+    }
+
+    public long getDeadlocks() {
+        return this.deadlocks.get();
+    }
+
+    public long getSerializationFailures() {
+        return this.serializationFailures.get();
+    }
+
+    private void backoff(int attempt) {
+
+        // Full jitter, so that transactions which collided once do not collide again on the next attempt
+        long ceiling = Math.min(this.maxBackoffMs, this.baseBackoffMs << Math.min(attempt, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry transaction", e);
+        }
+    }
+
+    static String sqlState(Throwable throwable) {
+
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException && sqlException.getSQLState() != null) {
+                return sqlException.getSQLState();
+            }
+        }
+        return null;
+    }
+}
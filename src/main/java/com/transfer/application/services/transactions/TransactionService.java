@@ -1,147 +1,949 @@
 package com.transfer.application.services.transactions;
 
+import com.transfer.application.dtos.common.Money;
 import com.transfer.application.dtos.transactions.SubmitTransaction;
+import com.transfer.application.dtos.transactions.TransactionBatchResult;
+import com.transfer.application.dtos.transactions.TransactionInfo;
 import com.transfer.application.dtos.transactions.TransactionSuccess;
 import com.transfer.application.repositories.accounts.Account;
 import com.transfer.application.repositories.accounts.AccountRepository;
+import com.transfer.application.repositories.accounts.TransferBalances;
+import com.transfer.application.repositories.buckets.AccountBucketRepository;
+import com.transfer.application.repositories.buckets.BucketBalance;
 import com.transfer.application.repositories.ledgers.Ledger;
 import com.transfer.application.repositories.ledgers.LedgerRepository;
+import com.transfer.application.repositories.outbox.TransferEvent;
+import com.transfer.application.repositories.outbox.TransferEventRepository;
+import com.transfer.application.repositories.queue.QueuedTransfer;
+import com.transfer.application.repositories.queue.QueuedTransferRepository;
+import com.transfer.application.services.accounts.AccountCache;
+import com.transfer.application.services.engine.InMemoryBalanceEngine;
+import com.transfer.application.services.partitions.CoalescingTransferExecutor;
+import com.transfer.application.services.partitions.PartitionedTransferExecutor;
+import jakarta.annotation.PostConstruct;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class TransactionService {
 
     private static final Logger logger = LogManager.getLogger();
 
+    // Errors of failed batch items, also used to map the results of partitioned transfers back to a status
+    private static final String SOURCE_ACCOUNT_NOT_FOUND = "Source account not found";
+    private static final String DESTINATION_ACCOUNT_NOT_FOUND = "Destination account not found";
+    private static final String INSUFFICIENT_FUNDS = "Insufficient funds";
+    static final String ALREADY_SETTLED = "Transaction already settled with the idempotency key";
+    private static final String SAME_ACCOUNT = "Source and destination accounts cannot be the same";
+
+    // Errors of batch items which no retry can settle, the items of a chunk which failed otherwise may settle later
+    static final Set<String> REJECTIONS = Set.of(SAME_ACCOUNT, SOURCE_ACCOUNT_NOT_FOUND, DESTINATION_ACCOUNT_NOT_FOUND, INSUFFICIENT_FUNDS);
+
     @Autowired
     private AccountRepository accountRepository;
 
     @Autowired
     private LedgerRepository ledgerRepository;
 
+    @Autowired
+    private AccountBucketRepository accountBucketRepository;
+
+    @Autowired
+    private QueuedTransferRepository queuedTransferRepository;
+
+    @Autowired
+    private TransferEventRepository transferEventRepository;
+
     @Autowired
     private TransactionTemplate transactionTemplate;
 
+    @Autowired
+    private TransactionRetrier transactionRetrier;
+
+    @Autowired
+    private TransferLog transferLog;
+
+    @Autowired(required = false)
+    private InMemoryBalanceEngine balanceEngine;
+
+    @Autowired(required = false)
+    private AccountCache accountCache;
+
+    @Autowired(required = false)
+    private PartitionedTransferExecutor partitionedExecutor;
+
+    @Autowired(required = false)
+    private CoalescingTransferExecutor coalescingExecutor;
+
+    @Autowired(required = false)
+    private TransferRateLimiter rateLimiter;
+
+    @Autowired
+    private IdempotencyIndex idempotencyIndex;
+
+    @Autowired
+    private TransferMetrics transferMetrics;
+
+    @Value("${transfer.execution.mode:STATEMENT}")
+    private ExecutionMode executionMode;
+
+    @Value("${transfer.execution.ordered-locking:true}")
+    private boolean orderedLocking;
+
+    @Value("${transfer.execution.append-only:false}")
+    private boolean appendOnly;
+
+    @Value("${transfer.outbox.enabled:false}")
+    private boolean outboxEnabled;
+
+    @Value("${transfer.batch.chunk-size:500}")
+    private int batchChunkSize;
+
+    @PostConstruct
+    public void init() {
+
+        // Each partition settles the transfers it collected through the batch path
+        if (this.partitionedExecutor != null) {
+            this.partitionedExecutor.start((submitTransactions, idempotencyKeys) ->
+                    submitTransactions(submitTransactions, null, idempotencyKeys, chunkResults -> {}).getResults());
+        }
+        if (this.coalescingExecutor != null) {
+            this.coalescingExecutor.start((submitTransactions, idempotencyKeys) ->
+                    submitTransactions(submitTransactions, null, idempotencyKeys, chunkResults -> {}).getResults());
+        }
+    }
+
     public TransactionSuccess submitTransaction(SubmitTransaction submitTransaction) {
+        return submitTransaction(submitTransaction, null);
+    }
+
+    public TransactionSuccess submitTransaction(SubmitTransaction submitTransaction, String idempotencyKey) {
 
         // Check if source and destination account are same, raise error otherwise
+        long validationStart = System.nanoTime();
         if (submitTransaction.getSourceAccountId().equals(submitTransaction.getDestinationAccountId())) {
             logger.error("Source and destination accounts cannot be the same, account id = {}", submitTransaction.getSourceAccountId());
+            this.transferMetrics.failure(TransferMetrics.Failure.SAME_ACCOUNT);
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Source and destination accounts cannot be the same");
         }
+        this.transferMetrics.record(TransferMetrics.Stage.VALIDATION, validationStart);
+
+        // A retried request gets the response of the transfer already settled with its key, without touching
+        // accounts or ledgers
+        if (idempotencyKey != null) {
+            TransactionSuccess stored = this.idempotencyIndex.find(idempotencyKey, submitTransaction);
+            if (stored != null) {
+                return stored;
+            }
+        }
+
+        // Transfers above the rate of the source account or of all accounts are rejected before they wait for a
+        // connection or a row lock, so that one busy account cannot hold up the others. A replayed request is
+        // answered above without counting against the rate, a client retrying after a timeout gets its response
+        if (this.rateLimiter != null) {
+            try {
+                this.rateLimiter.acquire(submitTransaction.getSourceAccountId());
+            } catch (TransferRateLimitedException e) {
+                this.transferMetrics.failure(TransferMetrics.Failure.RATE_LIMITED);
+                throw e;
+            }
+        }
+
+        // The balance engine owns the balances in memory mode, the database is not touched synchronously. A key maps
+        // to a transaction id which the engine journals at most once, so concurrent requests with the same key and a
+        // retry after a crash before the key was stored all get the balance of the first application
+        if (this.executionMode == ExecutionMode.MEMORY) {
+            if (idempotencyKey == null) {
+                return this.balanceEngine.transfer(submitTransaction);
+            }
+            TransactionSuccess transactionSuccess = this.balanceEngine.transfer(submitTransaction, IdempotencyIndex.transactionId(idempotencyKey));
+            Long updatedBalance = Money.toMinorUnits(transactionSuccess.getUpdatedBalance());
+            Boolean stored = this.transactionTemplate.execute(status -> this.idempotencyIndex.store(idempotencyKey, submitTransaction, updatedBalance));
+            if (!Boolean.TRUE.equals(stored)) {
+                logger.info("Transaction already settled by a concurrent request, idempotency key = {}", idempotencyKey);
+                return this.idempotencyIndex.find(idempotencyKey, submitTransaction);
+            }
+            this.idempotencyIndex.index(idempotencyKey, submitTransaction, updatedBalance);
+            return transactionSuccess;
+        }
+
+        // The partition owning the source account validates and settles the transfer, together with the other
+        // transfers published to it in the meantime
+        if (this.executionMode == ExecutionMode.PARTITIONED) {
+            return submitGrouped(submitTransaction, idempotencyKey);
+        }
+
+        // Concurrent transfers are grouped and settled together, each caller waits for the result of its own transfer
+        if (this.executionMode == ExecutionMode.COALESCED) {
+            return submitGrouped(submitTransaction, idempotencyKey);
+        }
 
         // Check if source account exists and have enough balance for the transaction, raise error otherwise
-        Account sourceAccount = this.accountRepository.findAccountByAccountId(submitTransaction.getSourceAccountId());
+        // A cached balance may be behind the database, so it is reloaded before rejecting the transfer
+        Account cachedSourceAccount = findAccount(submitTransaction.getSourceAccountId());
+        long amount = Money.toMinorUnits(submitTransaction.getAmount());
+        if (cachedSourceAccount != null && this.accountCache != null && availableBalance(cachedSourceAccount) < amount) {
+            this.accountCache.evict(cachedSourceAccount.getAccountId());
+            cachedSourceAccount = findAccount(submitTransaction.getSourceAccountId());
+        }
+        Account sourceAccount = cachedSourceAccount;
         if (sourceAccount == null) {
             logger.error("Source account not found, account id = {}", submitTransaction.getSourceAccountId());
+            this.transferMetrics.failure(TransferMetrics.Failure.ACCOUNT_NOT_FOUND);
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Source account not found");
-        } else if (sourceAccount.getBalance() < submitTransaction.getAmount()) {
-            logger.error("Insufficient funds, account id = {}, balance = {}", submitTransaction.getSourceAccountId(), sourceAccount.getBalance());
+        } else if (availableBalance(sourceAccount) < amount) {
+            logger.error("Insufficient funds, account id = {}, balance = {}", submitTransaction.getSourceAccountId(), availableBalance(sourceAccount));
+            this.transferMetrics.failure(TransferMetrics.Failure.INSUFFICIENT_FUNDS);
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Insufficient funds");
         }
 
         // Check if destination account exists, raise error otherwise
-        Account destinationAccount = this.accountRepository.findAccountByAccountId(submitTransaction.getDestinationAccountId());
+        Account destinationAccount = findAccount(submitTransaction.getDestinationAccountId());
         if (destinationAccount == null) {
             logger.error("Destination account not found, account id = {}", submitTransaction.getDestinationAccountId());
+            this.transferMetrics.failure(TransferMetrics.Failure.ACCOUNT_NOT_FOUND);
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Destination account not found");
         }
 
         try {
 
             // Execute within a transaction, both debit from source and credit to destination should be completed
-            // Raise error otherwise
-            Boolean result = this.transactionTemplate.execute(status -> executeTransaction(status, sourceAccount, destinationAccount, submitTransaction));
-            if (result == null || !result) {
+            // Raise error otherwise. Transactions aborted by a deadlock or a serialization failure are retried
+            // The idempotency key is stored by the same transaction, a concurrent request with the same key waits
+            // on it and is rolled back once the first one committed. The commit is timed from the end of the callback
+            long transactionStart = System.nanoTime();
+            long[] callbackEnd = new long[1];
+            Settlement settlement = this.transactionRetrier.execute(() -> this.transactionTemplate.execute(status -> {
+                Settlement executed = execute(status, sourceAccount, destinationAccount, submitTransaction);
+                if (executed != null && idempotencyKey != null && !this.idempotencyIndex.store(idempotencyKey, submitTransaction, executed.sourceBalance())) {
+                    status.setRollbackOnly();
+                    executed = Settlement.DUPLICATE;
+                } else if (executed != null) {
+                    recordEvents(List.of(transferEvent(executed.transactionId(), submitTransaction, executed.sourceBalance(), executed.destinationBalance())));
+                }
+                callbackEnd[0] = System.nanoTime();
+                return executed;
+            }));
+            this.transferMetrics.record(TransferMetrics.Stage.TRANSACTION, transactionStart);
+            if (settlement == Settlement.DUPLICATE) {
+                logger.info("Transaction already settled by a concurrent request, idempotency key = {}", idempotencyKey);
+                return this.idempotencyIndex.find(idempotencyKey, submitTransaction);
+            }
+            if (settlement == null) {
                 logger.error("Transaction failed, account id = {}", submitTransaction.getSourceAccountId());
+                this.transferMetrics.failure(TransferMetrics.Failure.ROLLBACK);
+                evictAccounts(sourceAccount.getAccountId(), destinationAccount.getAccountId());
                 throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Transaction failed");
             }
+            this.transferMetrics.record(TransferMetrics.Stage.COMMIT, callbackEnd[0]);
+            evictAccounts(sourceAccount.getAccountId(), destinationAccount.getAccountId());
+            if (idempotencyKey != null) {
+                this.idempotencyIndex.index(idempotencyKey, submitTransaction, settlement.sourceBalance());
+            }
 
             // Return successful response
-            logger.info("Transaction completed, source account id = {}, destination account id = {}", submitTransaction.getSourceAccountId(), submitTransaction.getDestinationAccountId());
+            this.transferLog.completed(settlement.transactionId(), submitTransaction, validationStart,
+                    callbackEnd[0] - transactionStart, System.nanoTime() - callbackEnd[0]);
             return TransactionSuccess.builder()
                     .sourceAccountId(sourceAccount.getAccountId())
-                    .updatedBalance(sourceAccount.getBalance())
+                    .updatedBalance(Money.fromMinorUnits(settlement.sourceBalance()))
                     .build();
 
+        } catch (ResponseStatusException e) {
+            throw e;
         } catch (Exception e) {
             // If an error occurs during the execution, raise the same
             logger.error("Transaction failed, account id = {}, error = {}", submitTransaction.getSourceAccountId(), e.getMessage(), e);
+            this.transferMetrics.failure(TransferMetrics.Failure.ROLLBACK);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Transaction failed");
         }
     }
 
-    private Boolean executeTransaction(TransactionStatus status, Account sourceAccount, Account destinationAccount, SubmitTransaction submitTransaction) {
+    private TransactionSuccess submitGrouped(SubmitTransaction submitTransaction, String idempotencyKey) {
+
+        long start = System.nanoTime();
+        TransactionBatchResult.Item item;
+        try {
+            item = this.executionMode == ExecutionMode.COALESCED
+                    ? this.coalescingExecutor.submit(submitTransaction, idempotencyKey)
+                    : this.partitionedExecutor.submit(submitTransaction, idempotencyKey);
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Transaction failed, account id = {}, error = {}", submitTransaction.getSourceAccountId(), e.getMessage(), e);
+            this.transferMetrics.failure(TransferMetrics.Failure.ROLLBACK);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Transaction failed");
+        }
+
+        // The key was stored by the batch of a concurrent request with the same key, this transfer was not applied
+        if (ALREADY_SETTLED.equals(item.getError())) {
+            logger.info("Transaction already settled by a concurrent request, idempotency key = {}", idempotencyKey);
+            return this.idempotencyIndex.find(idempotencyKey, submitTransaction);
+        }
+
+        if (item.getStatus() != Ledger.Status.COMPLETED) {
+            logger.error("Transaction failed, account id = {}, error = {}", submitTransaction.getSourceAccountId(), item.getError());
+            switch (item.getError()) {
+                case SOURCE_ACCOUNT_NOT_FOUND, DESTINATION_ACCOUNT_NOT_FOUND -> {
+                    this.transferMetrics.failure(TransferMetrics.Failure.ACCOUNT_NOT_FOUND);
+                    throw new ResponseStatusException(HttpStatus.NOT_FOUND, item.getError());
+                }
+                case INSUFFICIENT_FUNDS -> {
+                    this.transferMetrics.failure(TransferMetrics.Failure.INSUFFICIENT_FUNDS);
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, item.getError());
+                }
+                default -> {
+                    this.transferMetrics.failure(TransferMetrics.Failure.ROLLBACK);
+                    throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Transaction failed");
+                }
+            }
+        }
+
+        // The key was stored by the transaction of the batch
+        if (idempotencyKey != null) {
+            this.idempotencyIndex.index(idempotencyKey, submitTransaction, Money.toMinorUnits(item.getUpdatedBalance()));
+        }
+
+        this.transferLog.completedInBatch(item.getTransactionId(), submitTransaction, start);
+        return TransactionSuccess.builder()
+                .sourceAccountId(submitTransaction.getSourceAccountId())
+                .updatedBalance(item.getUpdatedBalance())
+                .build();
+    }
+
+    private Settlement execute(TransactionStatus status, Account sourceAccount, Account destinationAccount, SubmitTransaction submitTransaction) {
+
+        // Transfers touching a bucketed account always go through the bucketed path, which must not lock the
+        // account rows
+        if (isBucketed(sourceAccount) || isBucketed(destinationAccount)) {
+            return executeBucketedTransaction(status, sourceAccount, destinationAccount, submitTransaction);
+        }
+        Map<Long, Account> lockedAccounts = lockAccounts(sourceAccount, destinationAccount);
+        if (this.executionMode == ExecutionMode.STATEMENT) {
+            return executeStatement(status, sourceAccount, destinationAccount, submitTransaction);
+        }
+
+        // Ledger entries start from the balances of the locked rows, the accounts looked up before the transaction
+        // may be behind them
+        return this.appendOnly
+                ? executeAppendOnly(status, sourceAccount, destinationAccount, submitTransaction)
+                : executeTransaction(status, lockedAccounts.getOrDefault(sourceAccount.getId(), sourceAccount),
+                lockedAccounts.getOrDefault(destinationAccount.getId(), destinationAccount), submitTransaction);
+    }
+
+    private Account findAccount(Long accountId) {
+
+        return this.transferMetrics.time(TransferMetrics.Stage.LOOKUP, () -> this.accountCache != null
+                ? this.accountCache.find(accountId)
+                : this.accountRepository.findAccountByAccountId(accountId));
+    }
+
+    private void evictAccounts(Long... accountIds) {
+
+        if (this.accountCache != null) {
+            for (Long accountId : accountIds) {
+                this.accountCache.evict(accountId);
+            }
+        }
+    }
+
+    private Map<Long, Account> lockAccounts(Account sourceAccount, Account destinationAccount) {
+
+        // Both rows are locked by one statement in id order before any update, so that opposite transfers
+        // wait for each other instead of deadlocking. The locked rows are returned by their id
+        if (!this.orderedLocking) {
+            return Map.of();
+        }
+        List<Account> locked = this.transferMetrics.time(TransferMetrics.Stage.LOCK,
+                () -> this.accountRepository.lockAccounts(List.of(sourceAccount.getId(), destinationAccount.getId())));
+        return locked.stream().collect(Collectors.toMap(Account::getId, Function.identity()));
+    }
+
+    private Settlement executeStatement(TransactionStatus status, Account sourceAccount, Account destinationAccount, SubmitTransaction submitTransaction) {
+
+        UUID transactionId = UUID.randomUUID();
+
+        // Debit, credit and both ledger entries are written by one statement, nothing is returned if either update failed
+        Optional<TransferBalances> balances = this.transferMetrics.time(TransferMetrics.Stage.STATEMENT,
+                () -> this.accountRepository.transfer(sourceAccount.getId(), destinationAccount.getId(), Money.toMinorUnits(submitTransaction.getAmount()), transactionId, Ledger.Status.COMPLETED.ordinal()));
+        if (balances.isEmpty()) {
+            // Either a concurrent transaction updated the balance and now account has insufficient funds, or the credit failed
+            logger.error("Transfer statement failed, source account id = {}, destination account id = {}", sourceAccount.getAccountId(), destinationAccount.getAccountId());
+            this.transferMetrics.failure(TransferMetrics.Failure.DEBIT_RACE_LOST);
+            status.setRollbackOnly();
+            return null;
+        }
+        logger.debug("Transfer statement completed, transaction id = {}", transactionId);
+
+        return new Settlement(transactionId, balances.get().getSourceBalance(), balances.get().getDestinationBalance());
+    }
+
+    private Settlement executeTransaction(TransactionStatus status, Account sourceAccount, Account destinationAccount, SubmitTransaction submitTransaction) {
 
         UUID transactionId = UUID.randomUUID();
+        long amount = Money.toMinorUnits(submitTransaction.getAmount());
 
         // Create a Debit Ledger entry for source account
         Ledger debitEntry = Ledger.builder()
                 .transactionId(transactionId)
                 .accountId(sourceAccount.getAccountId())
-                .debit(submitTransaction.getAmount())
+                .debit(amount)
                 .startBalance(sourceAccount.getBalance())
                 .status(Ledger.Status.IN_PROGRESS)
                 .build();
-        debitEntry = this.ledgerRepository.save(debitEntry);
-        logger.info("Debit entry created, ledger id = {}", debitEntry.getId());
+        debitEntry = saveLedger(debitEntry);
+        logger.debug("Debit entry created, ledger id = {}", debitEntry.getId());
 
         // Debit the amount from source account
-        Integer debitResult = this.accountRepository.debitBalance(sourceAccount.getId(), submitTransaction.getAmount());
+        Integer debitResult = this.transferMetrics.time(TransferMetrics.Stage.DEBIT, () -> this.accountRepository.debitBalance(sourceAccount.getId(), amount));
         if (debitResult == 0) {
             // If nothing was updated in DB, a concurrent transaction updated the balance and now account has insufficient funds
             logger.error("Debit failed from source account, account id = {}", sourceAccount.getAccountId());
+            this.transferMetrics.failure(TransferMetrics.Failure.DEBIT_RACE_LOST);
             status.setRollbackOnly();
-            return false;
+            return null;
         }
-        logger.info("Debit completed from source account, account id = {}", sourceAccount.getAccountId());
+        logger.debug("Debit completed from source account, account id = {}", sourceAccount.getAccountId());
 
-        sourceAccount = this.accountRepository.findById(sourceAccount.getId()).get();
+        Account updatedSourceAccount = this.accountRepository.findById(sourceAccount.getId()).get();
 
         // Update Debit Ledger to reflect successful debit
-        debitEntry.setEndBalance(sourceAccount.getBalance());
+        debitEntry.setEndBalance(updatedSourceAccount.getBalance());
         debitEntry.setStatus(Ledger.Status.COMPLETED);
-        this.ledgerRepository.save(debitEntry);
-        logger.info("Debit entry marked as complete, ledger id = {}", debitEntry.getId());
+        saveLedger(debitEntry);
+        logger.debug("Debit entry marked as complete, ledger id = {}", debitEntry.getId());
 
         // Create a Credit Ledger entry for destination account
         Ledger creditEntry = Ledger.builder()
                 .transactionId(transactionId)
                 .accountId(destinationAccount.getAccountId())
-                .credit(submitTransaction.getAmount())
+                .credit(amount)
                 .startBalance(destinationAccount.getBalance())
                 .status(Ledger.Status.IN_PROGRESS)
                 .build();
-        creditEntry = this.ledgerRepository.save(creditEntry);
-        logger.info("Credit entry created, ledger id = {}", creditEntry.getId());
+        creditEntry = saveLedger(creditEntry);
+        logger.debug("Credit entry created, ledger id = {}", creditEntry.getId());
 
         // Credit the amount into destination account
-        Integer creditResult = this.accountRepository.creditBalance(destinationAccount.getId(), submitTransaction.getAmount());
+        Long destinationId = destinationAccount.getId();
+        Integer creditResult = this.transferMetrics.time(TransferMetrics.Stage.CREDIT, () -> this.accountRepository.creditBalance(destinationId, amount));
         if (creditResult == 0) {
             // If nothing was updated in DB, some issue has occurred with account
             logger.error("Credit failed from destination account, account id = {}", destinationAccount.getAccountId());
             status.setRollbackOnly();
-            return false;
+            return null;
         }
-        logger.info("Credit completed from destination account, account id = {}", destinationAccount.getAccountId());
+        logger.debug("Credit completed from destination account, account id = {}", destinationAccount.getAccountId());
 
         destinationAccount = this.accountRepository.findById(destinationAccount.getId()).get();
 
         // Update Credit Ledger to reflect successful credit
         creditEntry.setEndBalance(destinationAccount.getBalance());
         creditEntry.setStatus(Ledger.Status.COMPLETED);
-        this.ledgerRepository.save(creditEntry);
-        logger.info("Credit entry marked as complete, ledger id = {}", creditEntry.getId());
+        saveLedger(creditEntry);
+        logger.debug("Credit entry marked as complete, ledger id = {}", creditEntry.getId());
+
+        return new Settlement(transactionId, updatedSourceAccount.getBalance(), destinationAccount.getBalance());
+    }
+
+    private Settlement executeAppendOnly(TransactionStatus status, Account sourceAccount, Account destinationAccount, SubmitTransaction submitTransaction) {
+
+        UUID transactionId = UUID.randomUUID();
+        long amount = Money.toMinorUnits(submitTransaction.getAmount());
+
+        // Both balances come back from their updates, so each ledger entry is inserted once with its final state
+        // instead of being inserted in progress and completed by a second write
+        Optional<Long> sourceBalance = this.transferMetrics.time(TransferMetrics.Stage.DEBIT, () -> this.accountRepository.debitBalanceReturning(sourceAccount.getId(), amount));
+        if (sourceBalance.isEmpty()) {
+            // If nothing was updated in DB, a concurrent transaction updated the balance and now account has insufficient funds
+            logger.error("Debit failed from source account, account id = {}", sourceAccount.getAccountId());
+            this.transferMetrics.failure(TransferMetrics.Failure.DEBIT_RACE_LOST);
+            status.setRollbackOnly();
+            return null;
+        }
+        logger.debug("Debit completed from source account, account id = {}", sourceAccount.getAccountId());
+
+        Optional<Long> destinationBalance = this.transferMetrics.time(TransferMetrics.Stage.CREDIT, () -> this.accountRepository.creditBalanceReturning(destinationAccount.getId(), amount));
+        if (destinationBalance.isEmpty()) {
+            // If nothing was updated in DB, some issue has occurred with account
+            logger.error("Credit failed from destination account, account id = {}", destinationAccount.getAccountId());
+            status.setRollbackOnly();
+            return null;
+        }
+        logger.debug("Credit completed from destination account, account id = {}", destinationAccount.getAccountId());
+
+        Ledger debitEntry = ledgerEntry(transactionId, sourceAccount, null, sourceBalance.get() + amount, sourceBalance.get());
+        debitEntry.setDebit(amount);
+        Ledger creditEntry = ledgerEntry(transactionId, destinationAccount, null, destinationBalance.get() - amount, destinationBalance.get());
+        creditEntry.setCredit(amount);
+
+        long saveStart = System.nanoTime();
+        this.ledgerRepository.insertAll(List.of(debitEntry, creditEntry));
+        this.transferMetrics.record(TransferMetrics.Stage.LEDGER_SAVE, saveStart);
+        logger.debug("Ledger entries created, transaction id = {}", transactionId);
+
+        return new Settlement(transactionId, sourceBalance.get(), destinationBalance.get());
+    }
+
+    private Settlement executeBucketedTransaction(TransactionStatus status, Account sourceAccount, Account destinationAccount, SubmitTransaction submitTransaction) {
+
+        UUID transactionId = UUID.randomUUID();
+        long amount = Money.toMinorUnits(submitTransaction.getAmount());
+
+        // Debit from any bucket of the source account which can cover the amount, otherwise from the account row
+        Optional<Ledger> debitEntry = isBucketed(sourceAccount)
+                ? debitBucketed(transactionId, sourceAccount, amount)
+                : debitRow(transactionId, sourceAccount, amount);
+        if (debitEntry.isEmpty()) {
+            logger.error("Debit failed from source account, account id = {}", sourceAccount.getAccountId());
+            this.transferMetrics.failure(TransferMetrics.Failure.DEBIT_RACE_LOST);
+            status.setRollbackOnly();
+            return null;
+        }
+
+        // Credit a random bucket of the destination account, or the account row if it is not bucketed
+        Optional<Ledger> creditEntry;
+        if (isBucketed(destinationAccount)) {
+            creditEntry = creditBucketed(transactionId, destinationAccount, amount);
+        } else {
+            creditEntry = this.transferMetrics.time(TransferMetrics.Stage.CREDIT, () -> this.accountRepository.creditBalanceReturning(destinationAccount.getId(), amount))
+                    .map(balance -> ledgerEntry(transactionId, destinationAccount, null, balance - amount, balance));
+            creditEntry.ifPresent(entry -> entry.setCredit(amount));
+        }
+        if (creditEntry.isEmpty()) {
+            logger.error("Credit failed to destination account, account id = {}", destinationAccount.getAccountId());
+            status.setRollbackOnly();
+            return null;
+        }
+
+        long saveStart = System.nanoTime();
+        this.ledgerRepository.insertAll(List.of(debitEntry.get(), creditEntry.get()));
+        this.transferMetrics.record(TransferMetrics.Stage.LEDGER_SAVE, saveStart);
+        logger.debug("Bucketed transfer completed, transaction id = {}", transactionId);
+
+        return new Settlement(transactionId, accountBalance(sourceAccount, debitEntry.get()), accountBalance(destinationAccount, creditEntry.get()));
+    }
+
+    private Optional<Ledger> debitRow(UUID transactionId, Account account, long amount) {
+
+        Optional<Ledger> debitEntry = this.transferMetrics.time(TransferMetrics.Stage.DEBIT, () -> this.accountRepository.debitBalanceReturning(account.getId(), amount))
+                .map(balance -> ledgerEntry(transactionId, account, null, balance + amount, balance));
+        debitEntry.ifPresent(entry -> entry.setDebit(amount));
+        return debitEntry;
+    }
+
+    private Optional<Ledger> debitBucketed(UUID transactionId, Account account, long amount) {
+
+        Optional<BucketBalance> bucketBalance = this.transferMetrics.time(TransferMetrics.Stage.DEBIT, () -> this.accountBucketRepository.debitAnyBucket(account.getAccountId(), amount));
+        if (bucketBalance.isPresent()) {
+            Ledger debitEntry = ledgerEntry(transactionId, account, bucketBalance.get().getBucket(), bucketBalance.get().getBalance() + amount, bucketBalance.get().getBalance());
+            debitEntry.setDebit(amount);
+            return Optional.of(debitEntry);
+        }
+
+        // No single bucket has enough funds, fold every bucket back into the account row. The row is locked here
+        // outside of the id order of the other rows, which only happens once the buckets are drained, and a
+        // deadlock it runs into is retried
+        this.accountBucketRepository.consolidate(account.getAccountId());
+        logger.debug("Account buckets consolidated, account id = {}", account.getAccountId());
+        return debitRow(transactionId, account, amount);
+    }
+
+    private Optional<Ledger> creditBucketed(UUID transactionId, Account account, long amount) {
+
+        int bucket = ThreadLocalRandom.current().nextInt(account.getBucketCount());
+        Optional<Ledger> creditEntry = this.transferMetrics.time(TransferMetrics.Stage.CREDIT, () -> this.accountBucketRepository.creditBucket(account.getAccountId(), bucket, amount))
+                .map(bucketBalance -> ledgerEntry(transactionId, account, bucket, bucketBalance.getBalance() - amount, bucketBalance.getBalance()));
+        creditEntry.ifPresent(entry -> entry.setCredit(amount));
+        return creditEntry;
+    }
+
+    // Credits back a debit of a bucketed account made by an item which is not applied
+    private void refund(Account account, Ledger debitEntry, long amount) {
+
+        if (debitEntry.getBucket() != null) {
+            this.accountBucketRepository.creditBucket(account.getAccountId(), debitEntry.getBucket(), amount);
+        } else {
+            this.accountRepository.creditBalanceReturning(account.getId(), amount);
+        }
+    }
+
+    // The end balance of an entry on a bucket is the balance of that bucket only, the account holds the total
+    private long accountBalance(Account account, Ledger entry) {
+
+        return isBucketed(account) ? this.accountBucketRepository.totalBalance(account.getAccountId()) : entry.getEndBalance();
+    }
+
+    private TransferEvent transferEvent(UUID transactionId, SubmitTransaction submitTransaction, Long sourceBalance, Long destinationBalance) {
+
+        return TransferEvent.builder()
+                .transactionId(transactionId)
+                .sourceAccountId(submitTransaction.getSourceAccountId())
+                .destinationAccountId(submitTransaction.getDestinationAccountId())
+                .amount(Money.toMinorUnits(submitTransaction.getAmount()))
+                .sourceBalance(sourceBalance)
+                .destinationBalance(destinationBalance)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private void recordEvents(List<TransferEvent> events) {
+
+        // Events are written by the transaction of the transfers, the relay publishes them once it committed
+        if (this.outboxEnabled && !events.isEmpty()) {
+            this.transferEventRepository.insertAll(events);
+        }
+    }
+
+    private Ledger saveLedger(Ledger ledger) {
+        return this.transferMetrics.time(TransferMetrics.Stage.LEDGER_SAVE, () -> this.ledgerRepository.save(ledger));
+    }
+
+    private Ledger ledgerEntry(UUID transactionId, Account account, Integer bucket, Long startBalance, Long endBalance) {
+
+        return Ledger.builder()
+                .transactionId(transactionId)
+                .accountId(account.getAccountId())
+                .bucket(bucket)
+                .startBalance(startBalance)
+                .endBalance(endBalance)
+                .status(Ledger.Status.COMPLETED)
+                .build();
+    }
+
+    private boolean isBucketed(Account account) {
+
+        return account.getBucketCount() != null;
+    }
+
+    private long availableBalance(Account account) {
+
+        return isBucketed(account)
+                ? account.getBalance() + this.accountBucketRepository.sumBalanceByAccountId(account.getAccountId())
+                : account.getBalance();
+    }
+
+    public TransactionBatchResult submitTransactions(List<SubmitTransaction> submitTransactions) {
+
+        return submitTransactions(submitTransactions, null, chunkResults -> {});
+    }
+
+    /**
+     * Settles the transfers under the given transaction ids (random ones if null). The results of each chunk are
+     * passed to the callback within the database transaction which settled the chunk, so that the caller can
+     * record them atomically with the transfers.
+     */
+    TransactionBatchResult submitTransactions(List<SubmitTransaction> submitTransactions, List<UUID> transactionIds,
+                                              Consumer<List<TransactionBatchResult.Item>> onChunkSettled) {
+
+        return submitTransactions(submitTransactions, transactionIds, null, onChunkSettled);
+    }
+
+    /**
+     * Same as above, idempotency keys (null for items without one) are stored by the transaction settling their
+     * item. An item whose key was already stored is not applied and fails with ALREADY_SETTLED.
+     */
+    TransactionBatchResult submitTransactions(List<SubmitTransaction> submitTransactions, List<UUID> transactionIds, List<String> idempotencyKeys,
+                                                      Consumer<List<TransactionBatchResult.Item>> onChunkSettled) {
+
+        // The balance engine applies each transfer in memory, there is no database round trip to save. Its
+        // journal is the durable record of the transfers, so the callback only runs once all of them are applied.
+        // The engine applies a transaction id once, so transfers whose results the callback failed to record get
+        // the same results when they are submitted again
+        if (this.executionMode == ExecutionMode.MEMORY) {
+            TransactionBatchResult transactionBatchResult = submitTransactionsInMemory(submitTransactions, transactionIds);
+            try {
+                this.transactionTemplate.executeWithoutResult(status -> onChunkSettled.accept(transactionBatchResult.getResults()));
+            } catch (Exception e) {
+                logger.error("Transaction batch results not recorded, size = {}, error = {}", submitTransactions.size(), e.getMessage(), e);
+            }
+            return transactionBatchResult;
+        }
+
+        // Fetch every account referenced in the batch with a single lookup
+        Set<Long> accountIds = new HashSet<>();
+        submitTransactions.forEach(submitTransaction -> {
+            accountIds.add(submitTransaction.getSourceAccountId());
+            accountIds.add(submitTransaction.getDestinationAccountId());
+        });
+        Map<Long, Account> accounts = this.accountRepository.findAccountsByAccountIdIn(accountIds)
+                .stream()
+                .collect(Collectors.toMap(Account::getAccountId, Function.identity()));
+
+        // Reject the items which can never succeed, the remaining ones are settled in chunks
+        TransactionBatchResult.Item[] results = new TransactionBatchResult.Item[submitTransactions.size()];
+        List<Integer> settleable = new ArrayList<>();
+        for (int index = 0; index < submitTransactions.size(); index++) {
+            SubmitTransaction submitTransaction = submitTransactions.get(index);
+            if (submitTransaction.getSourceAccountId().equals(submitTransaction.getDestinationAccountId())) {
+                results[index] = failedItem(index, submitTransaction, SAME_ACCOUNT);
+            } else if (!accounts.containsKey(submitTransaction.getSourceAccountId())) {
+                results[index] = failedItem(index, submitTransaction, SOURCE_ACCOUNT_NOT_FOUND);
+            } else if (!accounts.containsKey(submitTransaction.getDestinationAccountId())) {
+                results[index] = failedItem(index, submitTransaction, DESTINATION_ACCOUNT_NOT_FOUND);
+            } else {
+                settleable.add(index);
+            }
+        }
+
+        // Each chunk is settled within its own transaction, a failed chunk does not affect the others
+        for (int from = 0; from < settleable.size(); from += this.batchChunkSize) {
+            List<Integer> chunk = settleable.subList(from, Math.min(from + this.batchChunkSize, settleable.size()));
+            try {
+                List<TransactionBatchResult.Item> chunkResults = this.transactionRetrier.execute(() -> this.transactionTemplate.execute(status -> {
+                    List<TransactionBatchResult.Item> executed = executeBatch(chunk, submitTransactions, transactionIds, idempotencyKeys, accounts);
+                    onChunkSettled.accept(executed);
+                    return executed;
+                }));
+                chunkResults.forEach(item -> results[item.getIndex()] = item);
+            } catch (Exception e) {
+                logger.error("Transaction batch chunk failed, size = {}, error = {}", chunk.size(), e.getMessage(), e);
+                chunk.forEach(index -> results[index] = failedItem(index, submitTransactions.get(index), "Transaction failed"));
+            }
+
+            // Cached balances of every account touched by the chunk are outdated now
+            chunk.forEach(index -> evictAccounts(submitTransactions.get(index).getSourceAccountId(), submitTransactions.get(index).getDestinationAccountId()));
+        }
+
+        int completed = (int) Arrays.stream(results).filter(item -> item.getStatus() == Ledger.Status.COMPLETED).count();
+        logger.debug("Transaction batch processed, size = {}, completed = {}", results.length, completed);
+        return TransactionBatchResult.builder()
+                .completed(completed)
+                .failed(results.length - completed)
+                .results(Arrays.asList(results))
+                .build();
+    }
+
+    private TransactionBatchResult submitTransactionsInMemory(List<SubmitTransaction> submitTransactions, List<UUID> transactionIds) {
+
+        List<TransactionBatchResult.Item> results = new ArrayList<>(submitTransactions.size());
+        for (int index = 0; index < submitTransactions.size(); index++) {
+            SubmitTransaction submitTransaction = submitTransactions.get(index);
+            UUID transactionId = transactionIds != null ? transactionIds.get(index) : null;
+            try {
+                TransactionSuccess transactionSuccess = transferInMemory(submitTransaction, transactionId);
+                results.add(TransactionBatchResult.Item.builder()
+                        .index(index)
+                        .transactionId(transactionId)
+                        .sourceAccountId(submitTransaction.getSourceAccountId())
+                        .destinationAccountId(submitTransaction.getDestinationAccountId())
+                        .status(Ledger.Status.COMPLETED)
+                        .updatedBalance(transactionSuccess.getUpdatedBalance())
+                        .build());
+            } catch (ResponseStatusException e) {
+                results.add(failedItem(index, submitTransaction, e.getReason()));
+            }
+        }
+
+        int completed = (int) results.stream().filter(item -> item.getStatus() == Ledger.Status.COMPLETED).count();
+        return TransactionBatchResult.builder()
+                .completed(completed)
+                .failed(results.size() - completed)
+                .results(results)
+                .build();
+    }
+
+    // Items of a batch or of the queue were admitted with their request, they are not rate limited again
+    private TransactionSuccess transferInMemory(SubmitTransaction submitTransaction, UUID transactionId) {
+
+        if (submitTransaction.getSourceAccountId().equals(submitTransaction.getDestinationAccountId())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Source and destination accounts cannot be the same");
+        }
+        return this.balanceEngine.transfer(submitTransaction, transactionId);
+    }
+
+    private List<TransactionBatchResult.Item> executeBatch(List<Integer> chunk, List<SubmitTransaction> submitTransactions, List<UUID> transactionIds,
+                                                           List<String> idempotencyKeys, Map<Long, Account> accounts) {
+
+        // Lock every account touched by the chunk with one statement in id order and track their balances in memory.
+        // Bucketed accounts are debited and credited through their buckets as in a single transfer, so their rows
+        // are not locked
+        Set<Long> ids = new HashSet<>();
+        chunk.forEach(index -> {
+            for (Long accountId : List.of(submitTransactions.get(index).getSourceAccountId(), submitTransactions.get(index).getDestinationAccountId())) {
+                if (!isBucketed(accounts.get(accountId))) {
+                    ids.add(accounts.get(accountId).getId());
+                }
+            }
+        });
+        Map<Long, Long> balances = new HashMap<>();
+        if (!ids.isEmpty()) {
+            this.accountRepository.lockAccounts(ids).forEach(account -> balances.put(account.getId(), account.getBalance()));
+        }
+
+        List<TransactionBatchResult.Item> chunkResults = new ArrayList<>(chunk.size());
+        List<Ledger> entries = new ArrayList<>(chunk.size() * 2);
+        List<TransferEvent> events = new ArrayList<>(chunk.size());
+        Map<Long, Long> deltas = new HashMap<>();
+        for (Integer index : chunk) {
+            SubmitTransaction submitTransaction = submitTransactions.get(index);
+            Account sourceAccount = accounts.get(submitTransaction.getSourceAccountId());
+            Account destinationAccount = accounts.get(submitTransaction.getDestinationAccountId());
+            long amount = Money.toMinorUnits(submitTransaction.getAmount());
+
+            UUID transactionId = transactionIds != null ? transactionIds.get(index) : UUID.randomUUID();
+
+            // Items are applied in submission order, a transfer fails if earlier items drained the source account
+            Ledger debitEntry;
+            if (isBucketed(sourceAccount)) {
+                Optional<Ledger> debited = debitBucketed(transactionId, sourceAccount, amount);
+                if (debited.isEmpty()) {
+                    chunkResults.add(failedItem(index, submitTransaction, INSUFFICIENT_FUNDS));
+                    continue;
+                }
+                debitEntry = debited.get();
+            } else {
+                long sourceBalance = balances.get(sourceAccount.getId());
+                if (sourceBalance < amount) {
+                    chunkResults.add(failedItem(index, submitTransaction, INSUFFICIENT_FUNDS));
+                    continue;
+                }
+                debitEntry = ledgerEntry(transactionId, sourceAccount, null, sourceBalance, sourceBalance - amount);
+                debitEntry.setDebit(amount);
+            }
+            long updatedBalance = accountBalance(sourceAccount, debitEntry);
+
+            // The key is stored before the item is applied to the balances held in memory, a concurrent request
+            // storing the same key is waited for. A bucket debited already is credited back
+            String idempotencyKey = idempotencyKeys != null ? idempotencyKeys.get(index) : null;
+            if (idempotencyKey != null && !this.idempotencyIndex.store(idempotencyKey, submitTransaction, updatedBalance)) {
+                if (isBucketed(sourceAccount)) {
+                    refund(sourceAccount, debitEntry, amount);
+                }
+                chunkResults.add(failedItem(index, submitTransaction, ALREADY_SETTLED));
+                continue;
+            }
+            if (!isBucketed(sourceAccount)) {
+                balances.put(sourceAccount.getId(), debitEntry.getEndBalance());
+                deltas.merge(sourceAccount.getId(), -amount, Long::sum);
+            }
+
+            Ledger creditEntry;
+            if (isBucketed(destinationAccount)) {
+                creditEntry = creditBucketed(transactionId, destinationAccount, amount)
+                        .orElseThrow(() -> new IllegalStateException("Credit failed to destination bucket, account id = " + destinationAccount.getAccountId()));
+            } else {
+                long destinationBalance = balances.get(destinationAccount.getId());
+                creditEntry = ledgerEntry(transactionId, destinationAccount, null, destinationBalance, destinationBalance + amount);
+                creditEntry.setCredit(amount);
+                balances.put(destinationAccount.getId(), destinationBalance + amount);
+                deltas.merge(destinationAccount.getId(), amount, Long::sum);
+            }
+
+            entries.add(debitEntry);
+            entries.add(creditEntry);
+            events.add(transferEvent(transactionId, submitTransaction, updatedBalance, accountBalance(destinationAccount, creditEntry)));
+
+            chunkResults.add(TransactionBatchResult.Item.builder()
+                    .index(index)
+                    .transactionId(transactionId)
+                    .sourceAccountId(sourceAccount.getAccountId())
+                    .destinationAccountId(destinationAccount.getAccountId())
+                    .status(Ledger.Status.COMPLETED)
+                    .updatedBalance(Money.fromMinorUnits(updatedBalance))
+                    .build());
+        }
+
+        // Write all ledger entries and one aggregated balance update per account
+        this.ledgerRepository.insertAll(entries);
+        this.accountRepository.applyBalanceDeltas(deltas);
+        recordEvents(events);
+        logger.debug("Transaction batch chunk settled, size = {}, ledger entries = {}, accounts = {}", chunk.size(), entries.size(), deltas.size());
+
+        return chunkResults;
+    }
+
+    public TransactionInfo getTransaction(UUID transactionId) {
+
+        // Transfers submitted asynchronously keep their status in the queue, before and after they are settled
+        Optional<QueuedTransfer> queuedTransfer = this.queuedTransferRepository.findById(transactionId);
+        if (queuedTransfer.isPresent()) {
+            return transactionInfo(queuedTransfer.get());
+        }
+
+        // Other transfers are only recorded by their ledger entries
+        List<Ledger> ledgers = this.ledgerRepository.findLedgersByTransactionId(transactionId);
+        Ledger debitEntry = ledgers.stream().filter(ledger -> ledger.getDebit() != null).findFirst().orElse(null);
+        if (debitEntry == null) {
+            logger.error("Transaction not found, transaction id = {}", transactionId);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Transaction not found");
+        }
+        Ledger creditEntry = ledgers.stream().filter(ledger -> ledger.getCredit() != null).findFirst().orElse(null);
+
+        Ledger.Status status = Ledger.Status.COMPLETED;
+        if (ledgers.stream().anyMatch(ledger -> ledger.getStatus() == Ledger.Status.FAILED)) {
+            status = Ledger.Status.FAILED;
+        } else if (creditEntry == null || ledgers.stream().anyMatch(ledger -> ledger.getStatus() == Ledger.Status.IN_PROGRESS)) {
+            status = Ledger.Status.IN_PROGRESS;
+        }
+
+        // The end balance of an entry of a bucketed account is that of one bucket or of the row, so the current
+        // balance of the account is reported instead
+        Long updatedBalance = null;
+        if (status == Ledger.Status.COMPLETED) {
+            Account sourceAccount = findAccount(debitEntry.getAccountId());
+            updatedBalance = sourceAccount != null ? accountBalance(sourceAccount, debitEntry) : debitEntry.getEndBalance();
+        }
+
+        return TransactionInfo.builder()
+                .transactionId(transactionId)
+                .sourceAccountId(debitEntry.getAccountId())
+                .destinationAccountId(creditEntry != null ? creditEntry.getAccountId() : null)
+                .amount(Money.fromMinorUnits(debitEntry.getDebit()))
+                .status(status)
+                .updatedBalance(Money.fromMinorUnits(updatedBalance))
+                .build();
+    }
+
+    TransactionInfo transactionInfo(QueuedTransfer queuedTransfer) {
+
+        return TransactionInfo.builder()
+                .transactionId(queuedTransfer.getTransactionId())
+                .sourceAccountId(queuedTransfer.getSourceAccountId())
+                .destinationAccountId(queuedTransfer.getDestinationAccountId())
+                .amount(Money.fromMinorUnits(queuedTransfer.getAmount()))
+                .status(queuedTransfer.getStatus())
+                .updatedBalance(Money.fromMinorUnits(queuedTransfer.getUpdatedBalance()))
+                .error(queuedTransfer.getError())
+                .build();
+    }
+
+    private TransactionBatchResult.Item failedItem(int index, SubmitTransaction submitTransaction, String error) {
+
+        return TransactionBatchResult.Item.builder()
+                .index(index)
+                .sourceAccountId(submitTransaction.getSourceAccountId())
+                .destinationAccountId(submitTransaction.getDestinationAccountId())
+                .status(Ledger.Status.FAILED)
+                .error(error)
+                .build();
+    }
+
+    private record Settlement(UUID transactionId, Long sourceBalance, Long destinationBalance) {
 
-        return true;
+        // Marks a transfer rolled back because its idempotency key was stored concurrently
+        private static final Settlement DUPLICATE = new Settlement(null, null, null);
     }
 }
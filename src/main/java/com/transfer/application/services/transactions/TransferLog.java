@@ -0,0 +1,61 @@
+package com.transfer.application.services.transactions;
+
+import com.transfer.application.dtos.transactions.SubmitTransaction;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes one summary line per settled transfer, with its ids, amount and stage timings, in place of a line per
+ * step. Only a sample of the successful transfers is logged (transfer.logging.success-sample-rate), failures are
+ * always logged where they occur.
+ */
+@Component
+public class TransferLog {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    @Value("${transfer.logging.success-sample-rate:1.0}")
+    private double successSampleRate;
+
+    /**
+     * Logs a transfer settled by its own database transaction.
+     */
+    public void completed(UUID transactionId, SubmitTransaction submitTransaction, long startNanos, long transactionNanos, long commitNanos) {
+
+        if (!sampled()) {
+            return;
+        }
+        logger.info("Transaction completed, transaction id = {}, source account id = {}, destination account id = {}, amount = {}, total us = {}, transaction us = {}, commit us = {}",
+                transactionId, submitTransaction.getSourceAccountId(), submitTransaction.getDestinationAccountId(), submitTransaction.getAmount(),
+                micros(System.nanoTime() - startNanos), micros(transactionNanos), micros(commitNanos));
+    }
+
+    /**
+     * Logs a transfer settled as part of a batch by a partition or a coalescing lane.
+     */
+    public void completedInBatch(UUID transactionId, SubmitTransaction submitTransaction, long startNanos) {
+
+        if (!sampled()) {
+            return;
+        }
+        logger.info("Transaction completed in batch, transaction id = {}, source account id = {}, destination account id = {}, amount = {}, total us = {}",
+                transactionId, submitTransaction.getSourceAccountId(), submitTransaction.getDestinationAccountId(), submitTransaction.getAmount(),
+                micros(System.nanoTime() - startNanos));
+    }
+
+    private boolean sampled() {
+
+        return logger.isInfoEnabled()
+                && (this.successSampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < this.successSampleRate);
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
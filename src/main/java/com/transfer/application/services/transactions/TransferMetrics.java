@@ -0,0 +1,78 @@
+package com.transfer.application.services.transactions;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Timers for each stage of a single transfer and counters for each reason a transfer fails. Timers publish
+ * percentile histograms, so that latency percentiles can be aggregated across instances.
+ */
+@Component
+public class TransferMetrics {
+
+    public enum Stage {
+        VALIDATION,
+        LOOKUP,
+        TRANSACTION,
+        LOCK,
+        STATEMENT,
+        DEBIT,
+        CREDIT,
+        LEDGER_SAVE,
+        COMMIT
+    }
+
+    public enum Failure {
+        SAME_ACCOUNT,
+        ACCOUNT_NOT_FOUND,
+        INSUFFICIENT_FUNDS,
+        DEBIT_RACE_LOST,
+        ROLLBACK,
+        RATE_LIMITED
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<Stage, Timer> timers = new EnumMap<>(Stage.class);
+    private final Map<Failure, Counter> failures = new EnumMap<>(Failure.class);
+
+    @PostConstruct
+    public void init() {
+
+        for (Stage stage : Stage.values()) {
+            this.timers.put(stage, Timer.builder("transfer.stage")
+                    .description("Time spent in a stage of a transfer")
+                    .tag("stage", stage.name().toLowerCase())
+                    .publishPercentileHistogram()
+                    .register(this.meterRegistry));
+        }
+        for (Failure failure : Failure.values()) {
+            this.failures.put(failure, Counter.builder("transfer.failures")
+                    .description("Transfers which failed, by reason")
+                    .tag("reason", failure.name().toLowerCase())
+                    .register(this.meterRegistry));
+        }
+    }
+
+    public <T> T time(Stage stage, Supplier<T> action) {
+        return this.timers.get(stage).record(action);
+    }
+
+    public void record(Stage stage, long startNanos) {
+        this.timers.get(stage).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void failure(Failure failure) {
+        this.failures.get(failure).increment();
+    }
+}
@@ -0,0 +1,291 @@
+package com.transfer.application.services.transactions;
+
+import com.transfer.application.dtos.common.Money;
+import com.transfer.application.dtos.transactions.SubmitTransaction;
+import com.transfer.application.dtos.transactions.TransactionBatchResult;
+import com.transfer.application.dtos.transactions.TransactionInfo;
+import com.transfer.application.dtos.transactions.TransactionSuccess;
+import com.transfer.application.repositories.accounts.AccountRepository;
+import com.transfer.application.repositories.ledgers.Ledger;
+import com.transfer.application.repositories.queue.QueuedTransfer;
+import com.transfer.application.repositories.queue.QueuedTransferRepository;
+import com.transfer.application.services.accounts.AccountCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transfers submitted asynchronously. A transfer is validated, stored in the transfer_queue table and answered
+ * right away, workers settle the queued transfers in batches through the batch path of the transaction service.
+ * Transfers are partitioned by source account and each partition is drained by a single worker, so transfers
+ * from the same account are settled in the order they were queued. The result of each transfer is written to
+ * the queue in the database transaction which settled it.
+ * <p>
+ * A worker claims the transfers it settles for transfer.queue.claim-seconds, so that workers of several instances
+ * never take the same transfers, and transfers claimed by a worker which died are taken again once the claim
+ * expired. A chunk whose transfers turn out to be settled already is rolled back and its other transfers are
+ * released for the next pass, and so are the transfers of a chunk which failed for any other reason, such as a
+ * dropped connection or a statement timeout. Only transfers rejected by the batch path are failed.
+ * <p>
+ * The idempotency key of a queued transfer is stored in idempotency_keys by the chunk settling it, like the key of a
+ * synchronous request. A transfer whose key a synchronous request stored first is not applied again, it completes
+ * with the balance stored for the key.
+ */
+@Service
+@ConditionalOnProperty(name = "transfer.queue.enabled", havingValue = "true")
+public class TransferQueue {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    // Claimed rows are returned in no particular order
+    private static final Comparator<QueuedTransfer> QUEUE_ORDER = Comparator.comparing(QueuedTransfer::getCreatedAt)
+            .thenComparing(QueuedTransfer::getTransactionId);
+
+    @Autowired
+    private QueuedTransferRepository queuedTransferRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private IdempotencyIndex idempotencyIndex;
+
+    @Autowired(required = false)
+    private AccountCache accountCache;
+
+    @Value("${transfer.queue.partitions:4}")
+    private int partitions;
+
+    @Value("${transfer.queue.batch-size:500}")
+    private int batchSize;
+
+    @Value("${transfer.queue.poll-interval-ms:20}")
+    private long pollIntervalMs;
+
+    @Value("${transfer.queue.claim-seconds:60}")
+    private long claimSeconds;
+
+    private ScheduledExecutorService workers;
+
+    @PostConstruct
+    public void start() {
+
+        AtomicInteger count = new AtomicInteger();
+        this.workers = Executors.newScheduledThreadPool(this.partitions, runnable -> {
+            Thread thread = new Thread(runnable, "transfer-queue-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int partition = 0; partition < this.partitions; partition++) {
+            int worker = partition;
+            this.workers.scheduleWithFixedDelay(() -> drain(worker), this.pollIntervalMs, this.pollIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        logger.info("Transfer queue started, partitions = {}, batch size = {}", this.partitions, this.batchSize);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+
+        // Transfers left in the queue are settled by the workers after the next start
+        this.workers.shutdown();
+        this.workers.awaitTermination(30, TimeUnit.SECONDS);
+        logger.info("Transfer queue stopped");
+    }
+
+    public TransactionInfo enqueue(SubmitTransaction submitTransaction, String idempotencyKey) {
+
+        if (submitTransaction.getSourceAccountId().equals(submitTransaction.getDestinationAccountId())) {
+            logger.error("Source and destination accounts cannot be the same, account id = {}", submitTransaction.getSourceAccountId());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Source and destination accounts cannot be the same");
+        }
+        if (!exists(submitTransaction.getSourceAccountId())) {
+            logger.error("Source account not found, account id = {}", submitTransaction.getSourceAccountId());
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Source account not found");
+        }
+        if (!exists(submitTransaction.getDestinationAccountId())) {
+            logger.error("Destination account not found, account id = {}", submitTransaction.getDestinationAccountId());
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Destination account not found");
+        }
+
+        // A retried request with the same idempotency key maps to the same transaction id, and is not queued again
+        UUID transactionId = UUID.randomUUID();
+        if (idempotencyKey != null) {
+            IdempotencyIndex.validate(idempotencyKey);
+            transactionId = IdempotencyIndex.transactionId(idempotencyKey);
+        }
+
+        long amount = Money.toMinorUnits(submitTransaction.getAmount());
+        int inserted = this.queuedTransferRepository.insertIfAbsent(transactionId, idempotencyKey, submitTransaction.getSourceAccountId(),
+                submitTransaction.getDestinationAccountId(), amount, Ledger.Status.IN_PROGRESS.ordinal());
+        if (inserted == 0) {
+            QueuedTransfer queuedTransfer = this.queuedTransferRepository.findById(transactionId).orElseThrow();
+            if (!Objects.equals(queuedTransfer.getSourceAccountId(), submitTransaction.getSourceAccountId())
+                    || !Objects.equals(queuedTransfer.getDestinationAccountId(), submitTransaction.getDestinationAccountId())
+                    || queuedTransfer.getAmount() != amount) {
+                logger.error("Idempotency key reused for a different transfer, key = {}", idempotencyKey);
+                throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "Idempotency key already used for a different transaction");
+            }
+            logger.debug("Transfer already queued, transaction id = {}", transactionId);
+            return this.transactionService.transactionInfo(queuedTransfer);
+        }
+
+        logger.debug("Transfer queued, transaction id = {}", transactionId);
+        return TransactionInfo.builder()
+                .transactionId(transactionId)
+                .sourceAccountId(submitTransaction.getSourceAccountId())
+                .destinationAccountId(submitTransaction.getDestinationAccountId())
+                .amount(submitTransaction.getAmount())
+                .status(Ledger.Status.IN_PROGRESS)
+                .build();
+    }
+
+    void drain(int partition) {
+
+        // An exception must not escape, the executor would not schedule the worker again
+        try {
+            // Released transfers are taken again by the next poll, not right away, so a failing chunk is not
+            // retried in a tight loop
+            List<QueuedTransfer> pending;
+            int released = 0;
+            do {
+                pending = this.queuedTransferRepository.claimPending(Ledger.Status.IN_PROGRESS.ordinal(), this.partitions, partition, this.batchSize, this.claimSeconds)
+                        .stream()
+                        .sorted(QUEUE_ORDER)
+                        .toList();
+                if (!pending.isEmpty()) {
+                    released = settle(pending);
+                }
+            } while (pending.size() == this.batchSize && released == 0);
+        } catch (Exception e) {
+            logger.error("Transfer queue partition failed, partition = {}, error = {}", partition, e.getMessage(), e);
+        }
+    }
+
+    int settle(List<QueuedTransfer> pending) {
+
+        List<SubmitTransaction> submitTransactions = pending.stream()
+                .map(this::submitTransaction)
+                .toList();
+        List<UUID> transactionIds = pending.stream()
+                .map(QueuedTransfer::getTransactionId)
+                .toList();
+        List<String> idempotencyKeys = pending.stream()
+                .map(QueuedTransfer::getIdempotencyKey)
+                .toList();
+
+        // Indexes of the transfers of chunks rolled back because some of their transfers were settled already
+        Set<Integer> released = new HashSet<>();
+        TransactionBatchResult transactionBatchResult = this.transactionService.submitTransactions(submitTransactions, transactionIds,
+                idempotencyKeys, chunkResults -> record(pending, chunkResults, released));
+
+        // Transfers rejected before settlement or within a chunk were not recorded by a chunk, the ones which were
+        // are left untouched by the update. Transfers of a chunk which failed are not failed, nothing was applied
+        // for them and they are settled again by a later pass, like the released ones
+        List<TransactionBatchResult.Item> failed = new ArrayList<>();
+        transactionBatchResult.getResults()
+                .stream()
+                .filter(item -> item.getStatus() == Ledger.Status.FAILED && !released.contains(item.getIndex()))
+                .forEach(item -> {
+                    if (TransactionService.REJECTIONS.contains(item.getError()) || TransactionService.ALREADY_SETTLED.equals(item.getError())) {
+                        failed.add(item);
+                    } else {
+                        released.add(item.getIndex());
+                    }
+                });
+        this.queuedTransferRepository.settleAll(settled(pending, failed));
+        if (!released.isEmpty()) {
+            this.queuedTransferRepository.release(released.stream().map(transactionIds::get).toList(), Ledger.Status.IN_PROGRESS.ordinal());
+        }
+        logger.debug("Queued transfers settled, size = {}, completed = {}, released = {}", pending.size(), transactionBatchResult.getCompleted(), released.size());
+        return released.size();
+    }
+
+    private void record(List<QueuedTransfer> pending, List<TransactionBatchResult.Item> chunkResults, Set<Integer> released) {
+
+        // A transfer no longer in progress was settled by another worker after its claim expired, applying the
+        // chunk would settle it a second time
+        int[] counts = this.queuedTransferRepository.settleAll(settled(pending, chunkResults));
+        for (int index = 0; index < counts.length; index++) {
+            if (counts[index] == 0) {
+                chunkResults.forEach(item -> released.add(item.getIndex()));
+                throw new IllegalStateException("Queued transfer already settled, transaction id = " + pending.get(chunkResults.get(index).getIndex()).getTransactionId());
+            }
+        }
+    }
+
+    private List<QueuedTransfer> settled(List<QueuedTransfer> pending, List<TransactionBatchResult.Item> items) {
+
+        return items.stream()
+                .map(item -> {
+                    QueuedTransfer queuedTransfer = pending.get(item.getIndex());
+                    if (TransactionService.ALREADY_SETTLED.equals(item.getError())) {
+                        item = settledWithKey(queuedTransfer, item);
+                    }
+                    queuedTransfer.setStatus(item.getStatus());
+                    queuedTransfer.setUpdatedBalance(item.getUpdatedBalance() != null ? Money.toMinorUnits(item.getUpdatedBalance()) : null);
+                    queuedTransfer.setError(item.getError());
+                    return queuedTransfer;
+                })
+                .toList();
+    }
+
+    private TransactionBatchResult.Item settledWithKey(QueuedTransfer queuedTransfer, TransactionBatchResult.Item item) {
+
+        // A synchronous request with the same key applied the transfer, the queued one completes with its balance
+        try {
+            TransactionSuccess stored = this.idempotencyIndex.find(queuedTransfer.getIdempotencyKey(), submitTransaction(queuedTransfer));
+            if (stored == null) {
+                return item;
+            }
+            return TransactionBatchResult.Item.builder()
+                    .index(item.getIndex())
+                    .status(Ledger.Status.COMPLETED)
+                    .updatedBalance(stored.getUpdatedBalance())
+                    .build();
+        } catch (ResponseStatusException e) {
+            return TransactionBatchResult.Item.builder()
+                    .index(item.getIndex())
+                    .status(Ledger.Status.FAILED)
+                    .error(e.getReason())
+                    .build();
+        }
+    }
+
+    private SubmitTransaction submitTransaction(QueuedTransfer queuedTransfer) {
+
+        SubmitTransaction submitTransaction = new SubmitTransaction();
+        submitTransaction.setSourceAccountId(queuedTransfer.getSourceAccountId());
+        submitTransaction.setDestinationAccountId(queuedTransfer.getDestinationAccountId());
+        submitTransaction.setAmount(Money.fromMinorUnits(queuedTransfer.getAmount()));
+        return submitTransaction;
+    }
+
+    private boolean exists(Long accountId) {
+
+        return this.accountCache != null
+                ? this.accountCache.find(accountId) != null
+                : this.accountRepository.findAccountByAccountId(accountId) != null;
+    }
+}
@@ -0,0 +1,34 @@
+package com.transfer.application.services.transactions;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raised when a transfer is not admitted by the rate limiter, answered with 429 and the seconds after which the
+ * client may retry in Retry-After.
+ */
+public class TransferRateLimitedException extends ResponseStatusException {
+
+    private final long retryAfterSeconds;
+
+    public TransferRateLimitedException(long retryAfterNanos) {
+
+        super(HttpStatus.TOO_MANY_REQUESTS, "Too many transactions, retry later");
+        this.retryAfterSeconds = Math.max(1, (retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    public long getRetryAfterSeconds() {
+        return this.retryAfterSeconds;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, Long.toString(this.retryAfterSeconds));
+        return headers;
+    }
+}
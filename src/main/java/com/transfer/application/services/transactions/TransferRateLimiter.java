@@ -0,0 +1,116 @@
+package com.transfer.application.services.transactions;
+
+import jakarta.annotation.PostConstruct;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Token buckets admitting transfers per source account and across all accounts. Each bucket is a single long, the
+ * time at which it will be full again, updated with a compare-and-set (generic cell rate algorithm), so admission
+ * takes no lock. Accounts are hashed onto a fixed number of stripes, which bounds the memory regardless of the
+ * number of accounts, accounts sharing a stripe share its rate.
+ */
+@Component
+@ConditionalOnProperty(name = "transfer.rate-limit.enabled", havingValue = "true")
+public class TransferRateLimiter {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    @Value("${transfer.rate-limit.account.rate:50}")
+    private double accountRate;
+
+    @Value("${transfer.rate-limit.account.burst:100}")
+    private int accountBurst;
+
+    @Value("${transfer.rate-limit.global.rate:20000}")
+    private double globalRate;
+
+    @Value("${transfer.rate-limit.global.burst:20000}")
+    private int globalBurst;
+
+    @Value("${transfer.rate-limit.stripes:65536}")
+    private int stripes;
+
+    private final long origin = System.nanoTime();
+
+    private AtomicLongArray accountBuckets;
+    private AtomicLongArray globalBucket;
+    private int stripeShift;
+    private long accountInterval;
+    private long accountCapacity;
+    private long globalInterval;
+    private long globalCapacity;
+
+    @PostConstruct
+    public void init() {
+
+        // Rounded up to a power of two so that the stripe is taken from the top bits of the hash
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(this.stripes, 2) - 1);
+        this.accountBuckets = new AtomicLongArray(1 << bits);
+        this.globalBucket = new AtomicLongArray(1);
+        this.stripeShift = 64 - bits;
+
+        this.accountInterval = Math.max(1, Math.round(1_000_000_000 / this.accountRate));
+        this.accountCapacity = this.accountInterval * this.accountBurst;
+        this.globalInterval = Math.max(1, Math.round(1_000_000_000 / this.globalRate));
+        this.globalCapacity = this.globalInterval * this.globalBurst;
+    }
+
+    /**
+     * Takes a token for a transfer from the account, raises an error carrying the time after which a token will be
+     * available if the account or all accounts together are over their rate.
+     */
+    public void acquire(long sourceAccountId) {
+
+        long retryAfterNanos = tryAcquire(sourceAccountId, System.nanoTime() - this.origin);
+        if (retryAfterNanos > 0) {
+            throw new TransferRateLimitedException(retryAfterNanos);
+        }
+    }
+
+    // Returns zero if admitted, the nanoseconds until a token is available otherwise
+    long tryAcquire(long sourceAccountId, long now) {
+
+        int stripe = stripe(sourceAccountId);
+        long accountWait = take(this.accountBuckets, stripe, now, this.accountInterval, this.accountCapacity);
+        if (accountWait > 0) {
+            // Rejections are counted by the transfer.failures metric, logging each one at a higher level would flood
+            // the logs exactly while the limiter sheds load
+            logger.debug("Transfer rate limited, account id = {}, retry after ms = {}", sourceAccountId, accountWait / 1_000_000);
+            return accountWait;
+        }
+
+        long globalWait = take(this.globalBucket, 0, now, this.globalInterval, this.globalCapacity);
+        if (globalWait > 0) {
+            // The account token is returned, the transfer was not admitted
+            this.accountBuckets.addAndGet(stripe, -this.accountInterval);
+            logger.debug("Transfer rate limited globally, account id = {}, retry after ms = {}", sourceAccountId, globalWait / 1_000_000);
+            return globalWait;
+        }
+        return 0;
+    }
+
+    private int stripe(long accountId) {
+        return (int) ((accountId * 0x9E3779B97F4A7C15L) >>> this.stripeShift);
+    }
+
+    private static long take(AtomicLongArray buckets, int index, long now, long interval, long capacity) {
+
+        while (true) {
+            long full = buckets.get(index);
+            long next = Math.max(full, now) + interval;
+            long wait = next - now - capacity;
+            if (wait > 0) {
+                return wait;
+            }
+            if (buckets.compareAndSet(index, full, next)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.transfer.application.services.transactions;
+
+import com.transfer.application.repositories.idempotency.IdempotencyKeyRepository;
+import com.transfer.application.repositories.ledgers.Ledger;
+import com.transfer.application.repositories.queue.QueuedTransferRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Deletes idempotency keys and settled queued transfers older than transfer.retention.hours. A request retried
+ * within the retention gets the response of the first one, a later retry is settled as a new transfer. Both tables
+ * share the retention, so a queued transfer deleted before its key is still not applied twice. Rows are deleted in
+ * batches, each in its own transaction, so that no statement holds its locks for long.
+ */
+@Service
+@ConditionalOnProperty(name = "transfer.retention.enabled", havingValue = "true")
+public class TransferRetention {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private QueuedTransferRepository queuedTransferRepository;
+
+    @Value("${transfer.retention.hours:24}")
+    private long retentionHours;
+
+    @Value("${transfer.retention.batch-size:10000}")
+    private int batchSize;
+
+    @Value("${transfer.retention.interval-minutes:10}")
+    private long intervalMinutes;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "transfer-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::purge, this.intervalMinutes, this.intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        this.scheduler.shutdownNow();
+    }
+
+    void purge() {
+
+        // An exception must not escape, the executor would not schedule the purge again
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minusHours(this.retentionHours);
+            int keys = delete(limit -> this.idempotencyKeyRepository.deleteCreatedBefore(cutoff, limit));
+            int transfers = delete(limit -> this.queuedTransferRepository.deleteSettledBefore(cutoff, Ledger.Status.IN_PROGRESS.ordinal(), limit));
+            logger.info("Transfer retention applied, cutoff = {}, idempotency keys = {}, queued transfers = {}", cutoff, keys, transfers);
+        } catch (Exception e) {
+            logger.error("Transfer retention failed, error = {}", e.getMessage(), e);
+        }
+    }
+
+    private int delete(IntUnaryOperator deleteBatch) {
+
+        int total = 0;
+        int deleted;
+        do {
+            deleted = deleteBatch.applyAsInt(this.batchSize);
+            total += deleted;
+        } while (deleted == this.batchSize);
+        return total;
+    }
+}
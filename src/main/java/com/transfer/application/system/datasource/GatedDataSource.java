@@ -0,0 +1,71 @@
+package com.transfer.application.system.datasource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Data source taking a permit from the {@link JdbcGate} before a connection is borrowed, the permit is returned
+ * when the connection is closed.
+ */
+public class GatedDataSource extends DelegatingDataSource {
+
+    private final JdbcGate jdbcGate;
+
+    public GatedDataSource(DataSource targetDataSource, JdbcGate jdbcGate) {
+        super(targetDataSource);
+        this.jdbcGate = jdbcGate;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+
+        this.jdbcGate.acquire();
+        try {
+            return gated(obtainTargetDataSource().getConnection());
+        } catch (SQLException | RuntimeException e) {
+            this.jdbcGate.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+
+        this.jdbcGate.acquire();
+        try {
+            return gated(obtainTargetDataSource().getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            this.jdbcGate.release();
+            throw e;
+        }
+    }
+
+    private Connection gated(Connection connection) {
+
+        // Closing a connection twice must not return the permit twice
+        AtomicBoolean closed = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+            if (method.getName().equals("close") && method.getParameterCount() == 0) {
+                try {
+                    connection.close();
+                } finally {
+                    if (closed.compareAndSet(false, true)) {
+                        this.jdbcGate.release();
+                    }
+                }
+                return null;
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        });
+    }
+}
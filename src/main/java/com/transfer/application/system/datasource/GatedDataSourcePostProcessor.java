@@ -0,0 +1,32 @@
+package com.transfer.application.system.datasource;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the data source in a {@link GatedDataSource}, so that every connection borrowed by JPA, JDBC templates and
+ * transaction managers goes through the gate. A {@link ReplicaRoutingDataSource} gates each of its pools itself.
+ */
+@Component
+@ConditionalOnProperty(name = "transfer.jdbc-gate.enabled", havingValue = "true")
+public class GatedDataSourcePostProcessor implements BeanPostProcessor {
+
+    // Resolved lazily, post processors are created before regular beans
+    @Autowired
+    private ObjectProvider<JdbcGate> jdbcGate;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+
+        if (bean instanceof DataSource dataSource && !(bean instanceof GatedDataSource) && !(bean instanceof ReplicaRoutingDataSource)) {
+            return new GatedDataSource(dataSource, this.jdbcGate.getObject());
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,116 @@
+package com.transfer.application.system.datasource;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds the number of threads holding a database connection. With requests served on virtual threads the number of
+ * concurrent requests is no longer capped by the web server, so threads above the limit wait here in a fair queue,
+ * parked without holding a carrier thread, instead of piling up inside the connection pool. The gate bean covers the
+ * primary pool, a replica pool gets a gate of its own.
+ */
+@Component
+@ConditionalOnProperty(name = "transfer.jdbc-gate.enabled", havingValue = "true")
+public class JdbcGate implements MeterBinder {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    @Value("${transfer.jdbc-gate.permits:${spring.datasource.hikari.maximum-pool-size:10}}")
+    private int permits;
+
+    @Value("${transfer.jdbc-gate.acquire-timeout:5s}")
+    private Duration acquireTimeout;
+
+    private String pool = "primary";
+
+    private Semaphore semaphore;
+
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    public JdbcGate() {
+    }
+
+    JdbcGate(String pool, int permits, Duration acquireTimeout) {
+
+        this.pool = pool;
+        this.permits = permits;
+        this.acquireTimeout = acquireTimeout;
+        init();
+    }
+
+    @PostConstruct
+    public void init() {
+        this.semaphore = new Semaphore(this.permits, true);
+    }
+
+    void acquire() throws SQLException {
+
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = this.semaphore.tryAcquire(this.acquireTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database connection", e);
+        }
+        this.waitNanos.addAndGet(System.nanoTime() - start);
+        this.acquisitions.incrementAndGet();
+
+        if (!acquired) {
+            this.timeouts.incrementAndGet();
+            logger.error("Timed out waiting for a database connection, pool = {}, queued = {}", this.pool, this.semaphore.getQueueLength());
+            throw new SQLTransientConnectionException("Timed out waiting for a database connection");
+        }
+    }
+
+    void release() {
+        this.semaphore.release();
+    }
+
+    public int getQueued() {
+        return this.semaphore.getQueueLength();
+    }
+
+    public int getActive() {
+        return this.permits - this.semaphore.availablePermits();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+
+        Gauge.builder("transfer.jdbc.gate.queued", this, JdbcGate::getQueued)
+                .description("Threads waiting for a database connection")
+                .tag("pool", this.pool)
+                .register(registry);
+        Gauge.builder("transfer.jdbc.gate.active", this, JdbcGate::getActive)
+                .description("Threads holding a database connection")
+                .tag("pool", this.pool)
+                .register(registry);
+        FunctionTimer.builder("transfer.jdbc.gate.wait", this, gate -> gate.acquisitions.get(), gate -> gate.waitNanos.get(), TimeUnit.NANOSECONDS)
+                .description("Time spent waiting for a database connection")
+                .tag("pool", this.pool)
+                .register(registry);
+        FunctionCounter.builder("transfer.jdbc.gate.timeouts", this, gate -> gate.timeouts.get())
+                .description("Waits for a database connection which timed out")
+                .tag("pool", this.pool)
+                .register(registry);
+    }
+}
@@ -0,0 +1,38 @@
+package com.transfer.application.system.datasource;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Map;
+
+/**
+ * Sizes the connection pool from the cores of the database server when transfer.pool.auto-size is set and no size
+ * is configured. A database runs at most about two active queries per core plus one per disk it waits on, further
+ * connections only queue inside it, so the pool is ((cores * 2) + effective spindles), shared by the instances of
+ * the application. The JDBC gate defaults to the same number of permits.
+ */
+public class PoolSizeEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    static final String POOL_SIZE = "spring.datasource.hikari.maximum-pool-size";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+
+        if (!environment.getProperty("transfer.pool.auto-size", Boolean.class, false) || environment.containsProperty(POOL_SIZE)) {
+            return;
+        }
+
+        // The database runs next to the application unless told otherwise
+        int databaseCores = environment.getProperty("transfer.pool.database-cores", Integer.class, Runtime.getRuntime().availableProcessors());
+        int effectiveSpindles = environment.getProperty("transfer.pool.effective-spindles", Integer.class, 1);
+        int instances = environment.getProperty("transfer.pool.instances", Integer.class, 1);
+        environment.getPropertySources().addLast(new MapPropertySource("transferPoolSize",
+                Map.of(POOL_SIZE, poolSize(databaseCores, effectiveSpindles, instances))));
+    }
+
+    static int poolSize(int databaseCores, int effectiveSpindles, int instances) {
+        return Math.max(2, (databaseCores * 2 + effectiveSpindles) / Math.max(1, instances));
+    }
+}
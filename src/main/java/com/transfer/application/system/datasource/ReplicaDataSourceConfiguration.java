@@ -0,0 +1,71 @@
+package com.transfer.application.system.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Replaces the auto-configured data source with one routing read-only work to a replica. The primary pool is
+ * configured by spring.datasource.* as before, the replica pool by transfer.replica.*. Both pools are owned by the
+ * routing data source and are not beans. With the JDBC gate enabled the primary pool is gated by the gate bean and
+ * the replica pool by a gate sized by transfer.replica.jdbc-gate.permits. As pools which are not beans are not
+ * instrumented by Spring Boot, both publish their hikaricp.* metrics themselves.
+ */
+@Configuration
+@ConditionalOnProperty(name = "transfer.replica.enabled", havingValue = "true")
+public class ReplicaDataSourceConfiguration {
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties, ReplicaLagMonitor lagMonitor, Environment environment, MeterRegistry meterRegistry,
+                                 ObjectProvider<JdbcGate> jdbcGate,
+                                 @Value("${transfer.replica.jdbc-gate.permits:${transfer.replica.hikari.maximum-pool-size:10}}") int replicaPermits,
+                                 @Value("${transfer.jdbc-gate.acquire-timeout:5s}") Duration acquireTimeout,
+                                 @Value("${transfer.replica.url}") String replicaUrl,
+                                 @Value("${transfer.replica.username:${spring.datasource.username}}") String replicaUsername,
+                                 @Value("${transfer.replica.password:${spring.datasource.password}}") String replicaPassword) {
+
+        Binder binder = Binder.get(environment);
+
+        HikariDataSource primary = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        if (primary.getPoolName() == null) {
+            primary.setPoolName("primary");
+        }
+        primary.setMetricRegistry(meterRegistry);
+
+        HikariDataSource replica = new HikariDataSource();
+        replica.setJdbcUrl(replicaUrl);
+        replica.setUsername(replicaUsername);
+        replica.setPassword(replicaPassword);
+        replica.setDriverClassName(properties.determineDriverClassName());
+        replica.setPoolName("replica");
+        binder.bind("transfer.replica.hikari", Bindable.ofInstance(replica));
+        replica.setReadOnly(true);
+        replica.setMetricRegistry(meterRegistry);
+
+        JdbcGate primaryGate = jdbcGate.getIfAvailable();
+        JdbcGate replicaGate = null;
+        if (primaryGate != null) {
+            replicaGate = new JdbcGate("replica", replicaPermits, acquireTimeout);
+            replicaGate.bindTo(meterRegistry);
+        }
+
+        lagMonitor.start(replica);
+        return new ReplicaRoutingDataSource(primary, replica, lagMonitor, primaryGate, replicaGate);
+    }
+}
@@ -0,0 +1,113 @@
+package com.transfer.application.system.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls the replay lag of the replica. The replica is considered usable while the last check succeeded recently and
+ * the lag is within the tolerance, reads fall back to the primary otherwise.
+ */
+@Component
+@ConditionalOnProperty(name = "transfer.replica.enabled", havingValue = "true")
+public class ReplicaLagMonitor implements MeterBinder {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    // An idle primary sends no transactions to replay, a replica which replayed everything it received is not behind
+    private static final String LAG_SQL = """
+            SELECT CASE WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                        ELSE CAST(COALESCE(EXTRACT(EPOCH FROM clock_timestamp() - pg_last_xact_replay_timestamp()) * 1000, 0) AS BIGINT) END
+            """;
+
+    @Value("${transfer.replica.max-lag:1s}")
+    private Duration maxLag;
+
+    @Value("${transfer.replica.lag-check-interval:500ms}")
+    private Duration checkInterval;
+
+    private JdbcTemplate replica;
+    private ScheduledExecutorService scheduler;
+
+    private volatile long lagMillis = -1;
+    private volatile long checkedAtNanos;
+    private volatile boolean available;
+
+    void start(DataSource replicaDataSource) {
+
+        this.replica = new JdbcTemplate(replicaDataSource);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::check, 0, this.checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Whether reads may go to the replica, a result older than a few check intervals is not trusted.
+     */
+    public boolean isAvailable() {
+
+        return this.available
+                && System.nanoTime() - this.checkedAtNanos < 3 * this.checkInterval.toNanos()
+                && this.lagMillis <= this.maxLag.toMillis();
+    }
+
+    // Called when borrowing a replica connection failed, reads go to the primary until the next successful check
+    void markUnavailable() {
+        this.available = false;
+    }
+
+    void check() {
+
+        try {
+            Long lag = this.replica.queryForObject(LAG_SQL, Long.class);
+            boolean wasUsable = isAvailable();
+            this.lagMillis = lag != null ? lag : 0;
+            this.checkedAtNanos = System.nanoTime();
+            this.available = true;
+            if (wasUsable && !isAvailable()) {
+                logger.warn("Replica lag above tolerance, reads go to the primary, lag ms = {}", this.lagMillis);
+            }
+        } catch (Exception e) {
+            if (this.available) {
+                logger.error("Replica lag check failed, reads go to the primary, error = {}", e.getMessage());
+            }
+            this.available = false;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+
+        Gauge.builder("transfer.replica.lag", this, monitor -> monitor.lagMillis)
+                .description("Replay lag of the replica as of the last check, -1 before the first check")
+                .baseUnit("milliseconds")
+                .register(registry);
+        Gauge.builder("transfer.replica.available", this, monitor -> monitor.isAvailable() ? 1 : 0)
+                .description("Whether read-only work is served by the replica")
+                .register(registry);
+    }
+}
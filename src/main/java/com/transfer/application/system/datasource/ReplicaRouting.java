@@ -0,0 +1,38 @@
+package com.transfer.application.system.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Marks the connections borrowed by the current thread as read-only work which may be served by the replica. Only
+ * reads which tolerate the replica lag are marked, everything else keeps going to the primary. Without a replica
+ * configured the mark has no effect.
+ */
+public final class ReplicaRouting {
+
+    private static final ThreadLocal<Boolean> READ_ONLY = new ThreadLocal<>();
+
+    private ReplicaRouting() {
+    }
+
+    /**
+     * Runs the reads on the replica, a connection already bound to a transaction of the thread is used as it is.
+     */
+    public static <T> T onReplica(Supplier<T> reads) {
+
+        Boolean previous = READ_ONLY.get();
+        READ_ONLY.set(Boolean.TRUE);
+        try {
+            return reads.get();
+        } finally {
+            if (previous == null) {
+                READ_ONLY.remove();
+            } else {
+                READ_ONLY.set(previous);
+            }
+        }
+    }
+
+    static boolean isReadOnly() {
+        return READ_ONLY.get() != null;
+    }
+}
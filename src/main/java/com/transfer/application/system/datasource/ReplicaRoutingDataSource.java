@@ -0,0 +1,80 @@
+package com.transfer.application.system.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Data source borrowing connections from the replica for work marked by {@link ReplicaRouting} while the replica
+ * is available, and from the primary for everything else. A replica connection which cannot be borrowed is
+ * replaced by a primary one. With the JDBC gate enabled each pool is borrowed from through a gate of its own, so
+ * that reads on the replica do not take permits meant for the primary.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private final HikariDataSource primary;
+    private final HikariDataSource replica;
+    private final DataSource primaryConnections;
+    private final DataSource replicaConnections;
+    private final ReplicaLagMonitor lagMonitor;
+
+    public ReplicaRoutingDataSource(HikariDataSource primary, HikariDataSource replica, ReplicaLagMonitor lagMonitor) {
+        this(primary, replica, lagMonitor, null, null);
+    }
+
+    /**
+     * @param primaryGate gate of the primary pool, null when the JDBC gate is disabled
+     * @param replicaGate gate of the replica pool, null when the JDBC gate is disabled
+     */
+    public ReplicaRoutingDataSource(HikariDataSource primary, HikariDataSource replica, ReplicaLagMonitor lagMonitor,
+                                    JdbcGate primaryGate, JdbcGate replicaGate) {
+
+        this.primary = primary;
+        this.replica = replica;
+        this.primaryConnections = primaryGate != null ? new GatedDataSource(primary, primaryGate) : primary;
+        this.replicaConnections = replicaGate != null ? new GatedDataSource(replica, replicaGate) : replica;
+        this.lagMonitor = lagMonitor;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return borrow(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return borrow(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    @Override
+    public void close() {
+
+        this.replica.close();
+        this.primary.close();
+    }
+
+    private Connection borrow(ConnectionSource source) throws SQLException {
+
+        if (ReplicaRouting.isReadOnly() && this.lagMonitor.isAvailable()) {
+            try {
+                return source.getConnection(this.replicaConnections);
+            } catch (SQLException e) {
+                logger.error("Replica connection failed, reading from the primary, error = {}", e.getMessage());
+                this.lagMonitor.markUnavailable();
+            }
+        }
+        return source.getConnection(this.primaryConnections);
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSource {
+        Connection getConnection(DataSource dataSource) throws SQLException;
+    }
+}
@@ -25,7 +25,8 @@ public class GlobalExceptionHandler {
                 .timestamp(LocalDateTime.now())
                 .build();
 
-        return new ResponseEntity<>(errorResponse, ex.getStatusCode());
+        // Headers of the exception are kept, such as Retry-After of a rate limited transfer
+        return new ResponseEntity<>(errorResponse, ex.getHeaders(), ex.getStatusCode());
     }
 
     @ExceptionHandler(MethodArgumentNotValidException.class)
@@ -0,0 +1,106 @@
+-- Converts balances and amounts stored as double precision into minor units (cents). Tables which do not exist yet
+-- are created with BIGINT columns by Hibernate, columns which are already converted are left alone
+DO $$
+DECLARE
+    target RECORD;
+BEGIN
+    FOR target IN
+        SELECT table_name, column_name
+        FROM information_schema.columns
+        WHERE table_schema = current_schema()
+          AND data_type IN ('double precision', 'real', 'numeric')
+          AND (table_name::text, column_name::text) IN (
+              ('accounts', 'balance'),
+              ('account_buckets', 'balance'),
+              ('ledgers', 'credit'),
+              ('ledgers', 'debit'),
+              ('ledgers', 'start_balance'),
+              ('ledgers', 'end_balance'),
+              ('idempotency_keys', 'amount'),
+              ('idempotency_keys', 'updated_balance'))
+    LOOP
+        EXECUTE format('ALTER TABLE %I ALTER COLUMN %I TYPE BIGINT USING ROUND(%I::numeric * 100)',
+                       target.table_name, target.column_name, target.column_name);
+    END LOOP;
+END $$;
+
+-- Moves tables created with identity columns to the pooled sequences the entities allocate ids from. The sequences
+-- start past the highest existing id, Hibernate creates them itself for tables which do not exist yet
+DO $$
+DECLARE
+    target RECORD;
+BEGIN
+    FOR target IN
+        SELECT table_name, sequence_name
+        FROM (VALUES ('accounts', 'accounts_seq'),
+                     ('account_buckets', 'account_buckets_seq'),
+                     ('ledgers', 'ledgers_seq')) AS targets (table_name, sequence_name)
+    LOOP
+        IF to_regclass(target.table_name) IS NOT NULL AND to_regclass(target.sequence_name) IS NULL THEN
+            EXECUTE format('CREATE SEQUENCE %I INCREMENT BY 50', target.sequence_name);
+            EXECUTE format('SELECT setval(%L, (SELECT COALESCE(MAX(id), 0) + 50 FROM %I))',
+                           target.sequence_name, target.table_name);
+            EXECUTE format('ALTER TABLE %I ALTER COLUMN id DROP IDENTITY IF EXISTS', target.table_name);
+        END IF;
+    END LOOP;
+END $$;
+
+-- Range partitions the ledgers by month of created_at. An existing unpartitioned table becomes the partition holding
+-- every entry up to the end of the month of its latest one, the partitions of the following months are created here
+-- and kept ahead by LedgerPartitionMaintenance. Entries outside of every partition land in the default partition
+DO $$
+DECLARE
+    target RECORD;
+    legacy_end TIMESTAMP;
+    month_start TIMESTAMP;
+BEGIN
+    IF to_regclass('ledgers') IS NOT NULL AND (SELECT relkind FROM pg_class WHERE oid = to_regclass('ledgers')) = 'r' THEN
+        ALTER TABLE ledgers RENAME TO ledgers_legacy;
+        FOR target IN SELECT indexname FROM pg_indexes WHERE schemaname = current_schema() AND tablename = 'ledgers_legacy'
+        LOOP
+            EXECUTE format('ALTER INDEX %I RENAME TO %I', target.indexname, replace(target.indexname, 'ledgers', 'ledgers_legacy'));
+        END LOOP;
+        UPDATE ledgers_legacy SET created_at = COALESCE(updated_at, LOCALTIMESTAMP) WHERE created_at IS NULL;
+        ALTER TABLE ledgers_legacy ALTER COLUMN created_at SET NOT NULL;
+        SELECT date_trunc('month', COALESCE(MAX(created_at), LOCALTIMESTAMP)) + INTERVAL '1 month' INTO legacy_end FROM ledgers_legacy;
+
+        CREATE TABLE ledgers (LIKE ledgers_legacy INCLUDING DEFAULTS INCLUDING CONSTRAINTS) PARTITION BY RANGE (created_at);
+        ALTER TABLE ledgers ADD CONSTRAINT ledgers_pkey PRIMARY KEY (id, created_at);
+        EXECUTE format('ALTER TABLE ledgers ATTACH PARTITION ledgers_legacy FOR VALUES FROM (MINVALUE) TO (%L)', legacy_end);
+    ELSIF to_regclass('ledgers') IS NULL THEN
+        CREATE TABLE ledgers (
+            id BIGINT NOT NULL,
+            transaction_id UUID NOT NULL,
+            account_id BIGINT NOT NULL,
+            bucket INTEGER,
+            credit BIGINT,
+            debit BIGINT,
+            start_balance BIGINT NOT NULL,
+            end_balance BIGINT,
+            status SMALLINT NOT NULL CHECK (status BETWEEN 0 AND 2),
+            created_at TIMESTAMP(6) NOT NULL,
+            updated_at TIMESTAMP(6),
+            PRIMARY KEY (id, created_at)
+        ) PARTITION BY RANGE (created_at);
+    END IF;
+
+    -- Old partitions are moved under the archive table, which is not read by the application
+    IF to_regclass('ledgers_archive') IS NULL THEN
+        CREATE TABLE ledgers_archive (LIKE ledgers INCLUDING DEFAULTS INCLUDING CONSTRAINTS) PARTITION BY RANGE (created_at);
+    END IF;
+    IF to_regclass('ledgers_default') IS NULL THEN
+        CREATE TABLE ledgers_default PARTITION OF ledgers DEFAULT;
+    END IF;
+
+    FOR month_offset IN 0..2
+    LOOP
+        month_start := date_trunc('month', LOCALTIMESTAMP) + make_interval(months => month_offset);
+        BEGIN
+            EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF ledgers FOR VALUES FROM (%L) TO (%L)',
+                           'ledgers_p' || to_char(month_start, 'YYYY_MM'), month_start, month_start + INTERVAL '1 month');
+        EXCEPTION WHEN invalid_object_definition OR check_violation THEN
+            -- The month is covered by the legacy partition, or entries of the month already are in the default one
+            RAISE NOTICE 'Ledger partition not created, month = %', month_start;
+        END;
+    END LOOP;
+END $$;
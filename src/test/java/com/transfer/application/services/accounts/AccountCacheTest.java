@@ -0,0 +1,85 @@
+package com.transfer.application.services.accounts;
+
+import com.transfer.application.repositories.accounts.Account;
+import com.transfer.application.repositories.accounts.AccountRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AccountCacheTest {
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @InjectMocks
+    private AccountCache accountCache;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(accountCache, "maximumSize", 100L);
+        ReflectionTestUtils.setField(accountCache, "expireAfterWrite", Duration.ofMinutes(1));
+        accountCache.init();
+    }
+
+    @Test
+    @DisplayName("find: loads account once and serves later reads from cache")
+    void find_readThrough() {
+
+        when(accountRepository.findAccountByAccountId(1001L)).thenReturn(Account.builder().id(1L).accountId(1001L).name("Alice").balance(10000L).build());
+
+        Account first = accountCache.find(1001L);
+        Account second = accountCache.find(1001L);
+
+        assertEquals(1L, first.getId());
+        assertEquals(10000L, second.getBalance());
+        assertNotSame(first, second);
+        verify(accountRepository, times(1)).findAccountByAccountId(1001L);
+    }
+
+    @Test
+    @DisplayName("find: missing account is not cached")
+    void find_missingNotCached() {
+
+        when(accountRepository.findAccountByAccountId(1001L)).thenReturn(null);
+
+        assertNull(accountCache.find(1001L));
+        assertNull(accountCache.find(1001L));
+        verify(accountRepository, times(2)).findAccountByAccountId(1001L);
+    }
+
+    @Test
+    @DisplayName("evict: next read goes to the repository")
+    void evict_reloads() {
+
+        when(accountRepository.findAccountByAccountId(1001L)).thenReturn(Account.builder().id(1L).accountId(1001L).balance(10000L).build());
+        accountCache.find(1001L);
+
+        accountCache.evict(1001L);
+        accountCache.find(1001L);
+
+        verify(accountRepository, times(2)).findAccountByAccountId(1001L);
+    }
+
+    @Test
+    @DisplayName("findOnReplica: a miss is read from the repository without being cached, a cached account is served")
+    void findOnReplica_missNotCached() {
+
+        when(accountRepository.findAccountByAccountId(1001L)).thenReturn(Account.builder().id(1L).accountId(1001L).balance(10000L).build());
+
+        assertEquals(10000L, accountCache.findOnReplica(1001L).getBalance());
+        accountCache.find(1001L);
+        accountCache.findOnReplica(1001L);
+
+        verify(accountRepository, times(2)).findAccountByAccountId(1001L);
+    }
+}
@@ -1,9 +1,16 @@
 package com.transfer.application.services.accounts;
 
 import com.transfer.application.dtos.accounts.AccountInfo;
+import com.transfer.application.dtos.accounts.AccountStatement;
+import com.transfer.application.dtos.accounts.ConfigureBuckets;
 import com.transfer.application.dtos.accounts.CreateAccount;
 import com.transfer.application.repositories.accounts.Account;
 import com.transfer.application.repositories.accounts.AccountRepository;
+import com.transfer.application.repositories.buckets.AccountBucket;
+import com.transfer.application.repositories.buckets.AccountBucketRepository;
+import com.transfer.application.repositories.ledgers.Ledger;
+import com.transfer.application.repositories.ledgers.LedgerLine;
+import com.transfer.application.repositories.ledgers.LedgerRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -11,10 +18,17 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class AccountServiceTest {
@@ -22,6 +36,12 @@ class AccountServiceTest {
     @Mock
     private AccountRepository accountRepository;
 
+    @Mock
+    private AccountBucketRepository accountBucketRepository;
+
+    @Mock
+    private LedgerRepository ledgerRepository;
+
     @InjectMocks
     private AccountService accountService;
 
@@ -37,7 +57,7 @@ class AccountServiceTest {
         CreateAccount req = new CreateAccount();
         req.setAccountId(1001L);
         req.setName("Alice");
-        req.setInitialBalance(250.0);
+        req.setInitialBalance(new BigDecimal("250.00"));
 
         when(accountRepository.findAccountByAccountId(1001L)).thenReturn(null);
 
@@ -45,7 +65,7 @@ class AccountServiceTest {
                 .id(42L)
                 .accountId(1001L)
                 .name("Alice")
-                .balance(250.0)
+                .balance(25000L)
                 .build();
         when(accountRepository.save(any(Account.class))).thenReturn(saved);
 
@@ -59,7 +79,7 @@ class AccountServiceTest {
         Account toSave = accountCaptor.getValue();
         assertEquals(1001L, toSave.getAccountId());
         assertEquals("Alice", toSave.getName());
-        assertEquals(250.0, toSave.getBalance());
+        assertEquals(25000L, toSave.getBalance());
     }
 
     @Test
@@ -69,7 +89,7 @@ class AccountServiceTest {
         CreateAccount req = new CreateAccount();
         req.setAccountId(2002L);
         req.setName("Bob");
-        req.setInitialBalance(100.0);
+        req.setInitialBalance(new BigDecimal("100.00"));
 
         Account existing = Account.builder()
                 .id(1L)
@@ -90,7 +110,7 @@ class AccountServiceTest {
                 .id(7L)
                 .accountId(3003L)
                 .name("Charlie")
-                .balance(999.99)
+                .balance(99999L)
                 .build();
         when(accountRepository.findAccountByAccountId(3003L)).thenReturn(account);
 
@@ -99,7 +119,7 @@ class AccountServiceTest {
         assertNotNull(info);
         assertEquals(3003L, info.getAccountId());
         assertEquals("Charlie", info.getName());
-        assertEquals(999.99, info.getBalance());
+        assertEquals(new BigDecimal("999.99"), info.getBalance());
         verify(accountRepository).findAccountByAccountId(3003L);
     }
 
@@ -112,4 +132,150 @@ class AccountServiceTest {
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> accountService.getAccountDetails(4004L));
         assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
     }
+
+    @Test
+    @DisplayName("getAccountDetails: returns the summed balance of a bucketed account")
+    void getAccountDetails_bucketed_sumsBuckets() {
+
+        Account account = Account.builder()
+                .id(7L)
+                .accountId(3003L)
+                .name("Charlie")
+                .balance(10000L)
+                .bucketCount(4)
+                .build();
+        when(accountRepository.findAccountByAccountId(3003L)).thenReturn(account);
+        when(accountBucketRepository.sumBalanceByAccountId(3003L)).thenReturn(25000L);
+
+        AccountInfo info = accountService.getAccountDetails(3003L);
+
+        assertEquals(new BigDecimal("350.00"), info.getBalance());
+    }
+
+    @Test
+    @DisplayName("configureBuckets: creates empty buckets and marks the account as bucketed")
+    void configureBuckets_success() {
+
+        Account account = Account.builder()
+                .id(7L)
+                .accountId(3003L)
+                .balance(10000L)
+                .build();
+        when(accountRepository.findAccountByAccountId(3003L)).thenReturn(account);
+        when(accountRepository.configureBucketCount(7L, 4)).thenReturn(1);
+
+        ConfigureBuckets req = new ConfigureBuckets();
+        req.setBucketCount(4);
+
+        accountService.configureBuckets(3003L, req);
+
+        ArgumentCaptor<List<AccountBucket>> bucketCaptor = ArgumentCaptor.forClass(List.class);
+        verify(accountBucketRepository).saveAll(bucketCaptor.capture());
+        assertEquals(4, bucketCaptor.getValue().size());
+        assertTrue(bucketCaptor.getValue().stream().allMatch(bucket -> bucket.getBalance() == 0L && bucket.getAccountId() == 3003L));
+
+        verify(accountRepository).configureBucketCount(7L, 4);
+        verify(accountRepository, never()).save(any(Account.class));
+    }
+
+    @Test
+    @DisplayName("configureBuckets: throws BAD_REQUEST when a concurrent request configured the buckets first")
+    void configureBuckets_concurrentlyConfigured_throwsBadRequest() {
+
+        Account account = Account.builder()
+                .id(7L)
+                .accountId(3003L)
+                .balance(10000L)
+                .build();
+        when(accountRepository.findAccountByAccountId(3003L)).thenReturn(account);
+        when(accountRepository.configureBucketCount(7L, 4)).thenReturn(0);
+
+        ConfigureBuckets req = new ConfigureBuckets();
+        req.setBucketCount(4);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> accountService.configureBuckets(3003L, req));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verifyNoInteractions(accountBucketRepository);
+    }
+
+    @Test
+    @DisplayName("configureBuckets: throws BAD_REQUEST when buckets are already configured")
+    void configureBuckets_alreadyConfigured_throwsBadRequest() {
+
+        Account account = Account.builder()
+                .id(7L)
+                .accountId(3003L)
+                .balance(10000L)
+                .bucketCount(4)
+                .build();
+        when(accountRepository.findAccountByAccountId(3003L)).thenReturn(account);
+
+        ConfigureBuckets req = new ConfigureBuckets();
+        req.setBucketCount(8);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> accountService.configureBuckets(3003L, req));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verifyNoInteractions(accountBucketRepository);
+    }
+
+    private LedgerLine ledgerLine(Long id, Long debit, Long startBalance) {
+        LedgerLine line = mock(LedgerLine.class);
+        when(line.getId()).thenReturn(id);
+        when(line.getDebit()).thenReturn(debit);
+        when(line.getCredit()).thenReturn(null);
+        when(line.getStartBalance()).thenReturn(startBalance);
+        when(line.getEndBalance()).thenReturn(startBalance - debit);
+        when(line.getStatus()).thenReturn(Ledger.Status.COMPLETED);
+        return line;
+    }
+
+    @Test
+    @DisplayName("getStatement: returns a page of entries and the cursor of the next page")
+    void getStatement_success() {
+
+        when(accountRepository.findAccountByAccountId(1001L)).thenReturn(Account.builder().id(42L).accountId(1001L).build());
+        List<LedgerLine> lines = List.of(ledgerLine(30L, 100L, 1000L), ledgerLine(20L, 100L, 1100L), ledgerLine(10L, 100L, 1200L));
+        when(ledgerRepository.findStatement(eq(1001L), eq(40L), any(LocalDateTime.class), any(LocalDateTime.class), any(Limit.class))).thenReturn(lines);
+
+        AccountStatement statement = accountService.getStatement(1001L, 40L, null, null, 2);
+
+        assertEquals(2, statement.getEntries().size());
+        assertEquals(30L, statement.getEntries().get(0).getId());
+        assertEquals(new BigDecimal("1.00"), statement.getEntries().get(0).getDebit());
+        assertEquals(new BigDecimal("9.00"), statement.getEntries().get(0).getEndBalance());
+        assertNull(statement.getEntries().get(0).getCredit());
+        assertEquals(20L, statement.getNextCursor());
+
+        // One entry more than the page is read
+        ArgumentCaptor<Limit> limitCaptor = ArgumentCaptor.forClass(Limit.class);
+        verify(ledgerRepository).findStatement(eq(1001L), eq(40L), any(LocalDateTime.class), any(LocalDateTime.class), limitCaptor.capture());
+        assertEquals(3, limitCaptor.getValue().max());
+    }
+
+    @Test
+    @DisplayName("getStatement: last page has no cursor")
+    void getStatement_lastPage() {
+
+        when(accountRepository.findAccountByAccountId(1001L)).thenReturn(Account.builder().id(42L).accountId(1001L).build());
+        List<LedgerLine> lines = List.of(ledgerLine(10L, 100L, 1200L));
+        when(ledgerRepository.findStatement(eq(1001L), eq(Long.MAX_VALUE), any(LocalDateTime.class), any(LocalDateTime.class), any(Limit.class))).thenReturn(lines);
+
+        AccountStatement statement = accountService.getStatement(1001L, null, null, null, 100);
+
+        assertEquals(1, statement.getEntries().size());
+        assertNull(statement.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("getStatement: throws BAD_REQUEST for a limit out of range and NOT_FOUND for a missing account")
+    void getStatement_invalid() {
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> accountService.getStatement(1001L, null, null, null, 0));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+
+        when(accountRepository.findAccountByAccountId(1001L)).thenReturn(null);
+        ex = assertThrows(ResponseStatusException.class, () -> accountService.getStatement(1001L, null, null, null, 100));
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
+        verifyNoInteractions(ledgerRepository);
+    }
 }
@@ -0,0 +1,196 @@
+package com.transfer.application.services.engine;
+
+import com.transfer.application.dtos.transactions.SubmitTransaction;
+import com.transfer.application.repositories.accounts.AccountBalance;
+import com.transfer.application.repositories.accounts.AccountRepository;
+import com.transfer.application.repositories.checkpoints.Checkpoint;
+import com.transfer.application.repositories.checkpoints.CheckpointRepository;
+import com.transfer.application.repositories.ledgers.Ledger;
+import com.transfer.application.repositories.ledgers.LedgerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class InMemoryBalanceEngineTest {
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private LedgerRepository ledgerRepository;
+
+    @Mock
+    private CheckpointRepository checkpointRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @TempDir
+    private Path journalDirectory;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        doAnswer(invocation -> {
+            Consumer<TransactionStatus> callback = invocation.getArgument(0);
+            callback.accept(mock(TransactionStatus.class));
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        AccountBalance first = balance(10L, 1001L, 100000L);
+        AccountBalance second = balance(20L, 2002L, 50000L);
+        when(accountRepository.findAllBalances()).thenReturn(List.of(first, second));
+        when(checkpointRepository.findById("balance-engine")).thenReturn(Optional.empty());
+    }
+
+    private AccountBalance balance(Long id, Long accountId, Long amount) {
+        AccountBalance balance = mock(AccountBalance.class);
+        when(balance.getId()).thenReturn(id);
+        when(balance.getAccountId()).thenReturn(accountId);
+        when(balance.getBalance()).thenReturn(amount);
+        return balance;
+    }
+
+    private InMemoryBalanceEngine engine() throws Exception {
+        InMemoryBalanceEngine engine = new InMemoryBalanceEngine();
+        ReflectionTestUtils.setField(engine, "accountRepository", accountRepository);
+        ReflectionTestUtils.setField(engine, "ledgerRepository", ledgerRepository);
+        ReflectionTestUtils.setField(engine, "checkpointRepository", checkpointRepository);
+        ReflectionTestUtils.setField(engine, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(engine, "journalPath", journalDirectory.resolve("journal.bin").toString());
+        ReflectionTestUtils.setField(engine, "flushIntervalMs", 3_600_000L);
+        ReflectionTestUtils.setField(engine, "flushBatchSize", 100);
+        ReflectionTestUtils.setField(engine, "maxPending", 1000);
+        ReflectionTestUtils.setField(engine, "appliedIdsSize", 1000L);
+        engine.start();
+        return engine;
+    }
+
+    private SubmitTransaction transfer(Long sourceAccountId, Long destinationAccountId, String amount) {
+        SubmitTransaction req = new SubmitTransaction();
+        req.setSourceAccountId(sourceAccountId);
+        req.setDestinationAccountId(destinationAccountId);
+        req.setAmount(new BigDecimal(amount));
+        return req;
+    }
+
+    @Test
+    @DisplayName("transfer: applies the transfer in memory without touching the database")
+    void transfer_success() throws Exception {
+        InMemoryBalanceEngine engine = engine();
+
+        assertEquals(new BigDecimal("900.00"), engine.transfer(transfer(1001L, 2002L, "100.00")).getUpdatedBalance());
+        assertEquals(90000L, engine.balanceOf(1001L));
+        assertEquals(60000L, engine.balanceOf(2002L));
+
+        verifyNoInteractions(ledgerRepository);
+        verify(accountRepository, never()).applyBalanceDeltas(any());
+    }
+
+    @Test
+    @DisplayName("transfer: rejects unknown accounts and insufficient funds")
+    void transfer_failures() throws Exception {
+        InMemoryBalanceEngine engine = engine();
+
+        ResponseStatusException notFound = assertThrows(ResponseStatusException.class, () -> engine.transfer(transfer(1001L, 3003L, "100.00")));
+        assertEquals(HttpStatus.NOT_FOUND, notFound.getStatusCode());
+
+        ResponseStatusException insufficient = assertThrows(ResponseStatusException.class, () -> engine.transfer(transfer(2002L, 1001L, "600.00")));
+        assertEquals(HttpStatus.BAD_REQUEST, insufficient.getStatusCode());
+        assertEquals(50000L, engine.balanceOf(2002L));
+    }
+
+    @Test
+    @DisplayName("stop: flushes ledger entries, aggregated balances and the checkpoint in one transaction")
+    void stop_flushesPending() throws Exception {
+        InMemoryBalanceEngine engine = engine();
+        engine.transfer(transfer(1001L, 2002L, "100.00"));
+        engine.transfer(transfer(2002L, 1001L, "30.00"));
+
+        engine.stop();
+
+        ArgumentCaptor<List<Ledger>> ledgerCaptor = ArgumentCaptor.forClass(List.class);
+        verify(ledgerRepository).insertAll(ledgerCaptor.capture());
+        assertEquals(4, ledgerCaptor.getValue().size());
+        verify(accountRepository).applyBalanceDeltas(Map.of(10L, -7000L, 20L, 7000L));
+
+        ArgumentCaptor<Checkpoint> checkpointCaptor = ArgumentCaptor.forClass(Checkpoint.class);
+        verify(checkpointRepository).save(checkpointCaptor.capture());
+        assertEquals(2L, checkpointCaptor.getValue().getPosition());
+    }
+
+    @Test
+    @DisplayName("start: replays journal entries which were not flushed before a crash")
+    void start_replaysJournal() throws Exception {
+        InMemoryBalanceEngine crashed = engine();
+        crashed.transfer(transfer(1001L, 2002L, "100.00"));
+        verifyNoInteractions(ledgerRepository);
+
+        engine();
+
+        verify(ledgerRepository).insertAll(argThat(ledgers -> ledgers.size() == 2));
+        verify(accountRepository).applyBalanceDeltas(Map.of(10L, -10000L, 20L, 10000L));
+    }
+
+    @Test
+    @DisplayName("transfer: a transaction id is applied once, in memory and after a restart")
+    void transfer_transactionId_appliedOnce() throws Exception {
+        InMemoryBalanceEngine engine = engine();
+        UUID transactionId = UUID.randomUUID();
+
+        assertEquals(new BigDecimal("900.00"), engine.transfer(transfer(1001L, 2002L, "100.00"), transactionId).getUpdatedBalance());
+        assertEquals(new BigDecimal("900.00"), engine.transfer(transfer(1001L, 2002L, "100.00"), transactionId).getUpdatedBalance());
+        assertEquals(90000L, engine.balanceOf(1001L));
+
+        when(ledgerRepository.findLedgersByTransactionId(transactionId)).thenReturn(List.of(
+                Ledger.builder().transactionId(transactionId).accountId(1001L).debit(10000L).endBalance(90000L).build()));
+        InMemoryBalanceEngine restarted = engine();
+
+        assertEquals(new BigDecimal("900.00"), restarted.transfer(transfer(1001L, 2002L, "100.00"), transactionId).getUpdatedBalance());
+        verify(ledgerRepository).insertAll(argThat(ledgers -> ledgers.size() == 2));
+    }
+
+    @Test
+    @DisplayName("transfer: a failed journal sync halts the engine and its entry is not flushed")
+    void transfer_syncFailure_halts() throws Exception {
+        InMemoryBalanceEngine engine = engine();
+        TransferJournal journal = mock(TransferJournal.class);
+        when(journal.append(any())).thenReturn((long) TransferJournal.ENTRY_SIZE);
+        doThrow(new IOException("disk failed")).when(journal).sync(anyLong());
+        ReflectionTestUtils.setField(engine, "journal", journal);
+
+        ResponseStatusException failed = assertThrows(ResponseStatusException.class, () -> engine.transfer(transfer(1001L, 2002L, "100.00")));
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, failed.getStatusCode());
+
+        ResponseStatusException halted = assertThrows(ResponseStatusException.class, () -> engine.transfer(transfer(2002L, 1001L, "10.00")));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, halted.getStatusCode());
+        verify(journal).append(any());
+
+        engine.stop();
+        verifyNoInteractions(ledgerRepository);
+    }
+}
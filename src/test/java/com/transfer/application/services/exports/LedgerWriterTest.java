@@ -0,0 +1,110 @@
+package com.transfer.application.services.exports;
+
+import com.transfer.application.repositories.ledgers.Ledger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LedgerWriterTest {
+
+    private static final UUID TRANSACTION_ID = UUID.fromString("0b6c7f0e-3b1d-4a8e-9c4f-3f3c2f1e2d10");
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2025, 1, 2, 3, 4, 5, 678_000_000);
+
+    private ResultSet row(long id, Long credit, Long debit) throws SQLException {
+        ResultSet row = mock(ResultSet.class);
+        when(row.getLong("id")).thenReturn(id);
+        when(row.getObject("transaction_id")).thenReturn(TRANSACTION_ID);
+        when(row.getObject("transaction_id", UUID.class)).thenReturn(TRANSACTION_ID);
+        when(row.getLong("account_id")).thenReturn(1001L);
+        when(row.getObject("bucket", Integer.class)).thenReturn(null);
+        when(row.getObject("credit", Long.class)).thenReturn(credit);
+        when(row.getObject("debit", Long.class)).thenReturn(debit);
+        when(row.getLong("start_balance")).thenReturn(100000L);
+        when(row.getObject("start_balance", Long.class)).thenReturn(100000L);
+        when(row.getObject("end_balance", Long.class)).thenReturn(87655L);
+        when(row.getInt("status")).thenReturn(Ledger.Status.COMPLETED.ordinal());
+        when(row.getTimestamp("created_at")).thenReturn(Timestamp.valueOf(CREATED_AT));
+        return row;
+    }
+
+    private static long readVarLong(DataInputStream input) throws IOException {
+        long zigzag = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = input.readUnsignedByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    @Test
+    @DisplayName("csv: writes a header and one line per row, amounts in major units and nulls left empty")
+    void csv_writesRows() throws Exception {
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        LedgerWriter writer = new CsvLedgerWriter(output);
+        writer.write(row(7L, null, 12345L));
+        writer.finish();
+
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(CsvLedgerWriter.HEADER, lines[0]);
+        assertEquals("7," + TRANSACTION_ID + ",1001,,,123.45,1000.00,876.55,COMPLETED,2025-01-02T03:04:05.678", lines[1]);
+    }
+
+    @Test
+    @DisplayName("columnar: writes the rows of a block column by column and ends with an empty block")
+    void columnar_writesBlocks() throws Exception {
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        LedgerWriter writer = new ColumnarLedgerWriter(output);
+        writer.write(row(7L, null, 12345L));
+        writer.write(row(9L, 12345L, null));
+        writer.finish();
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(output.toByteArray()));
+        assertArrayEquals(ColumnarLedgerWriter.MAGIC, input.readNBytes(4));
+        assertEquals(2, readVarLong(input));
+        assertEquals(7, readVarLong(input));
+        assertEquals(2, readVarLong(input));
+        for (int index = 0; index < 2; index++) {
+            assertEquals(TRANSACTION_ID, new UUID(input.readLong(), input.readLong()));
+        }
+        assertEquals(1001, readVarLong(input));
+        assertEquals(1001, readVarLong(input));
+        // Buckets are null, credits and debits hold value + 1
+        assertEquals(0, readVarLong(input));
+        assertEquals(0, readVarLong(input));
+        assertEquals(0, readVarLong(input));
+        assertEquals(12346, readVarLong(input));
+        assertEquals(12346, readVarLong(input));
+        assertEquals(0, readVarLong(input));
+        assertEquals(87656, readVarLong(input));
+        assertEquals(87656, readVarLong(input));
+        assertEquals(100000, readVarLong(input));
+        assertEquals(100000, readVarLong(input));
+        assertEquals(Ledger.Status.COMPLETED.ordinal(), input.readByte());
+        assertEquals(Ledger.Status.COMPLETED.ordinal(), input.readByte());
+        long micros = CREATED_AT.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + 678_000;
+        assertEquals(micros, readVarLong(input));
+        assertEquals(0, readVarLong(input));
+        assertEquals(0, readVarLong(input));
+        assertEquals(-1, input.read());
+    }
+}
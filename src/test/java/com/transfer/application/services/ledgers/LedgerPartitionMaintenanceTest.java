@@ -0,0 +1,76 @@
+package com.transfer.application.services.ledgers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class LedgerPartitionMaintenanceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private LedgerPartitionMaintenance ledgerPartitionMaintenance;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(ledgerPartitionMaintenance, "monthsAhead", 2);
+        doAnswer(invocation -> {
+            Consumer<TransactionStatus> action = invocation.getArgument(0);
+            action.accept(mock(TransactionStatus.class));
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    @DisplayName("createPartitions: creates the current month and the months ahead")
+    void createPartitions_monthsAhead() {
+
+        ledgerPartitionMaintenance.createPartitions(YearMonth.of(2025, 11));
+
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS ledgers_p2025_11 PARTITION OF ledgers FOR VALUES FROM ('2025-11-01 00:00:00') TO ('2025-12-01 00:00:00')");
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS ledgers_p2025_12 PARTITION OF ledgers FOR VALUES FROM ('2025-12-01 00:00:00') TO ('2026-01-01 00:00:00')");
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS ledgers_p2026_01 PARTITION OF ledgers FOR VALUES FROM ('2026-01-01 00:00:00') TO ('2026-02-01 00:00:00')");
+        verifyNoMoreInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("archivePartitions: moves partitions ending before the cutoff and keeps the rest")
+    void archivePartitions_beforeCutoff() {
+
+        String expired = "FOR VALUES FROM ('2024-01-01 00:00:00') TO ('2024-02-01 00:00:00')";
+        String retained = "FOR VALUES FROM ('2025-01-01 00:00:00') TO ('2025-02-01 00:00:00')";
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class))).thenReturn(List.of(
+                new String[]{"ledgers_p2024_01", expired},
+                new String[]{"ledgers_p2025_01", retained},
+                new String[]{"ledgers_default", "DEFAULT"}));
+
+        ledgerPartitionMaintenance.archivePartitions(LocalDateTime.of(2024, 6, 1, 0, 0));
+
+        verify(jdbcTemplate).execute("ALTER TABLE ledgers DETACH PARTITION ledgers_p2024_01");
+        verify(jdbcTemplate).execute("ALTER TABLE ledgers_archive ATTACH PARTITION ledgers_p2024_01 " + expired);
+        verify(jdbcTemplate, never()).execute("ALTER TABLE ledgers DETACH PARTITION ledgers_p2025_01");
+        verify(jdbcTemplate, never()).execute("ALTER TABLE ledgers DETACH PARTITION ledgers_default");
+        verify(transactionTemplate, times(1)).executeWithoutResult(any());
+    }
+}
@@ -0,0 +1,116 @@
+package com.transfer.application.services.outbox;
+
+import com.transfer.application.repositories.outbox.TransferEvent;
+import com.transfer.application.repositories.outbox.TransferEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class TransferOutboxRelayTest {
+
+    @Mock
+    private TransferEventRepository transferEventRepository;
+
+    @Mock
+    private TransferEventSink transferEventSink;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @InjectMocks
+    private TransferOutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(relay, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(relay, "batchSize", 2);
+        ReflectionTestUtils.setField(relay, "pollIntervalMs", 50L);
+        ReflectionTestUtils.setField(relay, "maxBackoffMs", 5000L);
+        ReflectionTestUtils.setField(relay, "published", meterRegistry.counter("transfer.outbox.published"));
+        ReflectionTestUtils.setField(relay, "failures", meterRegistry.counter("transfer.outbox.failures"));
+        when(transactionTemplate.execute(any())).thenAnswer(invocation -> {
+            TransactionCallback<?> callback = invocation.getArgument(0);
+            return callback.doInTransaction(mock(TransactionStatus.class));
+        });
+        when(transferEventRepository.tryLock(anyLong())).thenReturn(true);
+    }
+
+    private TransferEvent event(long id) {
+        return TransferEvent.builder()
+                .id(id)
+                .transactionId(UUID.randomUUID())
+                .sourceAccountId(1L)
+                .destinationAccountId(2L)
+                .amount(100L)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    @Test
+    @DisplayName("relay: full batches are drained back to back, each batch is deleted once the sink accepted it")
+    void relay_publishesAndDeletes() throws IOException {
+
+        List<TransferEvent> first = List.of(event(1), event(2));
+        List<TransferEvent> second = List.of(event(3));
+        when(transferEventRepository.findAllByOrderByIdAsc(any(Limit.class))).thenReturn(first, second);
+
+        relay.relay();
+
+        verify(transferEventSink).publish(first);
+        verify(transferEventSink).publish(second);
+        verify(transferEventRepository).deleteAllByIdInBatch(List.of(1L, 2L));
+        verify(transferEventRepository).deleteAllByIdInBatch(List.of(3L));
+        assertEquals(3.0, meterRegistry.get("transfer.outbox.published").counter().count());
+    }
+
+    @Test
+    @DisplayName("relay: a batch the sink rejects stays in the outbox and the relay backs off")
+    void relay_sinkRejects_keepsEvents() throws IOException {
+
+        when(transferEventRepository.findAllByOrderByIdAsc(any(Limit.class))).thenReturn(List.of(event(1)));
+        doThrow(new IllegalStateException("Subscriber queue full")).when(transferEventSink).publish(anyList());
+
+        relay.relay();
+        relay.relay();
+
+        verify(transferEventSink, times(1)).publish(anyList());
+        verify(transferEventRepository, never()).deleteAllByIdInBatch(any());
+        Counter failures = meterRegistry.get("transfer.outbox.failures").counter();
+        assertEquals(1.0, failures.count());
+    }
+
+    @Test
+    @DisplayName("drain: nothing is read while another relay holds the lock")
+    void drain_locked_skips() {
+
+        when(transferEventRepository.tryLock(anyLong())).thenReturn(false);
+
+        assertEquals(0, relay.drain());
+        verify(transferEventRepository, never()).findAllByOrderByIdAsc(any(Limit.class));
+    }
+}
@@ -0,0 +1,78 @@
+package com.transfer.application.services.partitions;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.transfer.application.services.partitions.RecordingSettler.transfer;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoalescingTransferExecutorTest {
+
+    private final CoalescingTransferExecutor executor = new CoalescingTransferExecutor();
+    private final RecordingSettler settler = new RecordingSettler();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(executor, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(executor, "laneCount", 2);
+        ReflectionTestUtils.setField(executor, "ringSize", 1024);
+        ReflectionTestUtils.setField(executor, "maxBatch", 64);
+        ReflectionTestUtils.setField(executor, "windowMicros", 2000L);
+        ReflectionTestUtils.setField(executor, "idleParkMicros", 100L);
+        executor.start(settler);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.stop();
+    }
+
+    @Test
+    @DisplayName("submit: concurrent transfers into one account meet on one lane and are settled in fewer batches, each caller gets its own result")
+    void submit_burst_coalesces() throws Exception {
+
+        int submitters = 32;
+        int perSubmitter = 50;
+        ExecutorService pool = Executors.newFixedThreadPool(submitters);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<BigDecimal>>> futures = new ArrayList<>();
+        for (long sourceAccountId = 1; sourceAccountId <= submitters; sourceAccountId++) {
+            long source = sourceAccountId;
+            futures.add(pool.submit(() -> {
+                start.await();
+                List<BigDecimal> balances = new ArrayList<>();
+                for (int transfer = 0; transfer < perSubmitter; transfer++) {
+                    balances.add(executor.submit(transfer(source, 9999L, 1), null).getUpdatedBalance());
+                }
+                return balances;
+            }));
+        }
+        start.countDown();
+
+        // Every caller saw a distinct balance, the one right after its own transfer
+        List<BigDecimal> seen = new ArrayList<>();
+        for (Future<List<BigDecimal>> future : futures) {
+            seen.addAll(future.get(30, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+
+        int transfers = submitters * perSubmitter;
+        assertEquals(transfers, settler.destinationBalances.get(9999L).get());
+        assertEquals(transfers, seen.stream().distinct().count());
+        assertEquals(1, settler.threads.get(9999L).size());
+        assertTrue(settler.batches.get() < transfers / 2, "batches = " + settler.batches.get());
+    }
+}
@@ -0,0 +1,66 @@
+package com.transfer.application.services.partitions;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.transfer.application.services.partitions.RecordingSettler.transfer;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionedTransferExecutorTest {
+
+    private final PartitionedTransferExecutor executor = new PartitionedTransferExecutor();
+    private final RecordingSettler settler = new RecordingSettler();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(executor, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(executor, "partitionCount", 4);
+        ReflectionTestUtils.setField(executor, "ringSize", 1024);
+        ReflectionTestUtils.setField(executor, "maxBatch", 64);
+        ReflectionTestUtils.setField(executor, "idleParkMicros", 100L);
+        executor.start(settler);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.stop();
+    }
+
+    @Test
+    @DisplayName("submit: transfers of a source account into many accounts are settled by one partition in submission order")
+    void submit_routesBySourceAccount() throws Exception {
+
+        int accounts = 8;
+        int perAccount = 100;
+        ExecutorService submitters = Executors.newFixedThreadPool(accounts);
+        List<Future<?>> futures = new ArrayList<>();
+        for (long accountId = 1; accountId <= accounts; accountId++) {
+            long sourceAccountId = accountId;
+            futures.add(submitters.submit(() -> {
+                for (int amount = 1; amount <= perAccount; amount++) {
+                    executor.submit(transfer(sourceAccountId, 1000L + amount, amount), null);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        submitters.shutdown();
+
+        for (long accountId = 1; accountId <= accounts; accountId++) {
+            assertEquals(1, settler.threads.get(accountId).size());
+            assertEquals(perAccount, settler.settled.get(accountId).size());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.transfer.application.services.partitions;
+
+import com.transfer.application.dtos.transactions.SubmitTransaction;
+import com.transfer.application.dtos.transactions.TransactionBatchResult;
+import com.transfer.application.repositories.ledgers.Ledger;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * Settler of the lane tests. Records the threads which settled each account, the amounts of each source account in
+ * the order they were settled and the idempotency keys, and answers every transfer with the balance of its
+ * destination account after it.
+ */
+class RecordingSettler implements BiFunction<List<SubmitTransaction>, List<String>, List<TransactionBatchResult.Item>> {
+
+    final AtomicInteger batches = new AtomicInteger();
+    final Map<Long, Set<String>> threads = new ConcurrentHashMap<>();
+    final Map<Long, List<Integer>> settled = new ConcurrentHashMap<>();
+    final Map<Long, AtomicLong> destinationBalances = new ConcurrentHashMap<>();
+    final List<String> idempotencyKeys = new CopyOnWriteArrayList<>();
+
+    static SubmitTransaction transfer(Long sourceAccountId, Long destinationAccountId, int amount) {
+        SubmitTransaction req = new SubmitTransaction();
+        req.setSourceAccountId(sourceAccountId);
+        req.setDestinationAccountId(destinationAccountId);
+        req.setAmount(new BigDecimal(amount));
+        return req;
+    }
+
+    @Override
+    public List<TransactionBatchResult.Item> apply(List<SubmitTransaction> submitTransactions, List<String> idempotencyKeys) {
+
+        this.batches.incrementAndGet();
+        this.idempotencyKeys.addAll(idempotencyKeys);
+        List<TransactionBatchResult.Item> results = new ArrayList<>();
+        for (int index = 0; index < submitTransactions.size(); index++) {
+            SubmitTransaction submitTransaction = submitTransactions.get(index);
+            for (Long accountId : List.of(submitTransaction.getSourceAccountId(), submitTransaction.getDestinationAccountId())) {
+                this.threads.computeIfAbsent(accountId, key -> ConcurrentHashMap.newKeySet()).add(Thread.currentThread().getName());
+            }
+            this.settled.computeIfAbsent(submitTransaction.getSourceAccountId(), key -> new CopyOnWriteArrayList<>())
+                    .add(submitTransaction.getAmount().intValue());
+            long balance = this.destinationBalances.computeIfAbsent(submitTransaction.getDestinationAccountId(), key -> new AtomicLong())
+                    .addAndGet(submitTransaction.getAmount().longValue());
+            results.add(TransactionBatchResult.Item.builder()
+                    .index(index)
+                    .sourceAccountId(submitTransaction.getSourceAccountId())
+                    .status(Ledger.Status.COMPLETED)
+                    .updatedBalance(new BigDecimal(balance))
+                    .build());
+        }
+        return results;
+    }
+}
@@ -0,0 +1,95 @@
+package com.transfer.application.services.partitions;
+
+import com.transfer.application.dtos.transactions.SubmitTransaction;
+import com.transfer.application.dtos.transactions.TransactionBatchResult;
+import com.transfer.application.repositories.ledgers.Ledger;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.transfer.application.services.partitions.RecordingSettler.transfer;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferLanesTest {
+
+    private final RecordingSettler settler = new RecordingSettler();
+    private TransferLanes lanes;
+
+    private TransferLanes start(long windowMicros) {
+        DistributionSummary batchSizes = DistributionSummary.builder("test.batch.size").register(new SimpleMeterRegistry());
+        lanes = new TransferLanes("test lane", 4, 1024, 64, windowMicros, 100, SubmitTransaction::getSourceAccountId, batchSizes);
+        lanes.start(settler);
+        return lanes;
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        lanes.stop();
+    }
+
+    @Test
+    @DisplayName("submit: each transfer gets its own result, an idle lane settles it on its own with its idempotency key")
+    void submit_returnsResult() {
+
+        TransactionBatchResult.Item item = start(2000).submit(transfer(1L, 2L, 25), "key-1");
+
+        assertEquals(Ledger.Status.COMPLETED, item.getStatus());
+        assertEquals(new BigDecimal(25), item.getUpdatedBalance());
+        assertEquals(1, settler.batches.get());
+        assertEquals(List.of("key-1"), settler.idempotencyKeys);
+    }
+
+    @Test
+    @DisplayName("submit: transfers of a routing account are settled by one lane in submission order")
+    void submit_ordersPerAccount() throws Exception {
+
+        start(0);
+        int accounts = 16;
+        int perAccount = 200;
+        ExecutorService submitters = Executors.newFixedThreadPool(accounts);
+        List<Future<?>> futures = new ArrayList<>();
+        for (long accountId = 1; accountId <= accounts; accountId++) {
+            long sourceAccountId = accountId;
+            futures.add(submitters.submit(() -> {
+                for (int amount = 1; amount <= perAccount; amount++) {
+                    lanes.submit(transfer(sourceAccountId, sourceAccountId + 1000, amount), null);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        submitters.shutdown();
+
+        for (long accountId = 1; accountId <= accounts; accountId++) {
+            assertEquals(1, settler.threads.get(accountId).size());
+            List<Integer> amounts = settler.settled.get(accountId);
+            assertEquals(perAccount, amounts.size());
+            for (int index = 0; index < perAccount; index++) {
+                assertEquals(index + 1, amounts.get(index));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("submit: throws SERVICE_UNAVAILABLE once stopped")
+    void submit_stopped() throws InterruptedException {
+
+        start(0).stop();
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> lanes.submit(transfer(1L, 2L, 25), null));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ex.getStatusCode());
+    }
+}
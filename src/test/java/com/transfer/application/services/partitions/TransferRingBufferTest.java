@@ -0,0 +1,86 @@
+package com.transfer.application.services.partitions;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferRingBufferTest {
+
+    @Test
+    @DisplayName("offer: elements are drained in order and the buffer rejects elements once full")
+    void offer_full() {
+
+        TransferRingBuffer<Integer> ring = new TransferRingBuffer<>(4);
+        for (int element = 0; element < 4; element++) {
+            assertTrue(ring.offer(element));
+        }
+        assertFalse(ring.offer(4));
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(3, ring.drainTo(drained, 3));
+        assertEquals(List.of(0, 1, 2), drained);
+
+        // Drained slots are reused by the next round
+        assertTrue(ring.offer(4));
+        assertEquals(2, ring.drainTo(drained, 10));
+        assertEquals(List.of(0, 1, 2, 3, 4), drained);
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    @DisplayName("constructor: rejects a capacity which is not a power of two")
+    void constructor_invalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new TransferRingBuffer<Integer>(6));
+    }
+
+    @Test
+    @DisplayName("offer: concurrent producers publish every element exactly once, in order per producer")
+    void offer_concurrentProducers() throws Exception {
+
+        int producers = 8;
+        int perProducer = 10000;
+        TransferRingBuffer<Long> ring = new TransferRingBuffer<>(1024);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int producer = 0; producer < producers; producer++) {
+            long base = (long) producer * perProducer;
+            executor.submit(() -> {
+                start.await();
+                for (long element = base; element < base + perProducer; element++) {
+                    while (!ring.offer(element)) {
+                        Thread.onSpinWait();
+                    }
+                }
+                return null;
+            });
+        }
+
+        start.countDown();
+        List<Long> drained = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (drained.size() < producers * perProducer && System.nanoTime() < deadline) {
+            ring.drainTo(drained, 256);
+        }
+        executor.shutdown();
+
+        assertEquals(producers * perProducer, drained.size());
+        assertEquals(producers * perProducer, new HashSet<>(drained).size());
+        long[] last = new long[producers];
+        Arrays.fill(last, -1);
+        for (Long element : drained) {
+            int producer = (int) (element / perProducer);
+            assertTrue(element > last[producer]);
+            last[producer] = element;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.transfer.application.services.reconciliation;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class BalanceReconcilerTest {
+
+    private static final LocalDateTime SINCE = LocalDateTime.of(2025, 1, 1, 10, 0);
+    private static final LocalDateTime WATERMARK = LocalDateTime.of(2025, 1, 1, 10, 1);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate snapshotTransaction;
+
+    @InjectMocks
+    private BalanceReconciler balanceReconciler;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(balanceReconciler, "snapshotTransaction", snapshotTransaction);
+        when(snapshotTransaction.execute(any())).thenAnswer(invocation -> {
+            TransactionCallback<?> callback = invocation.getArgument(0);
+            return callback.doInTransaction(mock(TransactionStatus.class));
+        });
+    }
+
+    // Ledger sums of the range, one row per account: account id, settled, pending
+    private void mockLedgers(long[]... rows) throws Exception {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (long[] row : rows) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getLong("account_id")).thenReturn(row[0]);
+                when(rs.getLong("settled")).thenReturn(row[1]);
+                when(rs.getLong("pending")).thenReturn(row[2]);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(contains("FROM ledgers l"), any(RowCallbackHandler.class), any(Object[].class));
+    }
+
+    // Accounts of the range: account id, balance, opening balance, ledger total, reconciled balance, drift
+    private void mockAccounts(Long[]... rows) throws Exception {
+        when(jdbcTemplate.query(contains("FROM accounts a"), any(RowMapper.class), any(Object[].class))).thenAnswer(invocation -> {
+            RowMapper<?> mapper = invocation.getArgument(1);
+            List<Object> accounts = new ArrayList<>();
+            for (Long[] row : rows) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getLong("account_id")).thenReturn(row[0]);
+                when(rs.getLong("balance")).thenReturn(row[1]);
+                when(rs.getObject("opening_balance", Long.class)).thenReturn(row[2]);
+                when(rs.getObject("ledger_total", Long.class)).thenReturn(row[3]);
+                when(rs.getObject("reconciled_balance", Long.class)).thenReturn(row[4]);
+                when(rs.getObject("drift", Long.class)).thenReturn(row[5]);
+                accounts.add(mapper.mapRow(rs, accounts.size()));
+            }
+            return accounts;
+        });
+    }
+
+    private List<Object[]> upserts() {
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(contains("INSERT INTO account_reconciliations"), captor.capture());
+        return captor.getValue();
+    }
+
+    @Test
+    @DisplayName("reconcileRange: settled entries advance the ledger total, pending entries only count towards the balance")
+    void reconcileRange_matchingBalance() throws Exception {
+
+        // Opening 1000.00, reconciled 200.00 of entries, 50.00 settled and 25.00 pending since
+        mockLedgers(new long[]{1001L, 5000L, 2500L});
+        mockAccounts(new Long[]{1001L, 127500L, 100000L, 20000L, 120000L, 0L});
+
+        BalanceReconciler.RangeResult result = balanceReconciler.reconcileRange(1L, 100L, SINCE, WATERMARK);
+
+        assertEquals(1, result.accounts());
+        assertEquals(0, result.drifted());
+        Object[] row = upserts().get(0);
+        assertEquals(1001L, row[0]);
+        assertEquals(100000L, row[1]);
+        assertEquals(25000L, row[2]);
+        assertEquals(127500L, row[4]);
+        assertEquals(0L, row[5]);
+    }
+
+    @Test
+    @DisplayName("reconcileRange: a balance which does not match the ledger entries is recorded as drift")
+    void reconcileRange_drift() throws Exception {
+
+        mockLedgers(new long[]{1001L, 5000L, 0L});
+        mockAccounts(
+                new Long[]{1001L, 125100L, 100000L, 20000L, 120000L, 0L},
+                new Long[]{2002L, 50000L, 50000L, 0L, 50000L, 0L});
+
+        BalanceReconciler.RangeResult result = balanceReconciler.reconcileRange(1L, 100L, SINCE, WATERMARK);
+
+        assertEquals(2, result.accounts());
+        assertEquals(1, result.drifted());
+        assertEquals(100L, result.driftAmount());
+
+        // The untouched account is not written again
+        List<Object[]> upserts = upserts();
+        assertEquals(1, upserts.size());
+        assertEquals(1001L, upserts.get(0)[0]);
+        assertEquals(100L, upserts.get(0)[5]);
+    }
+
+    @Test
+    @DisplayName("reconcileRange: the opening balance of a new account includes its entries before the checkpoint")
+    void reconcileRange_newAccount() throws Exception {
+
+        mockLedgers(new long[]{3003L, 1000L, 500L});
+        mockAccounts(new Long[]{3003L, 31500L, null, null, null, null});
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getLong("account_id")).thenReturn(3003L);
+            when(rs.getLong("total")).thenReturn(-10000L);
+            handler.processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        BalanceReconciler.RangeResult result = balanceReconciler.reconcileRange(1L, 100L, SINCE, WATERMARK);
+
+        assertEquals(0, result.drifted());
+        Object[] row = upserts().get(0);
+        assertEquals(40000L, row[1]);
+        assertEquals(-9000L, row[2]);
+        assertEquals(0L, row[5]);
+    }
+}
@@ -0,0 +1,102 @@
+package com.transfer.application.services.transactions;
+
+import com.transfer.application.dtos.transactions.SubmitTransaction;
+import com.transfer.application.dtos.transactions.TransactionSuccess;
+import com.transfer.application.repositories.idempotency.IdempotencyKey;
+import com.transfer.application.repositories.idempotency.IdempotencyKeyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class IdempotencyIndexTest {
+
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @InjectMocks
+    private IdempotencyIndex idempotencyIndex;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(idempotencyIndex, "maximumSize", 100L);
+        idempotencyIndex.init();
+    }
+
+    private SubmitTransaction transfer(String amount) {
+        SubmitTransaction req = new SubmitTransaction();
+        req.setSourceAccountId(1001L);
+        req.setDestinationAccountId(2002L);
+        req.setAmount(new BigDecimal(amount));
+        return req;
+    }
+
+    @Test
+    @DisplayName("find: unknown key returns null")
+    void find_unknownKey() {
+
+        when(idempotencyKeyRepository.findById("key-1")).thenReturn(Optional.empty());
+
+        assertNull(idempotencyIndex.find("key-1", transfer("100.00")));
+    }
+
+    @Test
+    @DisplayName("find: stored key is loaded once and then served from the index")
+    void find_storedKey() {
+
+        when(idempotencyKeyRepository.findById("key-1")).thenReturn(Optional.of(IdempotencyKey.builder()
+                .idempotencyKey("key-1")
+                .sourceAccountId(1001L)
+                .destinationAccountId(2002L)
+                .amount(10000L)
+                .updatedBalance(90000L)
+                .build()));
+
+        idempotencyIndex.find("key-1", transfer("100.00"));
+        TransactionSuccess result = idempotencyIndex.find("key-1", transfer("100.00"));
+
+        assertEquals(1001L, result.getSourceAccountId());
+        assertEquals(new BigDecimal("900.00"), result.getUpdatedBalance());
+        verify(idempotencyKeyRepository, times(1)).findById("key-1");
+    }
+
+    @Test
+    @DisplayName("find: indexed key is served without the repository")
+    void find_indexedKey() {
+
+        idempotencyIndex.index("key-1", transfer("100.00"), 90000L);
+
+        assertEquals(new BigDecimal("900.00"), idempotencyIndex.find("key-1", transfer("100.00")).getUpdatedBalance());
+        verifyNoInteractions(idempotencyKeyRepository);
+    }
+
+    @Test
+    @DisplayName("find: key reused for a different transfer throws UNPROCESSABLE_ENTITY")
+    void find_differentTransfer_throwsUnprocessable() {
+
+        idempotencyIndex.index("key-1", transfer("100.00"), 90000L);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> idempotencyIndex.find("key-1", transfer("50.00")));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, ex.getStatusCode());
+    }
+
+    @Test
+    @DisplayName("find: blank key throws BAD_REQUEST")
+    void find_blankKey_throwsBadRequest() {
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> idempotencyIndex.find(" ", transfer("100.00")));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+    }
+}
@@ -0,0 +1,176 @@
+package com.transfer.application.services.transactions;
+
+import com.transfer.application.dtos.accounts.CreateAccount;
+import com.transfer.application.dtos.transactions.SubmitTransaction;
+import com.transfer.application.repositories.ledgers.Ledger;
+import com.transfer.application.repositories.ledgers.LedgerRepository;
+import com.transfer.application.services.accounts.AccountService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionEventListener;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("batch-writes")
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:statements;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;IGNORE_UNKNOWN_SETTINGS=TRUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database=H2",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.session.events.auto=com.transfer.application.services.transactions.TransactionServiceStatementCountTest$BatchCounter",
+        "spring.sql.init.mode=never",
+        "transfer.execution.mode=JPA",
+        "transfer.execution.append-only=false",
+        "transfer.queue.enabled=false",
+        "transfer.ledger-partitions.enabled=false",
+        "transfer.reconciliation.enabled=false",
+        "transfer.outbox.enabled=false",
+        "transfer.rate-limit.enabled=false"
+})
+class TransactionServiceStatementCountTest {
+
+    private static final int TRANSFERS = 10;
+
+    // Lookups of both accounts (evicted from the cache by the previous transfer), the lock, the debit and credit
+    // updates and their reloads, and per ledger entry its insert, the read merging the completed entry and its update
+    private static final int STATEMENTS_PER_TRANSFER = 13;
+
+    // Ids allocated by one call of the pooled ledger sequence
+    private static final int ALLOCATION_SIZE = 50;
+
+    private static final String SEQUENCE_VALUE_SQL = "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'LEDGERS_SEQ'";
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private LedgerRepository ledgerRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Statistics statistics;
+
+    /**
+     * Counts the JDBC batches executed by every session, Hibernate statistics only count the statements prepared.
+     */
+    public static class BatchCounter implements SessionEventListener {
+
+        private static final AtomicLong BATCHES = new AtomicLong();
+
+        @Override
+        public void jdbcExecuteBatchStart() {
+            BATCHES.incrementAndGet();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    // Read without going through Hibernate, so that it does not count as a statement
+    private long sequenceValue() {
+        return jdbcTemplate.queryForObject(SEQUENCE_VALUE_SQL, Long.class);
+    }
+
+    private void createAccount(Long accountId) {
+        CreateAccount req = new CreateAccount();
+        req.setAccountId(accountId);
+        req.setName("Statements " + accountId);
+        req.setInitialBalance(new BigDecimal("1000.00"));
+        accountService.createAccount(req);
+    }
+
+    private SubmitTransaction transfer(Long sourceAccountId, Long destinationAccountId) {
+        SubmitTransaction req = new SubmitTransaction();
+        req.setSourceAccountId(sourceAccountId);
+        req.setDestinationAccountId(destinationAccountId);
+        req.setAmount(new BigDecimal("1.00"));
+        return req;
+    }
+
+    @Test
+    @DisplayName("submitTransaction: ledger ids come from the pooled sequence, each transfer runs the same statements")
+    void submitTransaction_statementsPerTransfer() {
+
+        createAccount(920001L);
+        createAccount(920002L);
+        transactionService.submitTransaction(transfer(920001L, 920002L));
+
+        long sequenceBefore = sequenceValue();
+        statistics.clear();
+        BatchCounter.BATCHES.set(0);
+        for (int i = 0; i < TRANSFERS; i++) {
+            transactionService.submitTransaction(transfer(920001L, 920002L));
+        }
+
+        // The 20 ledger ids take at most one more block from the sequence, depending on where the current block ends
+        long sequenceCalls = (sequenceValue() - sequenceBefore) / ALLOCATION_SIZE;
+        assertTrue(sequenceCalls <= 1, "sequence calls = " + sequenceCalls);
+        assertEquals(2L * TRANSFERS, statistics.getEntityInsertCount());
+        assertEquals(2L * TRANSFERS, statistics.getEntityUpdateCount());
+        assertEquals((long) STATEMENTS_PER_TRANSFER * TRANSFERS + sequenceCalls, statistics.getPrepareStatementCount());
+
+        // The native balance updates flush the session, so each ledger insert and update runs as a batch of its own
+        assertEquals(4L * TRANSFERS, BatchCounter.BATCHES.get());
+    }
+
+    @Test
+    @DisplayName("saveAll: ledger entries are inserted in JDBC batches")
+    void saveAll_batchesInserts() {
+
+        List<Ledger> ledgers = IntStream.range(0, 100)
+                .mapToObj(i -> Ledger.builder()
+                        .transactionId(UUID.randomUUID())
+                        .accountId(920003L)
+                        .credit(100L)
+                        .startBalance(0L)
+                        .endBalance(100L)
+                        .status(Ledger.Status.COMPLETED)
+                        .build())
+                .toList();
+
+        long sequenceBefore = sequenceValue();
+        statistics.clear();
+        BatchCounter.BATCHES.set(0);
+        transactionTemplate.executeWithoutResult(status -> ledgerRepository.saveAll(ledgers));
+
+        // 100 ids take up to two more blocks from the sequence, depending on how many ids the current block has left,
+        // and one more call when the sequence is first used. The insert is prepared once and executed as two batches
+        // of 50 rows, instead of one statement per row
+        long sequenceCalls = (sequenceValue() - sequenceBefore) / ALLOCATION_SIZE;
+        assertTrue(sequenceCalls >= 1 && sequenceCalls <= 3, "sequence calls = " + sequenceCalls);
+        assertEquals(100L, statistics.getEntityInsertCount());
+        assertEquals(sequenceCalls + 1, statistics.getPrepareStatementCount());
+        assertEquals(2L, BatchCounter.BATCHES.get());
+    }
+}
@@ -0,0 +1,167 @@
+package com.transfer.application.services.transactions;
+
+import com.transfer.application.dtos.accounts.CreateAccount;
+import com.transfer.application.dtos.transactions.SubmitTransaction;
+import com.transfer.application.services.accounts.AccountService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs once per execution mode, each in a context and database of its own. STATEMENT settles a transfer with a
+ * data-modifying CTE, which H2 does not support, so it runs on an embedded PostgreSQL.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stress-${transfer.execution.mode};MODE=PostgreSQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.hikari.maximum-pool-size=16",
+        "spring.jpa.database=H2",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.sql.init.mode=never",
+        "transfer.execution.append-only=false",
+        "transfer.execution.ordered-locking=true",
+        "transfer.engine.journal-path=${java.io.tmpdir}/transfer-stress-${random.uuid}.bin",
+        "transfer.queue.enabled=false",
+        "transfer.ledger-partitions.enabled=false",
+        "transfer.reconciliation.enabled=false",
+        "transfer.outbox.enabled=false",
+        "transfer.rate-limit.enabled=false"
+})
+abstract class TransactionServiceStressTest {
+
+    @TestPropertySource(properties = {
+            "transfer.execution.mode=STATEMENT",
+            "spring.datasource.driver-class-name=org.postgresql.Driver",
+            "spring.datasource.username=postgres",
+            "spring.datasource.password=postgres",
+            "spring.jpa.database=POSTGRESQL",
+            "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.PostgreSQLDialect",
+            "spring.sql.init.mode=always"
+    })
+    static class Statement extends TransactionServiceStressTest {
+
+        private static EmbeddedPostgres postgres;
+
+        @DynamicPropertySource
+        static void datasource(DynamicPropertyRegistry registry) throws IOException {
+            postgres = EmbeddedPostgres.start();
+            registry.add("spring.datasource.url", () -> postgres.getJdbcUrl("postgres", "postgres"));
+        }
+
+        @AfterAll
+        static void stopPostgres() throws IOException {
+            postgres.close();
+        }
+    }
+
+    @TestPropertySource(properties = "transfer.execution.mode=JPA")
+    static class Jpa extends TransactionServiceStressTest {
+    }
+
+    @TestPropertySource(properties = "transfer.execution.mode=MEMORY")
+    static class Memory extends TransactionServiceStressTest {
+    }
+
+    @TestPropertySource(properties = "transfer.execution.mode=PARTITIONED")
+    static class Partitioned extends TransactionServiceStressTest {
+    }
+
+    @TestPropertySource(properties = "transfer.execution.mode=COALESCED")
+    static class Coalesced extends TransactionServiceStressTest {
+    }
+
+    private static final int TRANSFERS = 1000;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionRetrier transactionRetrier;
+
+    private void createAccount(Long accountId) {
+        CreateAccount req = new CreateAccount();
+        req.setAccountId(accountId);
+        req.setName("Stress " + accountId);
+        req.setInitialBalance(new BigDecimal("100000.00"));
+        accountService.createAccount(req);
+    }
+
+    private SubmitTransaction transfer(Long sourceAccountId, Long destinationAccountId) {
+        SubmitTransaction req = new SubmitTransaction();
+        req.setSourceAccountId(sourceAccountId);
+        req.setDestinationAccountId(destinationAccountId);
+        req.setAmount(new BigDecimal("1.00"));
+        return req;
+    }
+
+    @Test
+    @DisplayName("submitTransaction: concurrent opposite direction transfers complete without deadlocks")
+    void oppositeTransfers_noDeadlocks() throws Exception {
+
+        createAccount(910001L);
+        createAccount(910002L);
+        long abortsBefore = transactionRetrier.getDeadlocks() + transactionRetrier.getSerializationFailures();
+
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>(TRANSFERS);
+        for (int i = 0; i < TRANSFERS; i++) {
+            SubmitTransaction req = i % 2 == 0 ? transfer(910001L, 910002L) : transfer(910002L, 910001L);
+            futures.add(executor.submit(() -> {
+                start.await();
+                return transactionService.submitTransaction(req);
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            assertDoesNotThrow(() -> future.get(60, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        // H2 reports deadlocks as serialization failures, so both are expected to stay at zero. Balances are read
+        // through the account service, as the balance engine is ahead of the database
+        assertEquals(abortsBefore, transactionRetrier.getDeadlocks() + transactionRetrier.getSerializationFailures());
+        assertEquals(new BigDecimal("100000.00"), accountService.getAccountDetails(910001L).getBalance());
+        assertEquals(new BigDecimal("100000.00"), accountService.getAccountDetails(910002L).getBalance());
+    }
+
+    @Test
+    @DisplayName("submitTransaction: the whole balance of the source account can be transferred, nothing more")
+    void exactBalance_transferred() {
+
+        createAccount(920001L);
+        createAccount(920002L);
+        SubmitTransaction req = transfer(920001L, 920002L);
+        req.setAmount(new BigDecimal("100000.00"));
+
+        assertEquals(new BigDecimal("0.00"), transactionService.submitTransaction(req).getUpdatedBalance());
+        assertThrows(ResponseStatusException.class, () -> transactionService.submitTransaction(transfer(920001L, 920002L)));
+        assertEquals(new BigDecimal("200000.00"), accountService.getAccountDetails(920002L).getBalance());
+    }
+}
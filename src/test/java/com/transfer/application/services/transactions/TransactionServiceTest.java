@@ -1,10 +1,21 @@
 package com.transfer.application.services.transactions;
 
 import com.transfer.application.dtos.transactions.SubmitTransaction;
+import com.transfer.application.dtos.transactions.TransactionBatchResult;
+import com.transfer.application.dtos.transactions.TransactionSuccess;
 import com.transfer.application.repositories.accounts.Account;
 import com.transfer.application.repositories.accounts.AccountRepository;
+import com.transfer.application.repositories.accounts.TransferBalances;
+import com.transfer.application.repositories.buckets.AccountBucketRepository;
+import com.transfer.application.repositories.buckets.BucketBalance;
 import com.transfer.application.repositories.ledgers.Ledger;
 import com.transfer.application.repositories.ledgers.LedgerRepository;
+import com.transfer.application.repositories.outbox.TransferEvent;
+import com.transfer.application.repositories.outbox.TransferEventRepository;
+import com.transfer.application.repositories.queue.QueuedTransferRepository;
+import com.transfer.application.services.engine.InMemoryBalanceEngine;
+import com.transfer.application.services.partitions.PartitionedTransferExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -12,13 +23,24 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.CannotAcquireLockException;
 import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiFunction;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -32,15 +54,53 @@ class TransactionServiceTest {
     @Mock
     private LedgerRepository ledgerRepository;
 
+    @Mock
+    private AccountBucketRepository accountBucketRepository;
+
     @Mock
     private TransactionTemplate transactionTemplate;
 
+    @Mock
+    private IdempotencyIndex idempotencyIndex;
+
+    @Mock
+    private PartitionedTransferExecutor partitionedExecutor;
+
+    @Mock
+    private TransferEventRepository transferEventRepository;
+
+    @Mock
+    private QueuedTransferRepository queuedTransferRepository;
+
+    @Mock
+    private InMemoryBalanceEngine balanceEngine;
+
+    @Mock
+    private TransferRateLimiter rateLimiter;
+
+    @Spy
+    private TransactionRetrier transactionRetrier = new TransactionRetrier();
+
+    @Spy
+    private TransferMetrics transferMetrics = new TransferMetrics();
+
+    @Spy
+    private TransferLog transferLog = new TransferLog();
+
+    private SimpleMeterRegistry meterRegistry;
+
     @InjectMocks
     private TransactionService transactionService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(transactionService, "executionMode", ExecutionMode.JPA);
+        ReflectionTestUtils.setField(transactionService, "batchChunkSize", 500);
+        ReflectionTestUtils.setField(transactionRetrier, "maxAttempts", 3);
+        meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(transferMetrics, "meterRegistry", meterRegistry);
+        transferMetrics.init();
     }
 
     private void mockExecuteRunsCallback() {
@@ -58,7 +118,7 @@ class TransactionServiceTest {
         SubmitTransaction req = new SubmitTransaction();
         req.setSourceAccountId(1L);
         req.setDestinationAccountId(2L);
-        req.setAmount(100.0);
+        req.setAmount(new BigDecimal("100.00"));
 
         when(accountRepository.findAccountByAccountId(1L)).thenReturn(null);
 
@@ -75,12 +135,12 @@ class TransactionServiceTest {
         SubmitTransaction req = new SubmitTransaction();
         req.setSourceAccountId(1L);
         req.setDestinationAccountId(2L);
-        req.setAmount(100.0);
+        req.setAmount(new BigDecimal("100.00"));
 
         Account source = Account.builder()
                 .id(10L)
                 .accountId(1L)
-                .balance(1000.0)
+                .balance(100000L)
                 .build();
         when(accountRepository.findAccountByAccountId(1L)).thenReturn(source);
         when(accountRepository.findAccountByAccountId(2L)).thenReturn(null);
@@ -99,13 +159,13 @@ class TransactionServiceTest {
         Account source = Account.builder()
                 .id(10L)
                 .accountId(1001L)
-                .balance(1000.0)
+                .balance(100000L)
                 .build();
 
         Account destination = Account.builder()
                 .id(20L)
                 .accountId(2002L)
-                .balance(500.0)
+                .balance(50000L)
                 .build();
 
         when(accountRepository.findAccountByAccountId(1001L)).thenReturn(source);
@@ -119,19 +179,19 @@ class TransactionServiceTest {
             return l;
         });
 
-        when(accountRepository.debitBalance(10L, 100.0)).thenReturn(1);
-        when(accountRepository.creditBalance(20L, 100.0)).thenReturn(1);
+        when(accountRepository.debitBalance(10L, 10000L)).thenReturn(1);
+        when(accountRepository.creditBalance(20L, 10000L)).thenReturn(1);
 
         Account sourceAfter = Account.builder()
                 .id(10L)
                 .accountId(1001L)
-                .balance(900.0)
+                .balance(90000L)
                 .build();
 
         Account destinationAfter = Account.builder()
                 .id(20L)
                 .accountId(2002L)
-                .balance(600.0)
+                .balance(60000L)
                 .build();
 
         when(accountRepository.findById(10L)).thenReturn(Optional.of(sourceAfter));
@@ -140,7 +200,7 @@ class TransactionServiceTest {
         SubmitTransaction req = new SubmitTransaction();
         req.setSourceAccountId(1001L);
         req.setDestinationAccountId(2002L);
-        req.setAmount(100.0);
+        req.setAmount(new BigDecimal("100.00"));
 
         assertDoesNotThrow(() -> transactionService.submitTransaction(req));
 
@@ -150,8 +210,8 @@ class TransactionServiceTest {
         boolean hasCompletedStatus = ledgerCaptor.getAllValues().stream().anyMatch(l -> l.getStatus() == Ledger.Status.COMPLETED);
         assertTrue(hasCompletedStatus, "At least one ledger should be marked COMPLETED");
 
-        verify(accountRepository).debitBalance(10L, 100.0);
-        verify(accountRepository).creditBalance(20L, 100.0);
+        verify(accountRepository).debitBalance(10L, 10000L);
+        verify(accountRepository).creditBalance(20L, 10000L);
     }
 
     @Test
@@ -162,29 +222,29 @@ class TransactionServiceTest {
         Account source = Account.builder()
                 .id(10L)
                 .accountId(1001L)
-                .balance(1000.0)
+                .balance(100000L)
                 .build();
         Account destination = Account.builder()
                 .id(20L)
                 .accountId(2002L)
-                .balance(500.0)
+                .balance(50000L)
                 .build();
 
         when(accountRepository.findAccountByAccountId(1001L)).thenReturn(source);
         when(accountRepository.findAccountByAccountId(2002L)).thenReturn(destination);
 
         when(ledgerRepository.save(any(Ledger.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        when(accountRepository.debitBalance(10L, 100.0)).thenReturn(0);
+        when(accountRepository.debitBalance(10L, 10000L)).thenReturn(0);
 
         SubmitTransaction req = new SubmitTransaction();
         req.setSourceAccountId(1001L);
         req.setDestinationAccountId(2002L);
-        req.setAmount(100.0);
+        req.setAmount(new BigDecimal("100.00"));
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> transactionService.submitTransaction(req));
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, ex.getStatusCode());
 
-        verify(accountRepository, never()).creditBalance(anyLong(), anyDouble());
+        verify(accountRepository, never()).creditBalance(anyLong(), anyLong());
     }
 
     @Test
@@ -195,12 +255,12 @@ class TransactionServiceTest {
         Account source = Account.builder()
                 .id(10L)
                 .accountId(1001L)
-                .balance(1000.0)
+                .balance(100000L)
                 .build();
         Account destination = Account.builder()
                 .id(20L)
                 .accountId(2002L)
-                .balance(500.0)
+                .balance(50000L)
                 .build();
 
         when(accountRepository.findAccountByAccountId(1001L)).thenReturn(source);
@@ -208,25 +268,631 @@ class TransactionServiceTest {
 
         when(ledgerRepository.save(any(Ledger.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-        when(accountRepository.debitBalance(10L, 100.0)).thenReturn(1);
+        when(accountRepository.debitBalance(10L, 10000L)).thenReturn(1);
         Account sourceAfter = Account.builder()
                 .id(10L)
                 .accountId(1001L)
-                .balance(900.0)
+                .balance(90000L)
                 .build();
         when(accountRepository.findById(10L)).thenReturn(Optional.of(sourceAfter));
 
-        when(accountRepository.creditBalance(20L, 100.0)).thenReturn(0);
+        when(accountRepository.creditBalance(20L, 10000L)).thenReturn(0);
 
         SubmitTransaction req = new SubmitTransaction();
         req.setSourceAccountId(1001L);
         req.setDestinationAccountId(2002L);
-        req.setAmount(100.0);
+        req.setAmount(new BigDecimal("100.00"));
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> transactionService.submitTransaction(req));
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, ex.getStatusCode());
 
-        verify(accountRepository).debitBalance(10L, 100.0);
-        verify(accountRepository).creditBalance(20L, 100.0);
+        verify(accountRepository).debitBalance(10L, 10000L);
+        verify(accountRepository).creditBalance(20L, 10000L);
+    }
+
+    @Test
+    @DisplayName("submitTransaction: append-only writes both ledger entries once, completed with their end balances")
+    void submitTransaction_appendOnly_insertsCompletedLedgers() {
+        mockExecuteRunsCallback();
+        ReflectionTestUtils.setField(transactionService, "appendOnly", true);
+
+        Account source = Account.builder().id(10L).accountId(1001L).balance(100000L).build();
+        Account destination = Account.builder().id(20L).accountId(2002L).balance(50000L).build();
+        when(accountRepository.findAccountByAccountId(1001L)).thenReturn(source);
+        when(accountRepository.findAccountByAccountId(2002L)).thenReturn(destination);
+        when(accountRepository.debitBalanceReturning(10L, 10000L)).thenReturn(Optional.of(90000L));
+        when(accountRepository.creditBalanceReturning(20L, 10000L)).thenReturn(Optional.of(60000L));
+
+        SubmitTransaction req = new SubmitTransaction();
+        req.setSourceAccountId(1001L);
+        req.setDestinationAccountId(2002L);
+        req.setAmount(new BigDecimal("100.00"));
+
+        TransactionSuccess result = transactionService.submitTransaction(req);
+        assertEquals(new BigDecimal("900.00"), result.getUpdatedBalance());
+
+        ArgumentCaptor<List<Ledger>> ledgersCaptor = ArgumentCaptor.forClass(List.class);
+        verify(ledgerRepository).insertAll(ledgersCaptor.capture());
+        List<Ledger> ledgers = ledgersCaptor.getValue();
+        assertEquals(2, ledgers.size());
+        assertTrue(ledgers.stream().allMatch(l -> l.getStatus() == Ledger.Status.COMPLETED));
+        assertEquals(10000L, ledgers.get(0).getDebit());
+        assertEquals(100000L, ledgers.get(0).getStartBalance());
+        assertEquals(90000L, ledgers.get(0).getEndBalance());
+        assertEquals(10000L, ledgers.get(1).getCredit());
+        assertEquals(50000L, ledgers.get(1).getStartBalance());
+        assertEquals(60000L, ledgers.get(1).getEndBalance());
+
+        verify(ledgerRepository, never()).save(any(Ledger.class));
+        verify(accountRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    @DisplayName("submitTransaction: with the outbox enabled the transfer event is written by the transfer's transaction")
+    void submitTransaction_outbox_recordsEvent() {
+        mockExecuteRunsCallback();
+        ReflectionTestUtils.setField(transactionService, "appendOnly", true);
+        ReflectionTestUtils.setField(transactionService, "outboxEnabled", true);
+
+        Account source = Account.builder().id(10L).accountId(1001L).balance(100000L).build();
+        Account destination = Account.builder().id(20L).accountId(2002L).balance(50000L).build();
+        when(accountRepository.findAccountByAccountId(1001L)).thenReturn(source);
+        when(accountRepository.findAccountByAccountId(2002L)).thenReturn(destination);
+        when(accountRepository.debitBalanceReturning(10L, 10000L)).thenReturn(Optional.of(90000L));
+        when(accountRepository.creditBalanceReturning(20L, 10000L)).thenReturn(Optional.of(60000L));
+
+        SubmitTransaction req = new SubmitTransaction();
+        req.setSourceAccountId(1001L);
+        req.setDestinationAccountId(2002L);
+        req.setAmount(new BigDecimal("100.00"));
+
+        transactionService.submitTransaction(req);
+
+        ArgumentCaptor<List<TransferEvent>> eventsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(transferEventRepository).insertAll(eventsCaptor.capture());
+        TransferEvent event = eventsCaptor.getValue().get(0);
+        assertNotNull(event.getTransactionId());
+        assertEquals(1001L, event.getSourceAccountId());
+        assertEquals(2002L, event.getDestinationAccountId());
+        assertEquals(10000L, event.getAmount());
+        assertEquals(90000L, event.getSourceBalance());
+        assertEquals(60000L, event.getDestinationBalance());
+    }
+
+    @Test
+    @DisplayName("submitTransaction: statement mode settles the transfer with a single statement and no reloads")
+    void submitTransaction_statementMode_success() {
+        mockExecuteRunsCallback();
+        ReflectionTestUtils.setField(transactionService, "executionMode", ExecutionMode.STATEMENT);
+
+        Account source = Account.builder()
+                .id(10L)
+                .accountId(1001L)
+                .balance(100000L)
+                .build();
+        Account destination = Account.builder()
+                .id(20L)
+                .accountId(2002L)
+                .balance(50000L)
+                .build();
+
+        when(accountRepository.findAccountByAccountId(1001L)).thenReturn(source);
+        when(accountRepository.findAccountByAccountId(2002L)).thenReturn(destination);
+
+        TransferBalances balances = mock(TransferBalances.class);
+        when(balances.getSourceBalance()).thenReturn(90000L);
+        when(balances.getDestinationBalance()).thenReturn(60000L);
+        when(accountRepository.transfer(eq(10L), eq(20L), eq(10000L), any(UUID.class), eq(Ledger.Status.COMPLETED.ordinal())))
+                .thenReturn(Optional.of(balances));
+
+        SubmitTransaction req = new SubmitTransaction();
+        req.setSourceAccountId(1001L);
+        req.setDestinationAccountId(2002L);
+        req.setAmount(new BigDecimal("100.00"));
+
+        assertEquals(new BigDecimal("900.00"), transactionService.submitTransaction(req).getUpdatedBalance());
+
+        verifyNoInteractions(ledgerRepository);
+        verify(accountRepository, never()).debitBalance(anyLong(), anyLong());
+        verify(accountRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    @DisplayName("submitTransaction: statement mode rolls back and returns INTERNAL_SERVER_ERROR when no row is returned")
+    void submitTransaction_statementMode_failure_throwsISE() {
+        mockExecuteRunsCallback();
+        ReflectionTestUtils.setField(transactionService, "executionMode", ExecutionMode.STATEMENT);
+
+        Account source = Account.builder()
+                .id(10L)
+                .accountId(1001L)
+                .balance(100000L)
+                .build();
+        Account destination = Account.builder()
+                .id(20L)
+                .accountId(2002L)
+                .balance(50000L)
+                .build();
+
+        when(accountRepository.findAccountByAccountId(1001L)).thenReturn(source);
+        when(accountRepository.findAccountByAccountId(2002L)).thenReturn(destination);
+        when(accountRepository.transfer(anyLong(), anyLong(), anyLong(), any(UUID.class), anyInt())).thenReturn(Optional.empty());
+
+        SubmitTransaction req = new SubmitTransaction();
+        req.setSourceAccountId(1001L);
+        req.setDestinationAccountId(2002L);
+        req.setAmount(new BigDecimal("100.00"));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> transactionService.submitTransaction(req));
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, ex.getStatusCode());
+        assertEquals(1.0, meterRegistry.get("transfer.failures").tag("reason", "debit_race_lost").counter().count());
+        assertEquals(1.0, meterRegistry.get("transfer.failures").tag("reason", "rollback").counter().count());
+        assertEquals(1L, meterRegistry.get("transfer.stage").tag("stage", "statement").timer().count());
+    }
+
+    @Test
+    @DisplayName("submitTransaction: partitioned mode maps the result of the partition to the response")
+    void submitTransaction_partitionedMode() {
+        ReflectionTestUtils.setField(transactionService, "executionMode", ExecutionMode.PARTITIONED);
+
+        SubmitTransaction req = new SubmitTransaction();
+        req.setSourceAccountId(1001L);
+        req.setDestinationAccountId(2002L);
+        req.setAmount(new BigDecimal("100.00"));
+
+        when(partitionedExecutor.submit(req, null)).thenReturn(TransactionBatchResult.Item.builder()
+                .index(0)
+                .status(Ledger.Status.COMPLETED)
+                .updatedBalance(new BigDecimal("900.00"))
+                .build());
+        TransactionSuccess res = transactionService.submitTransaction(req);
+        assertEquals(new BigDecimal("900.00"), res.getUpdatedBalance());
+        assertEquals(1001L, res.getSourceAccountId());
+
+        when(partitionedExecutor.submit(req, null)).thenReturn(TransactionBatchResult.Item.builder()
+                .index(0)
+                .status(Ledger.Status.FAILED)
+                .error("Insufficient funds")
+                .build());
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> transactionService.submitTransaction(req));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        assertEquals(1.0, meterRegistry.get("transfer.failures").tag("reason", "insufficient_funds").counter().count());
+        verifyNoInteractions(accountRepository, ledgerRepository, transactionTemplate);
+    }
+
+    @Test
+    @DisplayName("submitTransaction: partitioned mode hands the idempotency key to the batch and returns the stored response of a duplicate")
+    void submitTransaction_partitionedMode_idempotencyKey_alreadySettled() {
+        ReflectionTestUtils.setField(transactionService, "executionMode", ExecutionMode.PARTITIONED);
+
+        SubmitTransaction req = new SubmitTransaction();
+        req.setSourceAccountId(1001L);
+        req.setDestinationAccountId(2002L);
+        req.setAmount(new BigDecimal("100.00"));
+
+        TransactionSuccess stored = TransactionSuccess.builder().sourceAccountId(1001L).updatedBalance(new BigDecimal("900.00")).build();
+        when(idempotencyIndex.find("key-1", req)).thenReturn(null, stored);
+        when(partitionedExecutor.submit(req, "key-1")).thenReturn(TransactionBatchResult.Item.builder()
+                .index(0)
+                .status(Ledger.Status.FAILED)
+                .error("Transaction already settled with the idempotency key")
+                .build());
+
+        assertSame(stored, transactionService.submitTransaction(req, "key-1"));
+        verify(idempotencyIndex, never()).store(anyString(), any(), any());
+        verify(idempotencyIndex, never()).index(anyString(), any(), any());
+    }
+
+    @Test
+    @DisplayName("submitTransaction: retried idempotency key returns stored response without touching accounts or the rate limiter")
+    void submitTransaction_idempotencyKey_replayed() {
+
+        SubmitTransaction req = new SubmitTransaction();
+        req.setSourceAccountId(1001L);
+        req.setDestinationAccountId(2002L);
+        req.setAmount(new BigDecimal("100.00"));
+
+        TransactionSuccess stored = TransactionSuccess.builder().sourceAccountId(1001L).updatedBalance(new BigDecimal("900.00")).build();
+        when(idempotencyIndex.find("key-1", req)).thenReturn(stored);
+
+        assertSame(stored, transactionService.submitTransaction(req, "key-1"));
+
+        verifyNoInteractions(accountRepository, ledgerRepository, transactionTemplate, rateLimiter);
+    }
+
+    @Test
+    @DisplayName("submitTransaction: new idempotency key is stored with the transfer and indexed")
+    void submitTransaction_idempotencyKey_stored() {
+        mockExecuteRunsCallback();
+        ReflectionTestUtils.setField(transactionService, "executionMode", ExecutionMode.STATEMENT);
+
+        Account source = Account.builder().id(10L).accountId(1001L).balance(100000L).build();
+        Account destination = Account.builder().id(20L).accountId(2002L).balance(50000L).build();
+        when(accountRepository.findAccountByAccountId(1001L)).thenReturn(source);
+        when(accountRepository.findAccountByAccountId(2002L)).thenReturn(destination);
+
+        TransferBalances balances = mock(TransferBalances.class);
+        when(balances.getSourceBalance()).thenReturn(90000L);
+        when(balances.getDestinationBalance()).thenReturn(60000L);
+        when(accountRepository.transfer(anyLong(), anyLong(), anyLong(), any(UUID.class), anyInt())).thenReturn(Optional.of(balances));
+
+        SubmitTransaction req = new SubmitTransaction();
+        req.setSourceAccountId(1001L);
+        req.setDestinationAccountId(2002L);
+        req.setAmount(new BigDecimal("100.00"));
+
+        when(idempotencyIndex.find("key-1", req)).thenReturn(null);
+        when(idempotencyIndex.store("key-1", req, 90000L)).thenReturn(true);
+
+        assertEquals(new BigDecimal("900.00"), transactionService.submitTransaction(req, "key-1").getUpdatedBalance());
+
+        verify(idempotencyIndex).index("key-1", req, 90000L);
+    }
+
+    @Test
+    @DisplayName("submitTransaction: concurrent request with the same idempotency key rolls back and returns its response")
+    void submitTransaction_idempotencyKey_concurrentDuplicate() {
+
+        TransactionStatus status = mock(TransactionStatus.class);
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(status));
+        ReflectionTestUtils.setField(transactionService, "executionMode", ExecutionMode.STATEMENT);
+
+        Account source = Account.builder().id(10L).accountId(1001L).balance(100000L).build();
+        Account destination = Account.builder().id(20L).accountId(2002L).balance(50000L).build();
+        when(accountRepository.findAccountByAccountId(1001L)).thenReturn(source);
+        when(accountRepository.findAccountByAccountId(2002L)).thenReturn(destination);
+
+        TransferBalances balances = mock(TransferBalances.class);
+        when(balances.getSourceBalance()).thenReturn(90000L);
+        when(accountRepository.transfer(anyLong(), anyLong(), anyLong(), any(UUID.class), anyInt())).thenReturn(Optional.of(balances));
+
+        SubmitTransaction req = new SubmitTransaction();
+        req.setSourceAccountId(1001L);
+        req.setDestinationAccountId(2002L);
+        req.setAmount(new BigDecimal("100.00"));
+
+        TransactionSuccess stored = TransactionSuccess.builder().sourceAccountId(1001L).updatedBalance(new BigDecimal("800.00")).build();
+        when(idempotencyIndex.find("key-1", req)).thenReturn(null, stored);
+        when(idempotencyIndex.store("key-1", req, 90000L)).thenReturn(false);
+
+        assertSame(stored, transactionService.submitTransaction(req, "key-1"));
+
+        verify(status).setRollbackOnly();
+        verify(idempotencyIndex, never()).index(anyString(), any(), any());
+    }
+
+    @Test
+    @DisplayName("submitTransaction: bucketed accounts are debited from a bucket and credited to a random bucket")
+    void submitTransaction_bucketedAccounts_success() {
+        mockExecuteRunsCallback();
+        ReflectionTestUtils.setField(transactionService, "outboxEnabled", true);
+
+        Account source = Account.builder()
+                .id(10L)
+                .accountId(1001L)
+                .balance(0L)
+                .bucketCount(4)
+                .build();
+        Account destination = Account.builder()
+                .id(20L)
+                .accountId(2002L)
+                .balance(50000L)
+                .bucketCount(8)
+                .build();
+
+        when(accountRepository.findAccountByAccountId(1001L)).thenReturn(source);
+        when(accountRepository.findAccountByAccountId(2002L)).thenReturn(destination);
+        when(accountBucketRepository.sumBalanceByAccountId(1001L)).thenReturn(100000L);
+
+        BucketBalance debited = mock(BucketBalance.class);
+        when(debited.getBucket()).thenReturn(2);
+        when(debited.getBalance()).thenReturn(15000L);
+        when(accountBucketRepository.debitAnyBucket(1001L, 10000L)).thenReturn(Optional.of(debited));
+
+        BucketBalance credited = mock(BucketBalance.class);
+        when(credited.getBalance()).thenReturn(10000L);
+        when(accountBucketRepository.creditBucket(eq(2002L), anyInt(), eq(10000L))).thenReturn(Optional.of(credited));
+        when(accountBucketRepository.totalBalance(1001L)).thenReturn(90000L);
+        when(accountBucketRepository.totalBalance(2002L)).thenReturn(60000L);
+
+        SubmitTransaction req = transfer(1001L, 2002L, "100.00");
+
+        assertEquals(new BigDecimal("900.00"), transactionService.submitTransaction(req).getUpdatedBalance());
+
+        ArgumentCaptor<List<Ledger>> ledgerCaptor = ArgumentCaptor.forClass(List.class);
+        verify(ledgerRepository).insertAll(ledgerCaptor.capture());
+        Ledger debitEntry = ledgerCaptor.getValue().get(0);
+        assertEquals(2, debitEntry.getBucket());
+        assertEquals(25000L, debitEntry.getStartBalance());
+        assertEquals(15000L, debitEntry.getEndBalance());
+
+        // Events carry the balances of both accounts, not of the buckets
+        ArgumentCaptor<List<TransferEvent>> eventsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(transferEventRepository).insertAll(eventsCaptor.capture());
+        assertEquals(90000L, eventsCaptor.getValue().get(0).getSourceBalance());
+        assertEquals(60000L, eventsCaptor.getValue().get(0).getDestinationBalance());
+
+        verify(accountBucketRepository, never()).consolidate(anyLong());
+        verify(accountRepository, never()).creditBalance(anyLong(), anyLong());
+        verify(accountRepository, never()).creditBalanceReturning(anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("getTransaction: a transfer from a bucketed account reports the balance of the account, not of the bucket")
+    void getTransaction_bucketedSource_accountBalance() {
+        UUID transactionId = UUID.randomUUID();
+        when(queuedTransferRepository.findById(transactionId)).thenReturn(Optional.empty());
+        when(ledgerRepository.findLedgersByTransactionId(transactionId)).thenReturn(List.of(
+                Ledger.builder().transactionId(transactionId).accountId(1001L).bucket(2).debit(10000L).startBalance(25000L).endBalance(15000L).status(Ledger.Status.COMPLETED).build(),
+                Ledger.builder().transactionId(transactionId).accountId(2002L).credit(10000L).startBalance(50000L).endBalance(60000L).status(Ledger.Status.COMPLETED).build()));
+        when(accountRepository.findAccountByAccountId(1001L)).thenReturn(Account.builder().id(10L).accountId(1001L).balance(0L).bucketCount(4).build());
+        when(accountBucketRepository.totalBalance(1001L)).thenReturn(90000L);
+
+        assertEquals(new BigDecimal("900.00"), transactionService.getTransaction(transactionId).getUpdatedBalance());
+    }
+
+    @Test
+    @DisplayName("submitTransaction: bucketed source falls back to the consolidated balance when no bucket has enough funds")
+    void submitTransaction_bucketedSource_consolidates() {
+        mockExecuteRunsCallback();
+
+        Account source = Account.builder()
+                .id(10L)
+                .accountId(1001L)
+                .balance(5000L)
+                .bucketCount(4)
+                .build();
+        Account destination = Account.builder()
+                .id(20L)
+                .accountId(2002L)
+                .balance(50000L)
+                .build();
+
+        when(accountRepository.findAccountByAccountId(1001L)).thenReturn(source);
+        when(accountRepository.findAccountByAccountId(2002L)).thenReturn(destination);
+        when(accountBucketRepository.sumBalanceByAccountId(1001L)).thenReturn(20000L);
+        when(accountBucketRepository.debitAnyBucket(1001L, 10000L)).thenReturn(Optional.empty());
+        when(accountRepository.debitBalanceReturning(10L, 10000L)).thenReturn(Optional.of(15000L));
+        when(accountRepository.creditBalanceReturning(20L, 10000L)).thenReturn(Optional.of(60000L));
+        when(accountBucketRepository.totalBalance(1001L)).thenReturn(15000L);
+
+        assertEquals(new BigDecimal("150.00"), transactionService.submitTransaction(transfer(1001L, 2002L, "100.00")).getUpdatedBalance());
+
+        verify(accountBucketRepository).consolidate(1001L);
+        verify(accountRepository).debitBalanceReturning(10L, 10000L);
+    }
+
+    @Test
+    @DisplayName("submitTransaction: ordered locking locks both accounts with one statement before the transfer")
+    void submitTransaction_orderedLocking_locksBothAccounts() {
+        mockExecuteRunsCallback();
+        ReflectionTestUtils.setField(transactionService, "executionMode", ExecutionMode.STATEMENT);
+        ReflectionTestUtils.setField(transactionService, "orderedLocking", true);
+
+        Account source = Account.builder().id(20L).accountId(1001L).balance(100000L).build();
+        Account destination = Account.builder().id(10L).accountId(2002L).balance(50000L).build();
+        when(accountRepository.findAccountByAccountId(1001L)).thenReturn(source);
+        when(accountRepository.findAccountByAccountId(2002L)).thenReturn(destination);
+
+        TransferBalances balances = mock(TransferBalances.class);
+        when(balances.getSourceBalance()).thenReturn(90000L);
+        when(accountRepository.transfer(anyLong(), anyLong(), anyLong(), any(UUID.class), anyInt())).thenReturn(Optional.of(balances));
+
+        transactionService.submitTransaction(transfer(1001L, 2002L, "100.00"));
+
+        var inOrder = inOrder(accountRepository);
+        inOrder.verify(accountRepository).lockAccounts(List.of(20L, 10L));
+        inOrder.verify(accountRepository).transfer(eq(20L), eq(10L), eq(10000L), any(UUID.class), anyInt());
+    }
+
+    @Test
+    @DisplayName("submitTransaction: ledger entries start from the balances of the locked rows")
+    void submitTransaction_orderedLocking_startsFromLockedBalances() {
+        mockExecuteRunsCallback();
+        ReflectionTestUtils.setField(transactionService, "orderedLocking", true);
+
+        // Balances looked up before the transaction are behind the locked rows
+        when(accountRepository.findAccountByAccountId(1001L)).thenReturn(Account.builder().id(10L).accountId(1001L).balance(100000L).build());
+        when(accountRepository.findAccountByAccountId(2002L)).thenReturn(Account.builder().id(20L).accountId(2002L).balance(50000L).build());
+        when(accountRepository.lockAccounts(List.of(10L, 20L))).thenReturn(List.of(
+                Account.builder().id(10L).accountId(1001L).balance(70000L).build(),
+                Account.builder().id(20L).accountId(2002L).balance(80000L).build()));
+        when(ledgerRepository.save(any(Ledger.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(accountRepository.debitBalance(10L, 10000L)).thenReturn(1);
+        when(accountRepository.creditBalance(20L, 10000L)).thenReturn(1);
+        when(accountRepository.findById(10L)).thenReturn(Optional.of(Account.builder().id(10L).accountId(1001L).balance(60000L).build()));
+        when(accountRepository.findById(20L)).thenReturn(Optional.of(Account.builder().id(20L).accountId(2002L).balance(90000L).build()));
+
+        assertEquals(new BigDecimal("600.00"), transactionService.submitTransaction(transfer(1001L, 2002L, "100.00")).getUpdatedBalance());
+
+        ArgumentCaptor<Ledger> ledgerCaptor = ArgumentCaptor.forClass(Ledger.class);
+        verify(ledgerRepository, atLeast(4)).save(ledgerCaptor.capture());
+        Ledger debitEntry = ledgerCaptor.getAllValues().stream().filter(ledger -> ledger.getDebit() != null).findFirst().orElseThrow();
+        Ledger creditEntry = ledgerCaptor.getAllValues().stream().filter(ledger -> ledger.getCredit() != null).findFirst().orElseThrow();
+        assertEquals(70000L, debitEntry.getStartBalance());
+        assertEquals(80000L, creditEntry.getStartBalance());
+    }
+
+    @Test
+    @DisplayName("submitTransaction: a transaction aborted by a deadlock is retried")
+    void submitTransaction_deadlock_retried() {
+        ReflectionTestUtils.setField(transactionService, "executionMode", ExecutionMode.STATEMENT);
+
+        Account source = Account.builder().id(10L).accountId(1001L).balance(100000L).build();
+        Account destination = Account.builder().id(20L).accountId(2002L).balance(50000L).build();
+        when(accountRepository.findAccountByAccountId(1001L)).thenReturn(source);
+        when(accountRepository.findAccountByAccountId(2002L)).thenReturn(destination);
+
+        TransferBalances balances = mock(TransferBalances.class);
+        when(balances.getSourceBalance()).thenReturn(90000L);
+        when(balances.getDestinationBalance()).thenReturn(60000L);
+        when(accountRepository.transfer(eq(10L), eq(20L), eq(10000L), any(UUID.class), eq(Ledger.Status.COMPLETED.ordinal())))
+                .thenReturn(Optional.of(balances));
+
+        when(transactionTemplate.execute(any()))
+                .thenThrow(new CannotAcquireLockException("deadlock", new SQLException("deadlock detected", "40P01")))
+                .thenAnswer(invocation -> {
+                    TransactionCallback<Boolean> callback = (TransactionCallback<Boolean>) invocation.getArgument(0);
+                    return callback.doInTransaction(mock(TransactionStatus.class));
+                });
+
+        assertEquals(new BigDecimal("900.00"), transactionService.submitTransaction(transfer(1001L, 2002L, "100.00")).getUpdatedBalance());
+        verify(transactionTemplate, times(2)).execute(any());
+        assertEquals(1, transactionRetrier.getDeadlocks());
+    }
+
+    private SubmitTransaction transfer(Long sourceAccountId, Long destinationAccountId, String amount) {
+        SubmitTransaction req = new SubmitTransaction();
+        req.setSourceAccountId(sourceAccountId);
+        req.setDestinationAccountId(destinationAccountId);
+        req.setAmount(new BigDecimal(amount));
+        return req;
+    }
+
+    @Test
+    @DisplayName("submitTransactions: settles items in order with one aggregated update per account")
+    void submitTransactions_success() {
+        mockExecuteRunsCallback();
+
+        Account first = Account.builder().id(10L).accountId(1001L).balance(100000L).build();
+        Account second = Account.builder().id(20L).accountId(2002L).balance(50000L).build();
+        Account third = Account.builder().id(30L).accountId(3003L).balance(0L).build();
+
+        when(accountRepository.findAccountsByAccountIdIn(any())).thenReturn(List.of(first, second, third));
+        when(accountRepository.lockAccounts(any())).thenReturn(List.of(first, second, third));
+
+        List<SubmitTransaction> batch = List.of(
+                transfer(1001L, 2002L, "100.00"),
+                transfer(2002L, 3003L, "50.00"),
+                transfer(1001L, 3003L, "200.00"));
+
+        TransactionBatchResult result = transactionService.submitTransactions(batch);
+
+        assertEquals(3, result.getCompleted());
+        assertEquals(0, result.getFailed());
+        assertEquals(new BigDecimal("900.00"), result.getResults().get(0).getUpdatedBalance());
+        assertEquals(new BigDecimal("550.00"), result.getResults().get(1).getUpdatedBalance());
+        assertEquals(new BigDecimal("700.00"), result.getResults().get(2).getUpdatedBalance());
+
+        ArgumentCaptor<List<Ledger>> ledgerCaptor = ArgumentCaptor.forClass(List.class);
+        verify(ledgerRepository).insertAll(ledgerCaptor.capture());
+        assertEquals(6, ledgerCaptor.getValue().size());
+        assertTrue(ledgerCaptor.getValue().stream().allMatch(l -> l.getStatus() == Ledger.Status.COMPLETED));
+
+        verify(accountRepository).applyBalanceDeltas(Map.of(10L, -30000L, 20L, 5000L, 30L, 25000L));
+        verify(accountRepository, never()).findAccountByAccountId(anyLong());
+        verify(accountRepository, never()).debitBalance(anyLong(), anyLong());
+        verify(ledgerRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("submitTransactions: fails individual items without affecting the rest of the batch")
+    void submitTransactions_partialFailure() {
+        mockExecuteRunsCallback();
+
+        Account first = Account.builder().id(10L).accountId(1001L).balance(10000L).build();
+        Account second = Account.builder().id(20L).accountId(2002L).balance(50000L).build();
+
+        when(accountRepository.findAccountsByAccountIdIn(any())).thenReturn(List.of(first, second));
+        when(accountRepository.lockAccounts(any())).thenReturn(List.of(first, second));
+
+        List<SubmitTransaction> batch = List.of(
+                transfer(1001L, 2002L, "80.00"),
+                transfer(1001L, 2002L, "80.00"),
+                transfer(1001L, 4004L, "10.00"),
+                transfer(2002L, 2002L, "10.00"));
+
+        TransactionBatchResult result = transactionService.submitTransactions(batch);
+
+        assertEquals(1, result.getCompleted());
+        assertEquals(3, result.getFailed());
+        assertEquals(Ledger.Status.COMPLETED, result.getResults().get(0).getStatus());
+        assertEquals("Insufficient funds", result.getResults().get(1).getError());
+        assertEquals("Destination account not found", result.getResults().get(2).getError());
+        assertEquals("Source and destination accounts cannot be the same", result.getResults().get(3).getError());
+
+        verify(accountRepository).applyBalanceDeltas(Map.of(10L, -8000L, 20L, 8000L));
+    }
+
+    @Test
+    @DisplayName("submitTransactions: bucketed accounts are settled through their buckets without locking or consolidating their rows")
+    void submitTransactions_bucketedAccounts_settledOnBuckets() {
+        mockExecuteRunsCallback();
+
+        Account source = Account.builder().id(10L).accountId(1001L).balance(0L).bucketCount(4).build();
+        Account destination = Account.builder().id(20L).accountId(2002L).balance(50000L).build();
+        Account bucketed = Account.builder().id(30L).accountId(3003L).balance(0L).bucketCount(8).build();
+
+        when(accountRepository.findAccountsByAccountIdIn(any())).thenReturn(List.of(source, destination, bucketed));
+        when(accountRepository.lockAccounts(any())).thenReturn(List.of(destination));
+
+        BucketBalance debited = mock(BucketBalance.class);
+        when(debited.getBucket()).thenReturn(1);
+        when(debited.getBalance()).thenReturn(5000L);
+        when(accountBucketRepository.debitAnyBucket(1001L, 10000L)).thenReturn(Optional.of(debited));
+        when(accountBucketRepository.totalBalance(1001L)).thenReturn(40000L);
+
+        BucketBalance credited = mock(BucketBalance.class);
+        when(credited.getBalance()).thenReturn(20000L);
+        when(accountBucketRepository.creditBucket(eq(3003L), anyInt(), eq(20000L))).thenReturn(Optional.of(credited));
+
+        TransactionBatchResult result = transactionService.submitTransactions(List.of(
+                transfer(1001L, 2002L, "100.00"),
+                transfer(2002L, 3003L, "200.00")));
+
+        assertEquals(2, result.getCompleted());
+        assertEquals(new BigDecimal("400.00"), result.getResults().get(0).getUpdatedBalance());
+        assertEquals(new BigDecimal("400.00"), result.getResults().get(1).getUpdatedBalance());
+
+        ArgumentCaptor<List<Ledger>> ledgerCaptor = ArgumentCaptor.forClass(List.class);
+        verify(ledgerRepository).insertAll(ledgerCaptor.capture());
+        assertEquals(1, ledgerCaptor.getValue().get(0).getBucket());
+        assertEquals(15000L, ledgerCaptor.getValue().get(0).getStartBalance());
+
+        verify(accountRepository).lockAccounts(Set.of(20L));
+        verify(accountRepository).applyBalanceDeltas(Map.of(20L, -10000L));
+        verify(accountBucketRepository, never()).consolidate(anyLong());
+    }
+
+    @Test
+    @DisplayName("submitTransactions: partitions store idempotency keys in the batch transaction, an item whose key is stored already is not applied")
+    void submitTransactions_partitioned_storesIdempotencyKeys() {
+        mockExecuteRunsCallback();
+        transactionService.init();
+        ArgumentCaptor<BiFunction<List<SubmitTransaction>, List<String>, List<TransactionBatchResult.Item>>> settler = ArgumentCaptor.forClass(BiFunction.class);
+        verify(partitionedExecutor).start(settler.capture());
+
+        Account first = Account.builder().id(10L).accountId(1001L).balance(100000L).build();
+        Account second = Account.builder().id(20L).accountId(2002L).balance(50000L).build();
+        when(accountRepository.findAccountsByAccountIdIn(any())).thenReturn(List.of(first, second));
+        when(accountRepository.lockAccounts(any())).thenReturn(List.of(first, second));
+
+        SubmitTransaction transfer = transfer(1001L, 2002L, "100.00");
+        SubmitTransaction retried = transfer(1001L, 2002L, "100.00");
+        when(idempotencyIndex.store("key-1", transfer, 90000L)).thenReturn(true);
+        when(idempotencyIndex.store("key-1", retried, 80000L)).thenReturn(false);
+
+        List<TransactionBatchResult.Item> results = settler.getValue().apply(List.of(transfer, retried), Arrays.asList("key-1", "key-1"));
+
+        assertEquals(Ledger.Status.COMPLETED, results.get(0).getStatus());
+        assertEquals("Transaction already settled with the idempotency key", results.get(1).getError());
+        verify(accountRepository).applyBalanceDeltas(Map.of(10L, -10000L, 20L, 10000L));
+    }
+
+    @Test
+    @DisplayName("submitTransactions: memory mode applies batch items through the engine without rate limiting them again")
+    void submitTransactions_memoryMode_notRateLimited() {
+        ReflectionTestUtils.setField(transactionService, "executionMode", ExecutionMode.MEMORY);
+
+        SubmitTransaction item = transfer(1001L, 2002L, "100.00");
+        when(balanceEngine.transfer(item, null)).thenReturn(TransactionSuccess.builder().sourceAccountId(1001L).updatedBalance(new BigDecimal("900.00")).build());
+
+        TransactionBatchResult result = transactionService.submitTransactions(List.of(item, transfer(1001L, 1001L, "10.00")));
+
+        assertEquals(1, result.getCompleted());
+        assertEquals(new BigDecimal("900.00"), result.getResults().get(0).getUpdatedBalance());
+        assertEquals("Source and destination accounts cannot be the same", result.getResults().get(1).getError());
+        verifyNoInteractions(rateLimiter);
     }
 }
@@ -0,0 +1,251 @@
+package com.transfer.application.services.transactions;
+
+import com.transfer.application.dtos.transactions.SubmitTransaction;
+import com.transfer.application.dtos.transactions.TransactionBatchResult;
+import com.transfer.application.dtos.transactions.TransactionInfo;
+import com.transfer.application.dtos.transactions.TransactionSuccess;
+import com.transfer.application.repositories.accounts.Account;
+import com.transfer.application.repositories.accounts.AccountRepository;
+import com.transfer.application.repositories.ledgers.Ledger;
+import com.transfer.application.repositories.queue.QueuedTransfer;
+import com.transfer.application.repositories.queue.QueuedTransferRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TransferQueueTest {
+
+    @Mock
+    private QueuedTransferRepository queuedTransferRepository;
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private TransactionService transactionService;
+
+    @Mock
+    private IdempotencyIndex idempotencyIndex;
+
+    @InjectMocks
+    private TransferQueue transferQueue;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(transferQueue, "partitions", 4);
+        ReflectionTestUtils.setField(transferQueue, "batchSize", 500);
+        when(accountRepository.findAccountByAccountId(1001L)).thenReturn(Account.builder().id(10L).accountId(1001L).build());
+        when(accountRepository.findAccountByAccountId(2002L)).thenReturn(Account.builder().id(20L).accountId(2002L).build());
+        when(queuedTransferRepository.settleAll(anyList())).thenAnswer(invocation -> updated(invocation.<List<?>>getArgument(0).size()));
+    }
+
+    private int[] updated(int size) {
+        int[] counts = new int[size];
+        Arrays.fill(counts, 1);
+        return counts;
+    }
+
+    private SubmitTransaction transfer(Long sourceAccountId, Long destinationAccountId, String amount) {
+        SubmitTransaction req = new SubmitTransaction();
+        req.setSourceAccountId(sourceAccountId);
+        req.setDestinationAccountId(destinationAccountId);
+        req.setAmount(new BigDecimal(amount));
+        return req;
+    }
+
+    private QueuedTransfer queued(Long sourceAccountId, Long destinationAccountId, long amount) {
+        return QueuedTransfer.builder()
+                .transactionId(UUID.randomUUID())
+                .sourceAccountId(sourceAccountId)
+                .destinationAccountId(destinationAccountId)
+                .amount(amount)
+                .status(Ledger.Status.IN_PROGRESS)
+                .build();
+    }
+
+    @Test
+    @DisplayName("enqueue: transfer is queued in progress and answered without settling it")
+    void enqueue_queued() {
+
+        when(queuedTransferRepository.insertIfAbsent(any(UUID.class), isNull(), eq(1001L), eq(2002L), eq(10000L), eq(Ledger.Status.IN_PROGRESS.ordinal()))).thenReturn(1);
+
+        TransactionInfo transactionInfo = transferQueue.enqueue(transfer(1001L, 2002L, "100.00"), null);
+
+        assertNotNull(transactionInfo.getTransactionId());
+        assertEquals(Ledger.Status.IN_PROGRESS, transactionInfo.getStatus());
+        assertEquals(new BigDecimal("100.00"), transactionInfo.getAmount());
+        verifyNoInteractions(transactionService);
+    }
+
+    @Test
+    @DisplayName("enqueue: throws NOT_FOUND when destination account missing")
+    void enqueue_destinationMissing_throwsNotFound() {
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> transferQueue.enqueue(transfer(1001L, 3003L, "100.00"), null));
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
+        verifyNoInteractions(queuedTransferRepository);
+    }
+
+    @Test
+    @DisplayName("enqueue: retried idempotency key returns the queued transfer")
+    void enqueue_idempotencyKey_replayed() {
+
+        UUID transactionId = UUID.nameUUIDFromBytes("key-1".getBytes(StandardCharsets.UTF_8));
+        QueuedTransfer stored = queued(1001L, 2002L, 10000L);
+        stored.setTransactionId(transactionId);
+        TransactionInfo storedInfo = TransactionInfo.builder().transactionId(transactionId).status(Ledger.Status.COMPLETED).build();
+        when(queuedTransferRepository.insertIfAbsent(eq(transactionId), eq("key-1"), anyLong(), anyLong(), anyLong(), anyInt())).thenReturn(0);
+        when(queuedTransferRepository.findById(transactionId)).thenReturn(Optional.of(stored));
+        when(transactionService.transactionInfo(stored)).thenReturn(storedInfo);
+
+        assertSame(storedInfo, transferQueue.enqueue(transfer(1001L, 2002L, "100.00"), "key-1"));
+    }
+
+    @Test
+    @DisplayName("enqueue: idempotency key reused for a different transfer throws UNPROCESSABLE_ENTITY")
+    void enqueue_idempotencyKey_mismatch() {
+
+        UUID transactionId = UUID.nameUUIDFromBytes("key-1".getBytes(StandardCharsets.UTF_8));
+        when(queuedTransferRepository.insertIfAbsent(eq(transactionId), eq("key-1"), anyLong(), anyLong(), anyLong(), anyInt())).thenReturn(0);
+        when(queuedTransferRepository.findById(transactionId)).thenReturn(Optional.of(queued(1001L, 2002L, 5000L)));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> transferQueue.enqueue(transfer(1001L, 2002L, "100.00"), "key-1"));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, ex.getStatusCode());
+    }
+
+    @Test
+    @DisplayName("settle: chunk results are recorded within the chunk, rejected transfers afterwards")
+    void settle_recordsResults() {
+
+        QueuedTransfer settled = queued(1001L, 2002L, 10000L);
+        QueuedTransfer rejected = queued(1001L, 3003L, 10000L);
+        TransactionBatchResult.Item completedItem = TransactionBatchResult.Item.builder()
+                .index(0)
+                .transactionId(settled.getTransactionId())
+                .status(Ledger.Status.COMPLETED)
+                .updatedBalance(new BigDecimal("900.00"))
+                .build();
+        TransactionBatchResult.Item failedItem = TransactionBatchResult.Item.builder()
+                .index(1)
+                .status(Ledger.Status.FAILED)
+                .error("Destination account not found")
+                .build();
+        when(transactionService.submitTransactions(anyList(), anyList(), anyList(), any())).thenAnswer(invocation -> {
+            Consumer<List<TransactionBatchResult.Item>> onChunkSettled = invocation.getArgument(3);
+            onChunkSettled.accept(List.of(completedItem));
+            return TransactionBatchResult.builder().completed(1).failed(1).results(List.of(completedItem, failedItem)).build();
+        });
+
+        transferQueue.settle(List.of(settled, rejected));
+
+        ArgumentCaptor<List<UUID>> transactionIds = ArgumentCaptor.forClass(List.class);
+        verify(transactionService).submitTransactions(anyList(), transactionIds.capture(), anyList(), any());
+        assertEquals(List.of(settled.getTransactionId(), rejected.getTransactionId()), transactionIds.getValue());
+
+        ArgumentCaptor<List<QueuedTransfer>> recorded = ArgumentCaptor.forClass(List.class);
+        verify(queuedTransferRepository, times(2)).settleAll(recorded.capture());
+        assertEquals(List.of(settled), recorded.getAllValues().get(0));
+        assertEquals(List.of(rejected), recorded.getAllValues().get(1));
+        assertEquals(Ledger.Status.COMPLETED, settled.getStatus());
+        assertEquals(90000L, settled.getUpdatedBalance());
+        assertEquals(Ledger.Status.FAILED, rejected.getStatus());
+        assertEquals("Destination account not found", rejected.getError());
+    }
+
+    @Test
+    @DisplayName("settle: a chunk holding a transfer settled already is rolled back and released, not failed")
+    void settle_alreadySettled_releasesChunk() {
+
+        QueuedTransfer settledElsewhere = queued(1001L, 2002L, 10000L);
+        QueuedTransfer sameChunk = queued(1001L, 2002L, 5000L);
+        TransactionBatchResult.Item first = TransactionBatchResult.Item.builder().index(0).status(Ledger.Status.COMPLETED).updatedBalance(new BigDecimal("900.00")).build();
+        TransactionBatchResult.Item second = TransactionBatchResult.Item.builder().index(1).status(Ledger.Status.COMPLETED).updatedBalance(new BigDecimal("850.00")).build();
+        when(queuedTransferRepository.settleAll(anyList())).thenReturn(new int[]{0, 1}, new int[0]);
+        when(transactionService.submitTransactions(anyList(), anyList(), anyList(), any())).thenAnswer(invocation -> {
+            Consumer<List<TransactionBatchResult.Item>> onChunkSettled = invocation.getArgument(3);
+            assertThrows(IllegalStateException.class, () -> onChunkSettled.accept(List.of(first, second)));
+            TransactionBatchResult.Item failedFirst = TransactionBatchResult.Item.builder().index(0).status(Ledger.Status.FAILED).error("Transaction failed").build();
+            TransactionBatchResult.Item failedSecond = TransactionBatchResult.Item.builder().index(1).status(Ledger.Status.FAILED).error("Transaction failed").build();
+            return TransactionBatchResult.builder().completed(0).failed(2).results(List.of(failedFirst, failedSecond)).build();
+        });
+
+        transferQueue.settle(List.of(settledElsewhere, sameChunk));
+
+        ArgumentCaptor<List<QueuedTransfer>> recorded = ArgumentCaptor.forClass(List.class);
+        verify(queuedTransferRepository, times(2)).settleAll(recorded.capture());
+        assertTrue(recorded.getAllValues().get(1).isEmpty());
+        verify(queuedTransferRepository).release(List.of(settledElsewhere.getTransactionId(), sameChunk.getTransactionId()), Ledger.Status.IN_PROGRESS.ordinal());
+    }
+
+    @Test
+    @DisplayName("settle: transfers of a failed chunk are released for a later pass, rejected transfers are failed")
+    void settle_failedChunk_releasesTransfers() {
+
+        QueuedTransfer failedChunk = queued(1001L, 2002L, 10000L);
+        QueuedTransfer insufficient = queued(1001L, 2002L, 900000L);
+        when(transactionService.submitTransactions(anyList(), anyList(), anyList(), any())).thenAnswer(invocation -> {
+            TransactionBatchResult.Item failedItem = TransactionBatchResult.Item.builder().index(0).status(Ledger.Status.FAILED).error("Transaction failed").build();
+            TransactionBatchResult.Item rejectedItem = TransactionBatchResult.Item.builder().index(1).status(Ledger.Status.FAILED).error("Insufficient funds").build();
+            return TransactionBatchResult.builder().completed(0).failed(2).results(List.of(failedItem, rejectedItem)).build();
+        });
+
+        assertEquals(1, transferQueue.settle(List.of(failedChunk, insufficient)));
+
+        ArgumentCaptor<List<QueuedTransfer>> recorded = ArgumentCaptor.forClass(List.class);
+        verify(queuedTransferRepository).settleAll(recorded.capture());
+        assertEquals(List.of(insufficient), recorded.getValue());
+        assertEquals(Ledger.Status.FAILED, insufficient.getStatus());
+        assertEquals(Ledger.Status.IN_PROGRESS, failedChunk.getStatus());
+        verify(queuedTransferRepository).release(List.of(failedChunk.getTransactionId()), Ledger.Status.IN_PROGRESS.ordinal());
+    }
+
+    @Test
+    @DisplayName("settle: a transfer whose key a synchronous request settled completes with the stored balance")
+    void settle_keySettledSynchronously_completes() {
+
+        QueuedTransfer queuedTransfer = queued(1001L, 2002L, 10000L);
+        queuedTransfer.setIdempotencyKey("key-1");
+        TransactionBatchResult.Item alreadySettled = TransactionBatchResult.Item.builder()
+                .index(0)
+                .status(Ledger.Status.FAILED)
+                .error(TransactionService.ALREADY_SETTLED)
+                .build();
+        when(idempotencyIndex.find(eq("key-1"), any(SubmitTransaction.class)))
+                .thenReturn(TransactionSuccess.builder().sourceAccountId(1001L).updatedBalance(new BigDecimal("900.00")).build());
+        when(transactionService.submitTransactions(anyList(), anyList(), anyList(), any())).thenAnswer(invocation -> {
+            Consumer<List<TransactionBatchResult.Item>> onChunkSettled = invocation.getArgument(3);
+            onChunkSettled.accept(List.of(alreadySettled));
+            return TransactionBatchResult.builder().completed(0).failed(1).results(List.of(alreadySettled)).build();
+        });
+
+        assertEquals(0, transferQueue.settle(List.of(queuedTransfer)));
+
+        ArgumentCaptor<List<String>> idempotencyKeys = ArgumentCaptor.forClass(List.class);
+        verify(transactionService).submitTransactions(anyList(), anyList(), idempotencyKeys.capture(), any());
+        assertEquals(List.of("key-1"), idempotencyKeys.getValue());
+        assertEquals(Ledger.Status.COMPLETED, queuedTransfer.getStatus());
+        assertEquals(90000L, queuedTransfer.getUpdatedBalance());
+        assertNull(queuedTransfer.getError());
+        verify(queuedTransferRepository, never()).release(anyList(), anyInt());
+    }
+}
@@ -0,0 +1,84 @@
+package com.transfer.application.services.transactions;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferRateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private TransferRateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        rateLimiter = new TransferRateLimiter();
+        ReflectionTestUtils.setField(rateLimiter, "accountRate", 10.0);
+        ReflectionTestUtils.setField(rateLimiter, "accountBurst", 5);
+        ReflectionTestUtils.setField(rateLimiter, "globalRate", 1000.0);
+        ReflectionTestUtils.setField(rateLimiter, "globalBurst", 1000);
+        ReflectionTestUtils.setField(rateLimiter, "stripes", 1024);
+        rateLimiter.init();
+    }
+
+    @Test
+    @DisplayName("tryAcquire: an account gets its burst, then one transfer per interval")
+    void tryAcquire_accountBurstThenRate() {
+
+        long now = SECOND;
+        for (int transfer = 0; transfer < 5; transfer++) {
+            assertEquals(0, rateLimiter.tryAcquire(1001L, now));
+        }
+
+        long wait = rateLimiter.tryAcquire(1001L, now);
+        assertEquals(SECOND / 10, wait);
+
+        // Other accounts are not affected by the busy one
+        assertEquals(0, rateLimiter.tryAcquire(2002L, now));
+
+        // One token is back once the interval passed
+        assertEquals(0, rateLimiter.tryAcquire(1001L, now + wait));
+        assertTrue(rateLimiter.tryAcquire(1001L, now + wait) > 0);
+    }
+
+    @Test
+    @DisplayName("tryAcquire: the global rate applies across accounts and does not take tokens of the rejected account")
+    void tryAcquire_globalLimit() {
+
+        ReflectionTestUtils.setField(rateLimiter, "globalRate", 10.0);
+        ReflectionTestUtils.setField(rateLimiter, "globalBurst", 3);
+        rateLimiter.init();
+
+        long now = SECOND;
+        assertEquals(0, rateLimiter.tryAcquire(1L, now));
+        assertEquals(0, rateLimiter.tryAcquire(2L, now));
+        assertEquals(0, rateLimiter.tryAcquire(3L, now));
+        assertTrue(rateLimiter.tryAcquire(4L, now) > 0);
+
+        // Account 4 still has its whole burst once the global bucket refilled
+        long later = now + SECOND;
+        assertEquals(0, rateLimiter.tryAcquire(4L, later));
+        assertEquals(0, rateLimiter.tryAcquire(4L, later));
+        assertEquals(0, rateLimiter.tryAcquire(4L, later));
+    }
+
+    @Test
+    @DisplayName("acquire: a rejected transfer raises 429 with Retry-After in whole seconds")
+    void acquire_rejected_retryAfter() {
+
+        for (int transfer = 0; transfer < 5; transfer++) {
+            rateLimiter.acquire(1001L);
+        }
+
+        TransferRateLimitedException ex = assertThrows(TransferRateLimitedException.class, () -> rateLimiter.acquire(1001L));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, ex.getStatusCode());
+        assertEquals("1", ex.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+}
@@ -0,0 +1,66 @@
+package com.transfer.application.services.transactions;
+
+import com.transfer.application.repositories.idempotency.IdempotencyKeyRepository;
+import com.transfer.application.repositories.ledgers.Ledger;
+import com.transfer.application.repositories.queue.QueuedTransferRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TransferRetentionTest {
+
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock
+    private QueuedTransferRepository queuedTransferRepository;
+
+    @InjectMocks
+    private TransferRetention transferRetention;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(transferRetention, "retentionHours", 24L);
+        ReflectionTestUtils.setField(transferRetention, "batchSize", 100);
+    }
+
+    @Test
+    @DisplayName("purge: deletes batches until one is not full, for keys and settled queued transfers")
+    void purge_deletesInBatches() {
+
+        when(idempotencyKeyRepository.deleteCreatedBefore(any(LocalDateTime.class), eq(100))).thenReturn(100, 100, 40);
+        when(queuedTransferRepository.deleteSettledBefore(any(LocalDateTime.class), eq(Ledger.Status.IN_PROGRESS.ordinal()), eq(100))).thenReturn(0);
+
+        LocalDateTime before = LocalDateTime.now().minusHours(24);
+        transferRetention.purge();
+
+        ArgumentCaptor<LocalDateTime> cutoff = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(idempotencyKeyRepository, times(3)).deleteCreatedBefore(cutoff.capture(), eq(100));
+        assertFalse(cutoff.getValue().isBefore(before));
+        assertFalse(cutoff.getValue().isAfter(LocalDateTime.now().minusHours(24)));
+        verify(queuedTransferRepository, times(1)).deleteSettledBefore(cutoff.getValue(), Ledger.Status.IN_PROGRESS.ordinal(), 100);
+    }
+
+    @Test
+    @DisplayName("purge: a failing delete does not escape the scheduled task")
+    void purge_failure_swallowed() {
+
+        when(idempotencyKeyRepository.deleteCreatedBefore(any(LocalDateTime.class), anyInt())).thenThrow(new QueryTimeoutException("timeout"));
+
+        assertDoesNotThrow(() -> transferRetention.purge());
+        verifyNoInteractions(queuedTransferRepository);
+    }
+}
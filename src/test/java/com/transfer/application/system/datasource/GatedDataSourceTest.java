@@ -0,0 +1,70 @@
+package com.transfer.application.system.datasource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class GatedDataSourceTest {
+
+    private DataSource targetDataSource;
+
+    private JdbcGate jdbcGate;
+
+    private GatedDataSource gatedDataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        targetDataSource = mock(DataSource.class);
+        when(targetDataSource.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+
+        jdbcGate = new JdbcGate();
+        ReflectionTestUtils.setField(jdbcGate, "permits", 2);
+        ReflectionTestUtils.setField(jdbcGate, "acquireTimeout", Duration.ofMillis(50));
+        jdbcGate.init();
+
+        gatedDataSource = new GatedDataSource(targetDataSource, jdbcGate);
+    }
+
+    @Test
+    @DisplayName("getConnection: permit is held until the connection is closed")
+    void getConnection_releasesOnClose() throws SQLException {
+
+        Connection connection = gatedDataSource.getConnection();
+        assertEquals(1, jdbcGate.getActive());
+
+        connection.close();
+        connection.close();
+        assertEquals(0, jdbcGate.getActive());
+    }
+
+    @Test
+    @DisplayName("getConnection: times out once all permits are taken")
+    void getConnection_exhausted_timesOut() throws SQLException {
+
+        gatedDataSource.getConnection();
+        gatedDataSource.getConnection();
+
+        assertThrows(SQLTransientConnectionException.class, () -> gatedDataSource.getConnection());
+        verify(targetDataSource, times(2)).getConnection();
+    }
+
+    @Test
+    @DisplayName("getConnection: permit is returned when the pool fails")
+    void getConnection_poolFailure_releases() throws SQLException {
+
+        when(targetDataSource.getConnection()).thenThrow(new SQLException("Pool closed"));
+
+        assertThrows(SQLException.class, () -> gatedDataSource.getConnection());
+        assertEquals(0, jdbcGate.getActive());
+    }
+}
@@ -0,0 +1,54 @@
+package com.transfer.application.system.datasource;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PoolSizeEnvironmentPostProcessorTest {
+
+    private final PoolSizeEnvironmentPostProcessor postProcessor = new PoolSizeEnvironmentPostProcessor();
+
+    @Test
+    @DisplayName("postProcessEnvironment: the pool is sized from the database cores and spindles, shared by the instances")
+    void postProcessEnvironment_autoSize() {
+
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("transfer.pool.auto-size", "true")
+                .withProperty("transfer.pool.database-cores", "8")
+                .withProperty("transfer.pool.effective-spindles", "1")
+                .withProperty("transfer.pool.instances", "2");
+
+        postProcessor.postProcessEnvironment(environment, null);
+
+        assertEquals(8, environment.getProperty(PoolSizeEnvironmentPostProcessor.POOL_SIZE, Integer.class));
+    }
+
+    @Test
+    @DisplayName("postProcessEnvironment: a configured pool size is kept")
+    void postProcessEnvironment_configuredSize() {
+
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("transfer.pool.auto-size", "true")
+                .withProperty("transfer.pool.database-cores", "8")
+                .withProperty(PoolSizeEnvironmentPostProcessor.POOL_SIZE, "30");
+
+        postProcessor.postProcessEnvironment(environment, null);
+
+        assertEquals(30, environment.getProperty(PoolSizeEnvironmentPostProcessor.POOL_SIZE, Integer.class));
+    }
+
+    @Test
+    @DisplayName("postProcessEnvironment: nothing is set unless auto sizing is enabled")
+    void postProcessEnvironment_disabled() {
+
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("transfer.pool.database-cores", "8");
+
+        postProcessor.postProcessEnvironment(environment, null);
+
+        assertNull(environment.getProperty(PoolSizeEnvironmentPostProcessor.POOL_SIZE));
+        assertEquals(2, PoolSizeEnvironmentPostProcessor.poolSize(0, 0, 4));
+    }
+}
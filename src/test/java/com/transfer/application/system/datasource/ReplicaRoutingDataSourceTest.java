@@ -0,0 +1,156 @@
+package com.transfer.application.system.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ReplicaRoutingDataSourceTest {
+
+    private HikariDataSource primary;
+
+    private HikariDataSource replica;
+
+    private JdbcTemplate replicaTemplate;
+
+    private ReplicaLagMonitor lagMonitor;
+
+    private ReplicaRoutingDataSource routingDataSource;
+
+    private Connection primaryConnection;
+
+    private Connection replicaConnection;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        primary = mock(HikariDataSource.class);
+        replica = mock(HikariDataSource.class);
+        primaryConnection = mock(Connection.class);
+        replicaConnection = mock(Connection.class);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+
+        replicaTemplate = mock(JdbcTemplate.class);
+        lagMonitor = new ReplicaLagMonitor();
+        ReflectionTestUtils.setField(lagMonitor, "maxLag", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(lagMonitor, "checkInterval", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(lagMonitor, "replica", replicaTemplate);
+
+        routingDataSource = new ReplicaRoutingDataSource(primary, replica, lagMonitor);
+    }
+
+    private void replicaLag(long lagMillis) {
+        when(replicaTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(lagMillis);
+        lagMonitor.check();
+    }
+
+    @Test
+    @DisplayName("getConnection: only work marked read-only is served by the replica")
+    void getConnection_readOnlyOnReplica() throws SQLException {
+
+        replicaLag(200L);
+
+        assertSame(primaryConnection, routingDataSource.getConnection());
+        assertSame(replicaConnection, ReplicaRouting.onReplica(() -> {
+            try {
+                return routingDataSource.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+        assertSame(primaryConnection, routingDataSource.getConnection());
+    }
+
+    @Test
+    @DisplayName("getConnection: reads fall back to the primary while the replica lag is above the tolerance")
+    void getConnection_lagging_primary() throws SQLException {
+
+        replicaLag(5000L);
+
+        assertFalse(lagMonitor.isAvailable());
+        assertSame(primaryConnection, ReplicaRouting.onReplica(() -> {
+            try {
+                return routingDataSource.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+        verify(replica, never()).getConnection();
+    }
+
+    @Test
+    @DisplayName("getConnection: a replica connection failure falls back to the primary and stops using the replica")
+    void getConnection_replicaFailure_primary() throws SQLException {
+
+        replicaLag(0L);
+        when(replica.getConnection()).thenThrow(new SQLTransientConnectionException("Connection refused"));
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            assertSame(primaryConnection, ReplicaRouting.onReplica(() -> {
+                try {
+                    return routingDataSource.getConnection();
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+        }
+        verify(replica, times(1)).getConnection();
+        assertFalse(lagMonitor.isAvailable());
+    }
+
+    @Test
+    @DisplayName("getConnection: connections with credentials are routed the same way")
+    void getConnection_credentials_routed() throws SQLException {
+
+        replicaLag(0L);
+        when(primary.getConnection("reader", "secret")).thenReturn(primaryConnection);
+        when(replica.getConnection("reader", "secret")).thenReturn(replicaConnection);
+
+        assertSame(primaryConnection, routingDataSource.getConnection("reader", "secret"));
+        assertSame(replicaConnection, ReplicaRouting.onReplica(() -> {
+            try {
+                return routingDataSource.getConnection("reader", "secret");
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+    }
+
+    @Test
+    @DisplayName("getConnection: each pool is borrowed from through its own gate")
+    void getConnection_gatedPerPool() throws SQLException {
+
+        replicaLag(0L);
+        JdbcGate primaryGate = new JdbcGate("primary", 1, Duration.ofMillis(50));
+        JdbcGate replicaGate = new JdbcGate("replica", 1, Duration.ofMillis(50));
+        ReplicaRoutingDataSource gated = new ReplicaRoutingDataSource(primary, replica, lagMonitor, primaryGate, replicaGate);
+
+        Connection connection = ReplicaRouting.onReplica(() -> {
+            try {
+                return gated.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertEquals(1, replicaGate.getActive());
+        assertEquals(0, primaryGate.getActive());
+
+        gated.getConnection();
+        assertEquals(1, primaryGate.getActive());
+
+        connection.close();
+        assertEquals(0, replicaGate.getActive());
+    }
+}